@@ -0,0 +1,90 @@
+package uk.ac.cam.sp715.caching;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded in-memory cache which can be shared between threads without locking. When the cache is
+ * full an arbitrary entry is evicted to make room, which suits memoization where any entry
+ * can be recomputed. Hits and misses are counted so that the hit rate can be monitored.
+ * @param <K> The key type.
+ * @param <V> The value type.
+ * @author Srijan Parmeshwar <sp715@cam.ac.uk>
+ */
+public class ConcurrentMemoryCache<K extends Comparable<K>, V> implements Cache<K, V> {
+    private final Map<K, V> entries;
+    private final int maxSize;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Constructs a concurrent in memory cache.
+     * @param maxSize The maximum number of entries allowed in the cache.
+     */
+    public ConcurrentMemoryCache(int maxSize) {
+        this.entries = new ConcurrentHashMap<>();
+        this.maxSize = maxSize;
+    }
+    @Override
+    public boolean containsKey(K key) {
+        return entries.containsKey(key);
+    }
+    @Override
+    public V get(K key) {
+        V value = entries.get(key);
+        if(value != null) hits.increment();
+        else misses.increment();
+        return value;
+    }
+    @Override
+    public void add(K key, V value) {
+        if(!entries.containsKey(key)) {
+            Iterator<K> keys = entries.keySet().iterator();
+            while(entries.size() >= maxSize && keys.hasNext()) {
+                keys.next();
+                keys.remove();
+            }
+        }
+        entries.put(key, value);
+    }
+    @Override
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Counts a lookup which found a value as a miss, for values which turn out to be out of date.
+     */
+    public void recordMiss() {
+        hits.decrement();
+        misses.increment();
+    }
+
+    /**
+     * Returns the number of lookups which found a value.
+     * @return Number of hits.
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of lookups which did not find a value.
+     * @return Number of misses.
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the proportion of lookups which found a value.
+     * @return Hit rate, or 0 if there have been no lookups.
+     */
+    public double getHitRate() {
+        long hits = getHits();
+        long total = hits + getMisses();
+        return total > 0 ? (double) hits / total : 0;
+    }
+}
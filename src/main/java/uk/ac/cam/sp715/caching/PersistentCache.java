@@ -12,16 +12,21 @@ import java.util.logging.Logger;
 /**
  * Persistent, least frequently used cache for recipes.
  * Default storage location is {@code /cache/} and the cache
- * itself is stored as {@code cache.ser}.
+ * itself is stored as {@code cache.ser}. Values are stored by Java serialization unless a
+ * {@link Codec} is given with {@link #withCodec(Codec)}, which also reads values stored before.
  * @param <V> The value type.
  * @author Srijan Parmeshwar <sp715@cam.ac.uk>
  */
 public class PersistentCache<V extends Serializable> implements Serializable, Cache<RecipeKey, V> {
+    //Fixed so that caches saved before values could be stored with a codec can still be read.
+    private static final long serialVersionUID = -3864397323492542844L;
     private final String location;
     private final PriorityQueue<RecipeKey> keys;
     private int maxSize;
     private static final String name = "cache.ser";
     private static final Logger logger = Logging.getLogger(PersistentCache.class);
+    //Not saved with the cache, so it is given again after the cache is read.
+    private transient Codec<V> codec;
 
     /* Constructors. */
 
@@ -51,6 +56,16 @@ public class PersistentCache<V extends Serializable> implements Serializable, Ca
         prepare();
     }
 
+    /**
+     * Stores values with the given codec from now on.
+     * @param codec Codec for the values.
+     * @return This cache.
+     */
+    public PersistentCache<V> withCodec(Codec<V> codec) {
+        this.codec = codec;
+        return this;
+    }
+
     /* Private utility methods. */
     private synchronized void prepare() {
         File directory = new File(this.location);
@@ -62,6 +77,14 @@ public class PersistentCache<V extends Serializable> implements Serializable, Ca
     private String getLocation(String... path) {
         return Paths.get(location, path).toString();
     }
+    private V readValue(RecipeKey key) throws IOToolsException {
+        if(codec == null) return IOTools.read(getLocation(key.name()));
+        else return IOTools.read(codec, getLocation(key.name()));
+    }
+    private void saveValue(RecipeKey key, V value) throws IOToolsException {
+        if(codec == null) IOTools.save(value, getLocation(key.name()));
+        else IOTools.save(value, codec, getLocation(key.name()));
+    }
     private synchronized void update() {
         if(!keys.isEmpty()) keys.add(keys.poll());
     }
@@ -81,7 +104,7 @@ public class PersistentCache<V extends Serializable> implements Serializable, Ca
     @Override
     public synchronized V get(RecipeKey key) throws CacheException {
         try {
-            V result = IOTools.read(getLocation(key.name()));
+            V result = readValue(key);
             save();
             return result;
         } catch(IOToolsException iote) {
@@ -94,12 +117,12 @@ public class PersistentCache<V extends Serializable> implements Serializable, Ca
         try {
             if (keys.size() < maxSize) {
                 keys.add(key);
-                IOTools.save(value, getLocation(key.name()));
+                saveValue(key, value);
             } else {
                 update();
                 IOTools.delete(getLocation(keys.poll().name()));
                 keys.add(key);
-                IOTools.save(value, getLocation(key.name()));
+                saveValue(key, value);
             }
             save();
         } catch(IOToolsException iote) {
@@ -3,6 +3,7 @@ package uk.ac.cam.sp715.distsim;
 import edu.stanford.nlp.ling.CoreAnnotations;
 import edu.stanford.nlp.pipeline.Annotation;
 import edu.stanford.nlp.util.CoreMap;
+import uk.ac.cam.sp715.recipes.CorpusReader;
 import uk.ac.cam.sp715.recipes.Recipe;
 import uk.ac.cam.sp715.recognition.EntityAnnotator.AugmentedSemanticGraph;
 import uk.ac.cam.sp715.recognition.TaggedWord;
@@ -38,14 +39,14 @@ public class Word2Vec {
                 || pos.startsWith("RB") || pos.startsWith("VB")) && !word.equalsIgnoreCase(initialWord);
     }
     public static void evaluate() throws IOToolsException, HTMLParseException {
-        Set<Recipe> recipes = IOTools.read(Paths.get("data", "wordvecrecipes.ser").toString());
-
         Pipeline pipeline = Pipeline.getMainPipeline();
         List<AugmentedSemanticGraph> sentences = new LinkedList<>();
-        for(Recipe recipe : recipes) {
-            Annotation annotation = pipeline.annotate(recipe);
-            for(CoreMap sentence : annotation.get(CoreAnnotations.SentencesAnnotation.class)) {
-                sentences.add(sentence.get(EntityAnnotations.class));
+        try(CorpusReader recipes = CorpusReader.open(Paths.get("data", "wordvecrecipes.corpus").toString())) {
+            for(Recipe recipe : recipes) {
+                Annotation annotation = pipeline.annotate(recipe);
+                for(CoreMap sentence : annotation.get(CoreAnnotations.SentencesAnnotation.class)) {
+                    sentences.add(sentence.get(EntityAnnotations.class));
+                }
             }
         }
 
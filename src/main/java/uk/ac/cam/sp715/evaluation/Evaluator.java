@@ -1,6 +1,5 @@
 package uk.ac.cam.sp715.evaluation;
 
-import edu.stanford.nlp.ling.IndexedWord;
 import org.jgrapht.DirectedGraph;
 import org.jgrapht.ext.DOTExporter;
 import org.jgrapht.graph.DefaultDirectedGraph;
@@ -18,6 +17,8 @@ import java.nio.file.Paths;
 import java.text.DecimalFormat;
 import java.util.*;
 import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
 /**
@@ -26,6 +27,28 @@ import java.util.stream.Collectors;
 public class Evaluator {
 
     private static final int SYSTEM = 0;
+    private static final Logger logger = Logging.getLogger(Evaluator.class);
+
+    //System flows with the task of each, written by name so that the file does not depend on the order of Task.
+    private static final Codec<Map<Task, Flow>> SYSTEM_FLOWS = new Codec<Map<Task, Flow>>() {
+        private final Codec<List<Task>> tasks = Codecs.list(Codecs.enumeration(Task.class));
+
+        @Override
+        public void write(Map<Task, Flow> value, DataOutputStream output) throws IOException {
+            tasks.write(new ArrayList<>(value.keySet()), output);
+            Codecs.FLOWS.write(new ArrayList<>(value.values()), output);
+        }
+
+        @Override
+        public Map<Task, Flow> read(DataInputStream input) throws IOException {
+            List<Task> keys = tasks.read(input);
+            List<Flow> flows = Codecs.FLOWS.read(input);
+            if(keys.size() != flows.size()) throw new IOException("System flows have " + keys.size() + " tasks but " + flows.size() + " flows.");
+            Map<Task, Flow> value = new EnumMap<>(Task.class);
+            for(int i = 0; i < keys.size(); i++) value.put(keys.get(i), flows.get(i));
+            return value;
+        }
+    };
 
     private static class Row extends TreeMap<Integer, String> {
         public String toCSV(String delimiter) {
@@ -107,19 +130,22 @@ public class Evaluator {
     }
 
     private static Map<Task, DirectedGraph<Vertex, DefaultEdge>> loadSystemFlowcharts() throws IOToolsException {
-        Map<Task, Flow> recipes = IOTools.read(getPath("testflows.ser"));
+        Map<Task, Flow> flows = IOTools.read(SYSTEM_FLOWS, getPath("testflows.bin"));
         Map<Task, DirectedGraph<Vertex, DefaultEdge>> result = new HashMap<>();
         for(Task task : Task.values()) {
-            Flow flow = recipes.get(task);
+            Flow flow = flows.get(task);
+            if(flow == null) {
+                logger.log(Level.SEVERE, "No system flow stored for task " + task + ".");
+                throw new IOToolsException();
+            }
             DirectedGraph<Vertex, DefaultEdge> graph = new DefaultDirectedGraph<>(DefaultEdge.class);
             Map<Action, Vertex> map = new HashMap<>();
             for(Action action : flow.vertexSet()) {
                 String lemmas = action.description() + " " +
                         action.getObjects()
                                 .stream()
-                                .map(TaggedWord::getTokens)
+                                .map(TaggedWord::getLemmas)
                                 .flatMap(List::stream)
-                                .map(IndexedWord::lemma)
                                 .collect(Collectors.joining(" "));
                 Vertex vertex = new Vertex(action.getID(), lemmas);
                 map.put(action, vertex);
@@ -283,14 +309,14 @@ public class Evaluator {
      * @throws IOToolsException Thrown if error occurs saving system output.
      */
     public static void saveSystemOutput() throws IOException, IOToolsException {
-        Map<String, Recipe> recipes = IOTools.read(Paths.get("flowcharts/testrecipes.ser").toString());
+        Map<String, Recipe> recipes = IOTools.read(Codecs.map(Codecs.STRING, Codecs.RECIPE), Paths.get("flowcharts/testrecipes.bin").toString());
         Visualiser visualiser = new HybridVisualiser(new CoreNLPVisualiser(Pipeline.getMainPipeline()));
-        HashMap<Task, Flow> recipeFlows = new HashMap<>();
+        Map<Task, Flow> recipeFlows = new EnumMap<>(Task.class);
         for(Task task : Task.values()) {
             Flow flow = visualiser.parse(recipes.get(task.toString()));
             recipeFlows.put(task, flow);
         }
-        IOTools.save(recipeFlows, Paths.get("flowcharts/testflows.ser").toString());
+        IOTools.save(recipeFlows, SYSTEM_FLOWS, Paths.get("flowcharts/testflows.bin").toString());
     }
 
     private static final String GRHOME = System.getenv("GRHOME");
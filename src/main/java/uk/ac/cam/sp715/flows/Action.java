@@ -3,20 +3,25 @@ package uk.ac.cam.sp715.flows;
 import uk.ac.cam.sp715.recognition.TaggedWord;
 
 import java.io.Serializable;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.*;
 
 /**
  * Class to represent an action with a set of dependent objects.
  * It is also used to represent nodes in the {@link Flow} outputs
- * from the visualiser.
+ * from the visualiser. The lemmas of the objects are collected into sets on first use,
+ * so that comparing the objects of two actions is a set intersection.
  * @author Srijan Parmeshwar <sp715@cam.ac.uk>
  */
 public class Action implements Serializable {
+    //Fixed so that flows serialized before the lemma sets were added can still be read.
+    private static final long serialVersionUID = 6358324228836824319L;
     private final int id;
     private final TaggedWord description;
     private final List<TaggedWord> dObjects;
     private final List<TaggedWord> iObjects;
+    private transient Set<String> dObjectLemmas;
+    private transient Set<String> iObjectLemmas;
+    private transient Set<String> objectLemmas;
     public Action(int id, TaggedWord description, List<TaggedWord> dObjects, List<TaggedWord> iObjects) {
         this.id = id;
         this.description = description;
@@ -49,9 +54,13 @@ public class Action implements Serializable {
     public String description() {
         return description.toString();
     }
+    public TaggedWord getDescription() {
+        return description;
+    }
     public void addObject(TaggedWord word, Role role) {
         if(role == Role.IOBJECT) iObjects.add(word);
         else dObjects.add(word);
+        clearLemmas();
     }
     public List<TaggedWord> getObjects() {
         List<TaggedWord> all = new LinkedList<>();
@@ -60,14 +69,68 @@ public class Action implements Serializable {
         return all;
     }
     public List<TaggedWord> getDObjects() {
-        return dObjects;
+        return Collections.unmodifiableList(dObjects);
     }
     public List<TaggedWord> getIObjects() {
-        return iObjects;
+        return Collections.unmodifiableList(iObjects);
     }
     public void remove(TaggedWord word, Role role) {
         if(role == Role.IOBJECT) iObjects.remove(word);
         else dObjects.remove(word);
+        clearLemmas();
+    }
+
+    private void clearLemmas() {
+        dObjectLemmas = null;
+        iObjectLemmas = null;
+        objectLemmas = null;
+    }
+
+    private static Set<String> lemmas(List<TaggedWord> words) {
+        Set<String> lemmas = new LinkedHashSet<>();
+        for(TaggedWord word : words) lemmas.addAll(word.getLemmas());
+        return Collections.unmodifiableSet(lemmas);
+    }
+
+    /**
+     * Lemmas of the direct objects.
+     * @return Distinct lemmas in the order they appear in the objects.
+     */
+    public Set<String> getDObjectLemmas() {
+        if(dObjectLemmas == null) dObjectLemmas = lemmas(dObjects);
+        return dObjectLemmas;
+    }
+
+    /**
+     * Lemmas of the indirect objects.
+     * @return Distinct lemmas in the order they appear in the objects.
+     */
+    public Set<String> getIObjectLemmas() {
+        if(iObjectLemmas == null) iObjectLemmas = lemmas(iObjects);
+        return iObjectLemmas;
+    }
+
+    /**
+     * Lemmas of all objects, in the order of {@link #getObjects()}.
+     * @return Distinct lemmas in the order they appear in the objects.
+     */
+    public Set<String> getObjectLemmas() {
+        if(objectLemmas == null) objectLemmas = lemmas(getObjects());
+        return objectLemmas;
+    }
+
+    /**
+     * Checks whether two lemma sets share a lemma.
+     * @param first Lemma set.
+     * @param second Lemma set.
+     * @return True if some lemma is in both sets.
+     */
+    public static boolean matches(Set<String> first, Set<String> second) {
+        if(first.size() > second.size()) return matches(second, first);
+        for(String lemma : first) {
+            if(second.contains(lemma)) return true;
+        }
+        return false;
     }
     @Override
     public String toString() {
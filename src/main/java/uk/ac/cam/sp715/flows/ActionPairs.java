@@ -0,0 +1,72 @@
+package uk.ac.cam.sp715.flows;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Ordered list of pairs of actions to be classified, stored as positions in a list of actions.
+ * Pairs are kept in the order of a loop over sources with an inner loop over destinations.
+ * @author Srijan Parmeshwar <sp715@cam.ac.uk>
+ */
+public class ActionPairs {
+    private int[] sources;
+    private int[] destinations;
+    private int size;
+
+    public ActionPairs() {
+        this(16);
+    }
+
+    /**
+     * Constructs an empty list.
+     * @param capacity Expected number of pairs.
+     */
+    public ActionPairs(int capacity) {
+        this.sources = new int[Math.max(1, capacity)];
+        this.destinations = new int[Math.max(1, capacity)];
+        this.size = 0;
+    }
+
+    /**
+     * Lists every pair of actions where the source has a lower id than the destination.
+     * @param actions Actions of a recipe.
+     * @return All such pairs.
+     */
+    public static ActionPairs all(List<Action> actions) {
+        int count = actions.size();
+        ActionPairs pairs = new ActionPairs(count * (count - 1) / 2);
+        for(int i = 0; i < count; i++) {
+            for(int j = 0; j < count; j++) {
+                if(actions.get(i).getID() < actions.get(j).getID()) pairs.add(i, j);
+            }
+        }
+        return pairs;
+    }
+
+    /**
+     * Appends a pair.
+     * @param source Position of the source action.
+     * @param destination Position of the destination action.
+     */
+    public void add(int source, int destination) {
+        if(size == sources.length) {
+            sources = Arrays.copyOf(sources, 2 * size);
+            destinations = Arrays.copyOf(destinations, 2 * size);
+        }
+        sources[size] = source;
+        destinations[size] = destination;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int source(int pair) {
+        return sources[pair];
+    }
+
+    public int destination(int pair) {
+        return destinations[pair];
+    }
+}
@@ -1,9 +1,6 @@
 package uk.ac.cam.sp715.flows;
 
-import edu.stanford.nlp.classify.Classifier;
-import edu.stanford.nlp.ling.BasicDatum;
 import edu.stanford.nlp.ling.CoreAnnotations;
-import edu.stanford.nlp.ling.IndexedWord;
 import edu.stanford.nlp.pipeline.Annotation;
 import edu.stanford.nlp.util.CoreMap;
 import uk.ac.cam.sp715.ml.SRLDataHandler;
@@ -25,7 +22,7 @@ import java.util.stream.Collectors;
  */
 public class CoreNLPVisualiser extends Visualiser {
     private final Pipeline pipeline;
-    private final Classifier<Role, String> classifier;
+    private final RoleLabeller labeller;
     private final Map<String, Action> frontiers;
 
     /**
@@ -35,7 +32,7 @@ public class CoreNLPVisualiser extends Visualiser {
     public CoreNLPVisualiser(Pipeline pipeline) {
         try {
             this.pipeline = pipeline;
-            this.classifier = SRLDataHandler.getClassifier();
+            this.labeller = new RoleLabeller(SRLDataHandler.getClassifier());
             this.frontiers = new HashMap<>();
         } catch(IOToolsException iote) {
             throw new RuntimeException();
@@ -54,8 +51,8 @@ public class CoreNLPVisualiser extends Visualiser {
         });
 
         for (TaggedWord word : newAction.getObjects()) {
-            for(IndexedWord iword : word.getTokens()) {
-                if(frontiers.containsKey(iword.lemma())) previousActions.add(frontiers.get(iword.lemma()));
+            for(String lemma : word.getLemmas()) {
+                if(frontiers.containsKey(lemma)) previousActions.add(frontiers.get(lemma));
             }
             /*if(frontiers.containsKey(word.getLemma()) && word.entity() == TaxonomyType.INGREDIENTS) previousActions.add(frontiers.get(word.getLemma()));
             frontiers.put(word.getLemma(), newAction);*/
@@ -67,10 +64,8 @@ public class CoreNLPVisualiser extends Visualiser {
             }
         }
 
-        for (TaggedWord word : newAction.getObjects()) {
-            for(IndexedWord iword : word.getTokens()) {
-                frontiers.put(iword.lemma(), newAction);
-            }
+        for (String lemma : newAction.getObjectLemmas()) {
+            frontiers.put(lemma, newAction);
         }
 
         /*
@@ -101,6 +96,7 @@ public class CoreNLPVisualiser extends Visualiser {
         Annotation annotation = pipeline.annotate(recipe);
 
         Flow flow = new Flow();
+        flow.beginBulk();
         frontiers.clear();
 
         List<CoreMap> sentences = annotation.get(CoreAnnotations.SentencesAnnotation.class);
@@ -121,8 +117,7 @@ public class CoreNLPVisualiser extends Visualiser {
 
             List<TaggedWord> tokens = dependencies.orderedTokens();
             for (TaggedWord token : tokens) {
-                List<String> features = FeatureVectors.getFeatures(token, position, dependencies, tokens);
-                Role role = classifier.classOf(new BasicDatum<>(features));
+                Role role = labeller.roleOf(dependencies, position);
 
                 if (role == Role.DOBJECT || role == Role.IOBJECT) {
                     candidateObjects.put(token, id);
@@ -171,9 +166,10 @@ public class CoreNLPVisualiser extends Visualiser {
         for(Action action : indices.values()) {
             if(action.getDObjects().isEmpty()) {
                 if(action.getIObjects().size() > 2) {
-                    List<TaggedWord> iObjects = action.getIObjects();
-                    while(iObjects.size() > 2) {
-                        action.addObject(iObjects.remove(0), Role.DOBJECT);
+                    while(action.getIObjects().size() > 2) {
+                        TaggedWord object = action.getIObjects().get(0);
+                        action.remove(object, Role.IOBJECT);
+                        action.addObject(object, Role.DOBJECT);
                     }
                 } else if(indices.containsKey(action.getID() - 1)) indices.get(action.getID() - 1).getDObjects().forEach(object -> action.addObject(object, Role.DOBJECT));
             }
@@ -235,6 +231,7 @@ public class CoreNLPVisualiser extends Visualiser {
                 .filter(action -> action.getID() != lastAction.getID() && flow.outDegreeOf(action) == 0)
                 .forEach(action -> flow.addEdge(action, lastAction));
 
+        flow.endBulk();
         return flow;
     }
 }
@@ -2,29 +2,71 @@ package uk.ac.cam.sp715.flows;
 
 import edu.stanford.nlp.ling.BasicDatum;
 import edu.stanford.nlp.ling.Datum;
-import edu.stanford.nlp.ling.IndexedWord;
 import edu.stanford.nlp.ling.RVFDatum;
 import edu.stanford.nlp.stats.ClassicCounter;
 import edu.stanford.nlp.stats.Counter;
 import edu.stanford.nlp.trees.GrammaticalRelation;
 import uk.ac.cam.sp715.ml.Feature;
+import uk.ac.cam.sp715.ml.FeatureBuffer;
+import uk.ac.cam.sp715.ml.FeatureIndex;
+import uk.ac.cam.sp715.ml.FeatureMatrix;
 import uk.ac.cam.sp715.recognition.EntityAnnotator;
 import uk.ac.cam.sp715.recognition.TaggedWord;
 import uk.ac.cam.sp715.wordnet.Taxonomy;
 
 import java.util.*;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 /**
  * Class to obtain features to feed into classifier.
  * @author Srijan Parmeshwar <sp715@cam.ac.uk>
  */
 public class FeatureVectors {
+    private static final String POS_TAG = "posTag=";
+    private static final String AT_START = "atStart";
+    private static final String IN_RELATION = "inRel";
+    private static final String OUT_RELATION = "outRel";
+    private static final String NER = "ner=";
+    private static final String WORD = "word=";
+    private static final String POS_TAG_RIGHT = "posTagRight=";
+    private static final String POS_TAG_LEFT = "posTagLeft=";
+    private static final String POS_TAG_RIGHT_2 = "posTagRight2=";
+    private static final String POS_TAG_LEFT_2 = "posTagLeft2=";
+
+    private static final String SRC_DST = "srcdst=";
+    private static final String SRC = "src=";
+    private static final String DST = "dst=";
+    private static final String DISC_MARKER = "discMarker=";
+    private static final String DOBJ_IOBJ_MATCH = "dobjIobjMatch";
+    private static final String DOBJ_DOBJ_MATCH = "dobjDobjMatch";
+    private static final String IOBJ_IOBJ_MATCH = "iobjIobjMatch";
+    private static final String IOBJ_DOBJ_MATCH = "iobjDobjMatch";
+    private static final String NO_MATCH = "noMatch";
+    private static final String ADJACENT = "adjacent";
+    private static final String DISTANT = "distant";
+    private static final String SAME_SENTENCE = "sameSent";
+    private static final String DIFFERENT_SENTENCE = "diffSent";
+    private static final String HEURISTIC_EDGE = "heuristicEdge";
+    private static final String NO_HEURISTIC_EDGE = "noHeuristicEdge";
+
+    /**
+     * Prefixes of the token features produced by {@link #getFeatures}, for building a {@link FeatureIndex}
+     * which {@link #getFeatureIds} can look features up in.
+     */
+    public static final List<String> TOKEN_FEATURE_TEMPLATES = Collections.unmodifiableList(Arrays.asList(
+            POS_TAG, IN_RELATION, OUT_RELATION, NER, WORD, POS_TAG_RIGHT, POS_TAG_LEFT, POS_TAG_RIGHT_2, POS_TAG_LEFT_2));
+
+    /**
+     * Prefixes of the action pair features produced by {@link #getDatum(Action, Action, Flow)}, for building a
+     * {@link FeatureIndex} which {@link #getPairFeatureIds} can look features up in.
+     */
+    public static final List<String> PAIR_FEATURE_TEMPLATES = Collections.unmodifiableList(Arrays.asList(
+            SRC_DST, SRC, DST, DISC_MARKER));
+
     private static List<String> intermediateFeatures(String partOfSpeech, int position, Set<GrammaticalRelation> inRelations, Set<GrammaticalRelation> outRelations, Taxonomy.TaxonomyType type) {
         List<String> features = new LinkedList<>();
-        features.add("posTag=" + partOfSpeech);
-        if(position == 0) features.add("atStart");
+        features.add(POS_TAG + partOfSpeech);
+        if(position == 0) features.add(AT_START);
 
         Set<String> inNames = inRelations
                 .stream()
@@ -36,10 +78,10 @@ public class FeatureVectors {
                 .map(GrammaticalRelation::getShortName)
                 .collect(Collectors.toSet());
 
-        for(String inName : inNames) features.add("inRel" + inName);
-        for(String outName : outNames) features.add("outRel" + outName);
+        for(String inName : inNames) features.add(IN_RELATION + inName);
+        for(String outName : outNames) features.add(OUT_RELATION + outName);
 
-        features.add("ner=" + type);
+        features.add(NER + type);
         return features;
     }
 
@@ -52,7 +94,35 @@ public class FeatureVectors {
      * @return List of features as strings.
      */
     public static List<String> getFeatures(TaggedWord token, int position, EntityAnnotator.AugmentedSemanticGraph dependencies, List<TaggedWord> tokens) {
-        return getFeaturesOriginal(token, position, dependencies, tokens);
+        return getFeatures(token, position, dependencies, tokens, TokenFeatures.ORIGINAL);
+    }
+
+    /**
+     * Feature templates which tokens can be described with. The role classifier is trained on {@link #ORIGINAL}.
+     */
+    public enum TokenFeatures {
+        /** Word, part of speech tags of the two tokens either side and relations. */
+        ORIGINAL,
+        /** Lemma, trimmed part of speech tag sequences around the token and relations. */
+        ADVANCED
+    }
+
+    /**
+     * Retrieves and converts features from the given templates to strings.
+     * @param token Current token.
+     * @param position Position in sentence.
+     * @param dependencies Dependencies in the whole text.
+     * @param tokens Sentence containing the current token.
+     * @param templates Feature templates to use.
+     * @return List of features as strings.
+     */
+    public static List<String> getFeatures(TaggedWord token, int position, EntityAnnotator.AugmentedSemanticGraph dependencies, List<TaggedWord> tokens, TokenFeatures templates) {
+        switch(templates) {
+            case ADVANCED:
+                return getFeaturesAdv(token, position, dependencies, tokens);
+            default:
+                return getFeaturesOriginal(token, position, dependencies, tokens);
+        }
     }
 
     private static List<String> getFeaturesOriginal(TaggedWord token, int position, EntityAnnotator.AugmentedSemanticGraph dependencies, List<TaggedWord> tokens) {
@@ -62,20 +132,57 @@ public class FeatureVectors {
         Set<GrammaticalRelation> irelations = dependencies.incomingEdgesOf(token);
 
         List<String> features = intermediateFeatures(pos, position, irelations, orelations, type);
-        features.add("word=" + token.toString().toLowerCase());
+        features.add(WORD + token.toLowerCase());
 
-        if(dependencies.orderedTokens().size() > position + 1) features.add("posTagRight=" + tokens.get(position + 1).tag());
-        if(position > 0) features.add("posTagLeft=" + tokens.get(position - 1).tag());
+        if(tokens.size() > position + 1) features.add(POS_TAG_RIGHT + tokens.get(position + 1).tag());
+        if(position > 0) features.add(POS_TAG_LEFT + tokens.get(position - 1).tag());
 
-        if(dependencies.orderedTokens().size() > position + 2) features.add("posTagRight2=" + tokens.get(position + 2).tag());
-        if(position > 1) features.add("posTagLeft2=" + tokens.get(position - 2).tag());
+        if(tokens.size() > position + 2) features.add(POS_TAG_RIGHT_2 + tokens.get(position + 2).tag());
+        if(position > 1) features.add(POS_TAG_LEFT_2 + tokens.get(position - 2).tag());
 
-        /*if(dependencies.orderedTokens().size()>position + 3) features.add("posTagRight3=" + tokens.get(position + 3).tag());
+        /*if(tokens.size()>position + 3) features.add("posTagRight3=" + tokens.get(position + 3).tag());
         if(position>2) features.add("posTagLeft3=" + tokens.get(position - 3).tag());*/
 
         return features;
     }
 
+    /**
+     * Writes the ids of the features given by {@link #getFeatures} into a buffer, looking them up by
+     * template so that no feature strings are built. Features missing from the index are skipped.
+     * @param position Position of the token in {@link EntityAnnotator.AugmentedSemanticGraph#orderedTokens()}.
+     * @param dependencies Dependencies in the sentence containing the token.
+     * @param index Index of known features, built with {@link #TOKEN_FEATURE_TEMPLATES}.
+     * @param buffer Buffer which is cleared and then filled with the feature ids.
+     */
+    public static void getFeatureIds(int position, EntityAnnotator.AugmentedSemanticGraph dependencies, FeatureIndex index, FeatureBuffer buffer) {
+        TaggedWord token = dependencies.tokenAt(position);
+        int size = dependencies.size();
+        buffer.clear();
+        buffer.add(index.indexOf(POS_TAG, token.tag()));
+        if(position == 0) buffer.add(index.indexOf(AT_START));
+
+        //Relation names are only counted once each, as in the string features.
+        int start = buffer.size();
+        for(int i = 0; i < dependencies.inDegreeAt(position); i++) {
+            int id = index.indexOf(IN_RELATION, dependencies.incomingRelationAt(position, i).getShortName());
+            if(!buffer.contains(start, id)) buffer.add(id);
+        }
+        start = buffer.size();
+        for(int i = 0; i < dependencies.outDegreeAt(position); i++) {
+            int id = index.indexOf(OUT_RELATION, dependencies.outgoingRelationAt(position, i).getShortName());
+            if(!buffer.contains(start, id)) buffer.add(id);
+        }
+
+        buffer.add(index.indexOf(NER, token.entity().name()));
+        buffer.add(index.indexOf(WORD, token.toLowerCase()));
+
+        if(size > position + 1) buffer.add(index.indexOf(POS_TAG_RIGHT, dependencies.tokenAt(position + 1).tag()));
+        if(position > 0) buffer.add(index.indexOf(POS_TAG_LEFT, dependencies.tokenAt(position - 1).tag()));
+
+        if(size > position + 2) buffer.add(index.indexOf(POS_TAG_RIGHT_2, dependencies.tokenAt(position + 2).tag()));
+        if(position > 1) buffer.add(index.indexOf(POS_TAG_LEFT_2, dependencies.tokenAt(position - 2).tag()));
+    }
+
     private static String trim(String string, int length) {
         return string.substring(0, Math.min(length, string.length()));
     }
@@ -93,7 +200,7 @@ public class FeatureVectors {
         List<String> features = intermediateFeatures(pos, position, irelations, orelations, type);
         features.add("word=" + token.getLemma().toLowerCase());
 
-        if(dependencies.orderedTokens().size() > position + 1 && position > 0) {
+        if(tokens.size() > position + 1 && position > 0) {
             features.add("posTagSeq=" + trim(tokens.get(position - 1).tag()) + trim(token.tag()) + trim(tokens.get(position + 1).tag()));
         }
 
@@ -104,72 +211,150 @@ public class FeatureVectors {
         return features;
     }
 
-    private static List<String> getLemmas(Stream<TaggedWord> stream) {
-        return stream.flatMap(word -> word.getTokens().stream())
-                .map(IndexedWord::lemma)
-                .collect(Collectors.toList());
-    }
-
     private static List<String> features(Action src, Action dst, Flow flow, Map<Integer, TaggedWord> possibleDiscourseMarkers) {
         List<String> features = new LinkedList<>();
-        features.add("srcdst=" + src.description().toLowerCase() + dst.description().toLowerCase());
-        features.add("src=" + src.description().toLowerCase());
-        features.add("dst=" + dst.description().toLowerCase());
-        double dobjIobjMatches = 0;
-        double dobjDobjMatches = 0;
-        for(TaggedWord dobj : src.getDObjects()) {
-            for(IndexedWord word : dobj.getTokens()) {
-                List<String> iobjLemmas = getLemmas(dst.getIObjects().stream());
-                dobjIobjMatches += iobjLemmas
-                        .stream()
-                        .filter(lemma -> lemma.equals(word.lemma()))
-                        .count();
-
-                List<String> dobjLemmas = getLemmas(dst.getDObjects().stream());
-                dobjDobjMatches += dobjLemmas
-                        .stream()
-                        .filter(lemma -> lemma.equals(word.lemma()))
-                        .count();
+        features.add(SRC_DST + src.description().toLowerCase() + dst.description().toLowerCase());
+        features.add(SRC + src.description().toLowerCase());
+        features.add(DST + dst.description().toLowerCase());
+        if(src.getID() - dst.getID() < 3) {
+            for(int i = 0; i < 2; i++) {
+                if(possibleDiscourseMarkers.containsKey(src.getID() + i)) features.add(DISC_MARKER + possibleDiscourseMarkers.get(src.getID() + i));
             }
         }
-        //dobjMatches = dobjSize > 0 ? dobjMatches/dobjSize : 0;
 
-        if(src.getID() - dst.getID() < 3) {
-            for(int i = 0; i < 2; i++) {
-                if(possibleDiscourseMarkers.containsKey(src.getID() + i)) features.add("discMarker=" + possibleDiscourseMarkers.get(src.getID() + i));
+        boolean dobjIobjMatch = Action.matches(src.getDObjectLemmas(), dst.getIObjectLemmas());
+        boolean dobjDobjMatch = Action.matches(src.getDObjectLemmas(), dst.getDObjectLemmas());
+        boolean iobjIobjMatch = Action.matches(src.getIObjectLemmas(), dst.getIObjectLemmas());
+        boolean iobjDobjMatch = Action.matches(src.getIObjectLemmas(), dst.getDObjectLemmas());
+        if(dobjIobjMatch) features.add(DOBJ_IOBJ_MATCH);
+        if(dobjDobjMatch) features.add(DOBJ_DOBJ_MATCH);
+        if(iobjIobjMatch) features.add(IOBJ_IOBJ_MATCH);
+        if(iobjDobjMatch) features.add(IOBJ_DOBJ_MATCH);
+        if(!dobjIobjMatch && !dobjDobjMatch && !iobjIobjMatch && !iobjDobjMatch) features.add(NO_MATCH);
+        if(dst.getID() - src.getID() < 2) features.add(ADJACENT);
+        else features.add(DISTANT);
+        if(dst.sentIndex() - src.sentIndex() == 0) features.add(SAME_SENTENCE);
+        else features.add(DIFFERENT_SENTENCE);
+        if(flow.containsEdge(src, dst)) features.add(HEURISTIC_EDGE);
+        else features.add(NO_HEURISTIC_EDGE);
+        return features;
+    }
+
+    private static BitSet lemmaSet(Set<String> lemmas, Map<String, Integer> lemmaIds) {
+        BitSet ids = new BitSet();
+        for(String lemma : lemmas) {
+            Integer id = lemmaIds.get(lemma);
+            if(id == null) {
+                id = lemmaIds.size();
+                lemmaIds.put(lemma, id);
             }
+            ids.set(id);
         }
+        return ids;
+    }
 
-        double iobjIobjMatches = 0;
-        double iobjDobjMatches = 0;
-        for(TaggedWord iobj : src.getIObjects()) {
-            for(IndexedWord word : iobj.getTokens()) {
-                List<String> iobjLemmas = getLemmas(dst.getIObjects().stream());
-                iobjIobjMatches += iobjLemmas
-                        .stream()
-                        .filter(lemma -> lemma.equals(word.lemma()))
-                        .count();
+    /**
+     * Extracts the feature ids of {@link #getDatum(Action, Action, Flow)} for every pair of actions in one pass.
+     * Descriptions are lowercased once per action rather than once per pair, and the object lemma sets of the
+     * actions are numbered within the recipe, so that matches are bit set intersections. Rows follow the order
+     * of {@link ActionPairs#all(List)}, and ids within a row follow the order of the string features. Discourse
+     * marker features are never produced, as {@link #getDatum(Action, Action, Flow)} has no discourse markers.
+     * @param actions Actions of a recipe.
+     * @param flow Heuristic flow for the recipe.
+     * @param index Index built from {@link #PAIR_FEATURE_TEMPLATES}.
+     * @return Matrix with one row of feature ids per pair of actions.
+     */
+    public static FeatureMatrix getPairFeatureIds(List<Action> actions, Flow flow, FeatureIndex index) {
+        return getPairFeatureIds(actions, ActionPairs.all(actions), flow, index);
+    }
 
-                List<String> dobjLemmas = getLemmas(dst.getDObjects().stream());
-                iobjDobjMatches += dobjLemmas
-                        .stream()
-                        .filter(lemma -> lemma.equals(word.lemma()))
-                        .count();
+    /**
+     * Extracts the feature ids of {@link #getDatum(Action, Action, Flow)} for the given pairs of actions,
+     * as {@link #getPairFeatureIds(List, Flow, FeatureIndex)} does for all pairs.
+     * @param actions Actions of a recipe.
+     * @param pairs Pairs to extract features for, such as those kept by a {@link PairPruner}.
+     * @param flow Heuristic flow for the recipe.
+     * @param index Index built from {@link #PAIR_FEATURE_TEMPLATES}.
+     * @return Matrix with one row of feature ids per pair, in the order of the pairs.
+     */
+    public static FeatureMatrix getPairFeatureIds(List<Action> actions, ActionPairs pairs, Flow flow, FeatureIndex index) {
+        int size = actions.size();
+        Map<String, Integer> lemmaIds = new HashMap<>();
+        Map<String, Integer> descriptionIds = new HashMap<>();
+        List<String> descriptions = new ArrayList<>();
+        int[] descriptionOf = new int[size];
+        BitSet[] dobjs = new BitSet[size];
+        BitSet[] iobjs = new BitSet[size];
+        for(int i = 0; i < size; i++) {
+            Action action = actions.get(i);
+            String description = action.description().toLowerCase();
+            Integer id = descriptionIds.get(description);
+            if(id == null) {
+                id = descriptions.size();
+                descriptionIds.put(description, id);
+                descriptions.add(description);
             }
+            descriptionOf[i] = id;
+            dobjs[i] = lemmaSet(action.getDObjectLemmas(), lemmaIds);
+            iobjs[i] = lemmaSet(action.getIObjectLemmas(), lemmaIds);
         }
-        //iobjMatches = iobjSize > 0 ? iobjMatches/iobjSize : 0;
-        if(dobjIobjMatches>0) features.add("dobjIobjMatch");
-        if(dobjDobjMatches>0) features.add("dobjDobjMatch");
-        if(iobjIobjMatches>0) features.add("iobjIobjMatch");
-        if(iobjDobjMatches>0) features.add("iobjDobjMatch");
-        if(dobjDobjMatches == 0 && dobjIobjMatches == 0 && iobjDobjMatches == 0 && iobjIobjMatches == 0) features.add("noMatch");
-        if(dst.getID() - src.getID() < 2) features.add("adjacent");
-        else features.add("distant");
-        if(dst.sentIndex() - src.sentIndex() == 0) features.add("sameSent");
-        else features.add("diffSent");
-        if(flow.containsEdge(src, dst)) features.add("heuristicEdge");
-        else features.add("noHeuristicEdge");
-        return features;
+
+        //Features of a description, or of a pair of descriptions, are only looked up once each.
+        int distinct = descriptions.size();
+        int[] srcIds = new int[distinct];
+        int[] dstIds = new int[distinct];
+        for(int i = 0; i < distinct; i++) {
+            srcIds[i] = index.indexOf(SRC, descriptions.get(i));
+            dstIds[i] = index.indexOf(DST, descriptions.get(i));
+        }
+        int[] srcDstIds = new int[distinct * distinct];
+        boolean[] srcDstKnown = new boolean[distinct * distinct];
+
+        int dobjIobjMatch = index.indexOf(DOBJ_IOBJ_MATCH);
+        int dobjDobjMatch = index.indexOf(DOBJ_DOBJ_MATCH);
+        int iobjIobjMatch = index.indexOf(IOBJ_IOBJ_MATCH);
+        int iobjDobjMatch = index.indexOf(IOBJ_DOBJ_MATCH);
+        int noMatch = index.indexOf(NO_MATCH);
+        int adjacent = index.indexOf(ADJACENT);
+        int distant = index.indexOf(DISTANT);
+        int sameSentence = index.indexOf(SAME_SENTENCE);
+        int differentSentence = index.indexOf(DIFFERENT_SENTENCE);
+        int heuristicEdge = index.indexOf(HEURISTIC_EDGE);
+        int noHeuristicEdge = index.indexOf(NO_HEURISTIC_EDGE);
+
+        FeatureMatrix matrix = new FeatureMatrix(pairs.size(), pairs.size() * 8);
+        FeatureBuffer buffer = new FeatureBuffer();
+        for(int pair = 0; pair < pairs.size(); pair++) {
+            int i = pairs.source(pair);
+            int j = pairs.destination(pair);
+            Action src = actions.get(i);
+            Action dst = actions.get(j);
+            buffer.clear();
+            int descriptionPair = descriptionOf[i] * distinct + descriptionOf[j];
+            if(!srcDstKnown[descriptionPair]) {
+                srcDstIds[descriptionPair] = index.indexOf(SRC_DST, descriptions.get(descriptionOf[i]) + descriptions.get(descriptionOf[j]));
+                srcDstKnown[descriptionPair] = true;
+            }
+            buffer.add(srcDstIds[descriptionPair]);
+            buffer.add(srcIds[descriptionOf[i]]);
+            buffer.add(dstIds[descriptionOf[j]]);
+
+            boolean dobjIobj = dobjs[i].intersects(iobjs[j]);
+            boolean dobjDobj = dobjs[i].intersects(dobjs[j]);
+            boolean iobjIobj = iobjs[i].intersects(iobjs[j]);
+            boolean iobjDobj = iobjs[i].intersects(dobjs[j]);
+            if(dobjIobj) buffer.add(dobjIobjMatch);
+            if(dobjDobj) buffer.add(dobjDobjMatch);
+            if(iobjIobj) buffer.add(iobjIobjMatch);
+            if(iobjDobj) buffer.add(iobjDobjMatch);
+            if(!dobjIobj && !dobjDobj && !iobjIobj && !iobjDobj) buffer.add(noMatch);
+
+            buffer.add(dst.getID() - src.getID() < 2 ? adjacent : distant);
+            buffer.add(dst.sentIndex() - src.sentIndex() == 0 ? sameSentence : differentSentence);
+            buffer.add(flow.containsEdge(src, dst) ? heuristicEdge : noHeuristicEdge);
+            matrix.addRow(buffer);
+        }
+        return matrix;
     }
 
     public static Datum<Boolean, String> getDatum(Action src, Action dst, Flow flow) {
@@ -1,11 +1,9 @@
 package uk.ac.cam.sp715.flows;
 
-import edu.stanford.nlp.ling.IndexedWord;
 import edu.stanford.nlp.process.SerializableFunction;
 import org.jgrapht.ext.DOTExporter;
 import org.jgrapht.graph.DefaultDirectedGraph;
 import org.jgrapht.graph.DefaultEdge;
-import uk.ac.cam.sp715.recognition.TaggedWord;
 import uk.ac.cam.sp715.util.Logging;
 
 import java.io.*;
@@ -17,13 +15,33 @@ import java.util.stream.Collectors;
 
 /**
  * Represents the flow chart for a recipe. Nodes are actions and edges are dependencies.
+ * Flows are acyclic, and {@link #addEdge(Action, Action)} keeps them transitively reduced.
+ * Reachability is answered from an index holding, for each action, bit sets of the actions
+ * reachable from it and of the actions it can be reached from. Adding an edge updates the
+ * index in place, touching only the actions whose reachability changes, while any other change to
+ * the edges or actions drops it, to be rebuilt on the next query.
+ * <p>
+ * Reducing on every insertion is costly and its result depends on the order edges are added in.
+ * Between {@link #beginBulk()} and {@link #endBulk()} edges are added as given instead, and a single
+ * {@link #reduce()} pass at the end leaves the unique transitive reduction of everything added.
  * @author Srijan Parmeshwar <sp715@cam.ac.uk>
  */
 public class Flow extends DefaultDirectedGraph<Action, DefaultEdge> implements Serializable {
+    //Fixed so that flows serialized before the reachability index was added can still be read.
+    private static final long serialVersionUID = 7509828982852141632L;
     private static final String GRHOME = System.getenv("GRHOME");
     private static final Logger logger = Logging.getLogger(Flow.class);
     private static final DOTExporter<Action, DefaultEdge> exporter = new DOTExporter<>(Action::id, Action::toString, defaultEdge -> "", action -> new HashMap<>(), defaultEdge -> new HashMap<>());
 
+    //Position of each action in the reachability index, or null when the index must be rebuilt.
+    private transient Map<Action, Integer> positions;
+    //Actions reachable from the action at each position, not including the action itself.
+    private transient List<BitSet> descendants;
+    //Actions from which the action at each position can be reached, not including the action itself.
+    private transient List<BitSet> ancestors;
+    //Whether edges are being added without reduction, until endBulk is called.
+    private transient boolean bulk;
+
     public Flow() {
         super(DefaultEdge.class);
     }
@@ -85,30 +103,273 @@ public class Flow extends DefaultDirectedGraph<Action, DefaultEdge> implements S
         }
     }
 
-    public boolean pathExists(Action source, Action target) {
-        if(this.containsEdge(source, target)) return true;
-        else {
-            for (Action action : this.outgoingEdgesOf(source)
-                    .stream()
-                    .map(this::getEdgeTarget)
-                    .collect(Collectors.toSet())) {
-                if(pathExists(action, target)) return true;
+    private void buildIndex() {
+        positions = new HashMap<>();
+        descendants = new ArrayList<>();
+        ancestors = new ArrayList<>();
+        List<Action> actions = new ArrayList<>(vertexSet());
+        for(Action action : actions) {
+            positions.put(action, descendants.size());
+            descendants.add(new BitSet());
+            ancestors.add(new BitSet());
+        }
+
+        //Depth first search without recursion, so long chains of actions cannot overflow the stack.
+        boolean[] visited = new boolean[actions.size()];
+        Deque<Action> stack = new ArrayDeque<>();
+        Deque<Iterator<DefaultEdge>> edges = new ArrayDeque<>();
+        for(Action root : actions) {
+            if(visited[positions.get(root)]) continue;
+            visited[positions.get(root)] = true;
+            stack.push(root);
+            edges.push(outgoingEdgesOf(root).iterator());
+            while(!stack.isEmpty()) {
+                Iterator<DefaultEdge> iterator = edges.peek();
+                if(iterator.hasNext()) {
+                    Action child = getEdgeTarget(iterator.next());
+                    if(!visited[positions.get(child)]) {
+                        visited[positions.get(child)] = true;
+                        stack.push(child);
+                        edges.push(outgoingEdgesOf(child).iterator());
+                    }
+                } else {
+                    Action action = stack.pop();
+                    edges.pop();
+                    BitSet reachable = descendants.get(positions.get(action));
+                    for(DefaultEdge edge : outgoingEdgesOf(action)) {
+                        int child = positions.get(getEdgeTarget(edge));
+                        reachable.set(child);
+                        reachable.or(descendants.get(child));
+                    }
+                }
             }
         }
-        return false;
+
+        for(int position = 0; position < actions.size(); position++) {
+            BitSet reachable = descendants.get(position);
+            for(int child = reachable.nextSetBit(0); child >= 0; child = reachable.nextSetBit(child + 1)) {
+                ancestors.get(child).set(position);
+            }
+        }
+    }
+
+    private void clearIndex() {
+        positions = null;
+        descendants = null;
+        ancestors = null;
     }
 
+    private int position(Action action) {
+        if(positions == null) buildIndex();
+        Integer position = positions.get(action);
+        return position == null ? -1 : position;
+    }
+
+    /**
+     * Checks whether the target action can be reached from the source action along one or more edges.
+     * @param source Source action.
+     * @param target Target action.
+     * @return True if there is a path from source to target.
+     * @throws IllegalArgumentException Thrown if the source is not in the flow.
+     */
+    public boolean pathExists(Action source, Action target) {
+        int from = position(source);
+        if(from < 0) throw new IllegalArgumentException("No such vertex in graph: " + source);
+        int to = position(target);
+        return to >= 0 && descendants.get(from).get(to);
+    }
+
+    /**
+     * Adds a dependency unless it is implied by an existing path, first removing edges into the
+     * target from actions which will now reach it through the source. Neither step changes which
+     * actions are reachable from which, other than the actions reaching the source now reaching the
+     * target and its descendants, so the reachability index is updated rather than rebuilt.
+     * @param source Action which must come first.
+     * @param target Dependent action.
+     * @return The new edge, or null if the dependency was already implied.
+     */
     @Override
     public DefaultEdge addEdge(Action source, Action target) {
-        this.incomingEdgesOf(target)
-                .stream()
-                .map(this::getEdgeSource)
-                .collect(Collectors.toSet())
-                .stream()
-                .filter(action -> pathExists(action, source))
-                .forEach(action -> this.removeEdge(action, target));
-        if(!pathExists(source, target)) return super.addEdge(source, target);
-        else return null;
+        if(bulk) return addUnreducedEdge(source, target);
+        List<Action> redundant = new ArrayList<>();
+        for(DefaultEdge edge : incomingEdgesOf(target)) {
+            Action parent = getEdgeSource(edge);
+            if(pathExists(parent, source)) redundant.add(parent);
+        }
+        for(Action parent : redundant) super.removeEdge(parent, target);
+        if(pathExists(source, target)) return null;
+
+        DefaultEdge edge = super.addEdge(source, target);
+        if(edge != null) {
+            int from = position(source);
+            int to = position(target);
+            BitSet sources = (BitSet) ancestors.get(from).clone();
+            sources.set(from);
+            BitSet targets = (BitSet) descendants.get(to).clone();
+            targets.set(to);
+            //Actions already reaching the target already reach everything after it.
+            for(int i = sources.nextSetBit(0); i >= 0; i = sources.nextSetBit(i + 1)) {
+                if(!descendants.get(i).get(to)) union(descendants.get(i), targets);
+            }
+            for(int i = targets.nextSetBit(0); i >= 0; i = targets.nextSetBit(i + 1)) {
+                if(!ancestors.get(i).get(from)) union(ancestors.get(i), sources);
+            }
+        }
+        return edge;
+    }
+
+    /**
+     * Adds an edge as given, without removing any edges it makes redundant. Used in bulk mode and to
+     * rebuild stored flows edge for edge.
+     * @param source Source action.
+     * @param target Target action.
+     * @return The new edge, or null if it was already present.
+     */
+    DefaultEdge addUnreducedEdge(Action source, Action target) {
+        clearIndex();
+        return super.addEdge(source, target);
+    }
+
+    /**
+     * Starts adding edges in bulk. Until {@link #endBulk()} is called, {@link #addEdge(Action, Action)}
+     * adds edges without removing redundant ones.
+     */
+    public void beginBulk() {
+        bulk = true;
+    }
+
+    /**
+     * Stops adding edges in bulk and reduces the flow, so that it only keeps the edges which are not
+     * implied by other paths, whatever order the edges were added in.
+     */
+    public void endBulk() {
+        bulk = false;
+        reduce();
+    }
+
+    public boolean isBulk() {
+        return bulk;
+    }
+
+    /**
+     * Orders the actions so that every edge goes forwards, breaking ties by id.
+     * @return Actions in topological order.
+     * @throws IllegalStateException Thrown if the flow has a cycle.
+     */
+    private List<Action> topologicalOrder() {
+        Map<Action, Integer> inDegrees = new HashMap<>();
+        PriorityQueue<Action> ready = new PriorityQueue<>((o1, o2) -> Integer.compare(o1.getID(), o2.getID()));
+        for(Action action : vertexSet()) {
+            inDegrees.put(action, inDegreeOf(action));
+            if(inDegreeOf(action) == 0) ready.add(action);
+        }
+        List<Action> order = new ArrayList<>(vertexSet().size());
+        while(!ready.isEmpty()) {
+            Action action = ready.poll();
+            order.add(action);
+            for(DefaultEdge edge : outgoingEdgesOf(action)) {
+                Action child = getEdgeTarget(edge);
+                int inDegree = inDegrees.get(child) - 1;
+                inDegrees.put(child, inDegree);
+                if(inDegree == 0) ready.add(child);
+            }
+        }
+        if(order.size() < vertexSet().size()) {
+            logger.log(Level.SEVERE, "Flow contains a cycle and cannot be reduced.");
+            throw new IllegalStateException("Flow contains a cycle.");
+        }
+        return order;
+    }
+
+    /**
+     * Removes every edge implied by another path, leaving the transitive reduction of the flow.
+     * Actions are visited in reverse topological order, building for each the set of actions it
+     * reaches. The targets of an action's edges are taken in topological order, so an edge is
+     * redundant exactly when its target is already reached through an earlier target.
+     */
+    public void reduce() {
+        List<Action> order = topologicalOrder();
+        Map<Action, Integer> ranks = new HashMap<>();
+        for(int rank = 0; rank < order.size(); rank++) ranks.put(order.get(rank), rank);
+
+        BitSet[] reachable = new BitSet[order.size()];
+        for(int rank = order.size() - 1; rank >= 0; rank--) {
+            Action action = order.get(rank);
+            List<Action> children = new ArrayList<>();
+            for(DefaultEdge edge : outgoingEdgesOf(action)) children.add(getEdgeTarget(edge));
+            Collections.sort(children, (o1, o2) -> Integer.compare(ranks.get(o1), ranks.get(o2)));
+
+            BitSet reached = new BitSet();
+            for(Action child : children) {
+                int childRank = ranks.get(child);
+                if(reached.get(childRank)) super.removeEdge(action, child);
+                else {
+                    reached.set(childRank);
+                    reached.or(reachable[childRank]);
+                }
+            }
+            reachable[rank] = reached;
+        }
+        clearIndex();
+    }
+
+    private static void union(BitSet set, BitSet other) {
+        //Setting a few bits one by one is cheaper than a union over every word of a long bit set.
+        if(other.cardinality() < 64) {
+            for(int i = other.nextSetBit(0); i >= 0; i = other.nextSetBit(i + 1)) set.set(i);
+        } else set.or(other);
+    }
+
+    @Override
+    public boolean addVertex(Action action) {
+        boolean added = super.addVertex(action);
+        if(added && positions != null) {
+            positions.put(action, descendants.size());
+            descendants.add(new BitSet());
+            ancestors.add(new BitSet());
+        }
+        return added;
+    }
+
+    //Adds the given edge object as it is, as graph helpers such as Graphs.addGraph do.
+    @Override
+    public boolean addEdge(Action source, Action target, DefaultEdge edge) {
+        clearIndex();
+        return super.addEdge(source, target, edge);
+    }
+
+    @Override
+    public DefaultEdge removeEdge(Action source, Action target) {
+        clearIndex();
+        return super.removeEdge(source, target);
+    }
+
+    @Override
+    public boolean removeEdge(DefaultEdge edge) {
+        clearIndex();
+        return super.removeEdge(edge);
+    }
+
+    @Override
+    public boolean removeVertex(Action action) {
+        clearIndex();
+        return super.removeVertex(action);
+    }
+
+    @Override
+    public Object clone() {
+        //The copy is filled through addVertex and addEdge, so it must not start out sharing this index.
+        Map<Action, Integer> positions = this.positions;
+        List<BitSet> descendants = this.descendants;
+        List<BitSet> ancestors = this.ancestors;
+        clearIndex();
+        try {
+            return super.clone();
+        } finally {
+            this.positions = positions;
+            this.descendants = descendants;
+            this.ancestors = ancestors;
+        }
     }
 
     private void removeSingletons() {
@@ -127,7 +388,48 @@ public class Flow extends DefaultDirectedGraph<Action, DefaultEdge> implements S
                 .collect(Collectors.toSet());
     }
 
+    /**
+     * Lists the actions of this flow by object lemma, each list sorted by id.
+     * @return Map from lemmas to the actions with an object containing them.
+     */
+    private Map<String, List<Action>> postings() {
+        List<Action> actions = new ArrayList<>(vertexSet());
+        Collections.sort(actions, (o1, o2) -> Integer.compare(o1.getID(), o2.getID()));
+        Map<String, List<Action>> postings = new HashMap<>();
+        for(Action action : actions) {
+            for(String lemma : action.getObjectLemmas()) {
+                postings.computeIfAbsent(lemma, key -> new ArrayList<>()).add(action);
+            }
+        }
+        return postings;
+    }
+
+    /**
+     * Finds the first action in a posting list with an id greater than the given one.
+     * @param posting Actions sorted by id.
+     * @param id Action id.
+     * @return Position of the first later action, or the size of the list if there is none.
+     */
+    private static int firstAfter(List<Action> posting, int id) {
+        int low = 0;
+        int high = posting.size();
+        while(low < high) {
+            int middle = (low + high) >>> 1;
+            if(posting.get(middle).getID() <= id) low = middle + 1;
+            else high = middle;
+        }
+        return low;
+    }
+
+    /**
+     * Adds the dependencies of another flow on the actions of this one. Leaves of this flow first take
+     * their edges in the other flow, then edges to every later action sharing an object lemma, found
+     * through lists of actions by lemma rather than by comparing against every action.
+     * @param other Flow over the same actions.
+     */
     public void mergeFlows(Flow other) {
+        boolean nested = bulk;
+        if(!nested) beginBulk();
         Set<Action> endNodes = getLeaves();
 
         for(Action endNode : endNodes) {
@@ -139,21 +441,17 @@ public class Flow extends DefaultDirectedGraph<Action, DefaultEdge> implements S
         }
 
         endNodes = getLeaves();
+        Map<String, List<Action>> postings = postings();
 
         for(Action endNode : endNodes) {
-            vertexSet().stream().filter(node -> node.getID() > endNode.getID()).filter(node -> {
-                for(TaggedWord srcWord : endNode.getObjects()) {
-                    for(IndexedWord srcIndexedWord : srcWord.getTokens()) {
-                        for(TaggedWord dstWord : node.getObjects()) {
-                            for(IndexedWord dstIndexedWord : dstWord.getTokens()) {
-                                if(srcIndexedWord.lemma().equals(dstIndexedWord.lemma())) return true;
-                            }
-                        }
-                    }
-                }
-                return false;
-            }).forEach(target -> this.addEdge(endNode, target));
+            Set<Action> targets = new LinkedHashSet<>();
+            for(String lemma : endNode.getObjectLemmas()) {
+                List<Action> posting = postings.get(lemma);
+                for(int i = firstAfter(posting, endNode.getID()); i < posting.size(); i++) targets.add(posting.get(i));
+            }
+            for(Action target : targets) this.addEdge(endNode, target);
         }
+        if(!nested) endBulk();
 
         /*
         Set<Action> endNodes =  getLeaves();
@@ -0,0 +1,107 @@
+package uk.ac.cam.sp715.flows;
+
+import uk.ac.cam.sp715.recognition.TaggedWord;
+import uk.ac.cam.sp715.util.IOToolsException;
+import uk.ac.cam.sp715.util.Logging;
+import uk.ac.cam.sp715.util.StringTableDecoder;
+import uk.ac.cam.sp715.util.VarInts;
+
+import java.io.*;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static uk.ac.cam.sp715.flows.FlowWriter.*;
+
+/**
+ * Reads flows one at a time from a file written by {@link FlowWriter}. Edges are restored exactly
+ * as they were written, without being reduced again.
+ * @author Srijan Parmeshwar <sp715@cam.ac.uk>
+ */
+public class FlowReader implements Closeable {
+    private static final Logger logger = Logging.getLogger(FlowReader.class);
+
+    private final DataInputStream input;
+    private final StringTableDecoder decoder;
+    private boolean finished;
+
+    /**
+     * Opens a flow file on the given stream.
+     * @param stream Stream to read from, which is closed with the reader. Data streams are read from
+     *               directly, without reading ahead past the end of the flows.
+     * @throws IOException Thrown if the stream is not a flow file or has a newer version.
+     */
+    public FlowReader(InputStream stream) throws IOException {
+        if(stream instanceof DataInputStream) this.input = (DataInputStream) stream;
+        else this.input = new DataInputStream(new BufferedInputStream(stream));
+        this.decoder = new StringTableDecoder(input);
+        this.finished = false;
+        if(input.readInt() != MAGIC) throw new IOException("Not a flow file.");
+        int version = VarInts.read(input);
+        if(version > VERSION) throw new IOException("Unsupported flow file version " + version + ".");
+    }
+
+    private List<TaggedWord> readWords() throws IOException {
+        int size = VarInts.read(input);
+        List<TaggedWord> words = new ArrayList<>(size);
+        for(int i = 0; i < size; i++) words.add(decoder.readWord());
+        return words;
+    }
+
+    /**
+     * Reads the next flow.
+     * @return The next flow, or null if there are no more flows in the file.
+     * @throws IOException Thrown if the file is truncated or malformed.
+     */
+    public Flow read() throws IOException {
+        if(finished) return null;
+        int marker = VarInts.read(input);
+        if(marker == END) {
+            finished = true;
+            return null;
+        } else if(marker != FLOW) throw new IOException("Unknown record marker " + marker + ".");
+
+        Flow flow = new Flow();
+        int size = VarInts.read(input);
+        Action[] actions = new Action[size];
+        for(int i = 0; i < size; i++) {
+            int id = VarInts.readSigned(input);
+            TaggedWord description = decoder.readWord();
+            List<TaggedWord> dObjects = readWords();
+            List<TaggedWord> iObjects = readWords();
+            actions[i] = new Action(id, description, dObjects, iObjects);
+            flow.addVertex(actions[i]);
+        }
+
+        int edges = VarInts.read(input);
+        for(int i = 0; i < edges; i++) {
+            int source = VarInts.read(input);
+            int target = VarInts.read(input);
+            if(source >= size || target >= size) throw new IOException("Edge refers to a missing action.");
+            flow.addUnreducedEdge(actions[source], actions[target]);
+        }
+        return flow;
+    }
+
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+
+    /**
+     * Reads every flow in a binary flow file.
+     * @param filename File to be read.
+     * @return Flows in the order they were written.
+     * @throws IOToolsException Thrown when IO errors occur or the file is malformed.
+     */
+    public static List<Flow> read(String filename) throws IOToolsException {
+        try(FlowReader reader = new FlowReader(new FileInputStream(filename))) {
+            List<Flow> flows = new ArrayList<>();
+            for(Flow flow = reader.read(); flow != null; flow = reader.read()) flows.add(flow);
+            return flows;
+        } catch(IOException ioException) {
+            logger.log(Level.SEVERE, "Could not read flows from file.", ioException);
+            throw new IOToolsException();
+        }
+    }
+}
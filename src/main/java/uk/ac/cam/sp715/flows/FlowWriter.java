@@ -0,0 +1,120 @@
+package uk.ac.cam.sp715.flows;
+
+import org.jgrapht.graph.DefaultEdge;
+import uk.ac.cam.sp715.recognition.TaggedWord;
+import uk.ac.cam.sp715.util.IOToolsException;
+import uk.ac.cam.sp715.util.Logging;
+import uk.ac.cam.sp715.util.StringTableEncoder;
+import uk.ac.cam.sp715.util.VarInts;
+
+import java.io.*;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Writes flows one after another in a compact binary format, read back by {@link FlowReader}.
+ * <p>
+ * The file starts with a magic number and a format version. Each flow is preceded by a marker
+ * and lists its actions, then its edges as pairs of positions in that list, both in the order the
+ * flow iterates over them so that reading the flow back gives the same iteration order. An action
+ * is its id, its description and its direct and indirect objects, and each {@link TaggedWord}
+ * and its strings are written by a {@link StringTableEncoder} whose table is shared by the
+ * whole file. Integers are variable length. A zero marker ends the file.
+ * @author Srijan Parmeshwar <sp715@cam.ac.uk>
+ */
+public class FlowWriter implements Closeable {
+    static final int MAGIC = 0x52464C57;
+    static final int VERSION = 1;
+
+    //Markers before each flow and at the end of the file.
+    static final int FLOW = 1;
+    static final int END = 0;
+
+    private static final Logger logger = Logging.getLogger(FlowWriter.class);
+
+    private final DataOutputStream output;
+    private final StringTableEncoder encoder;
+
+    /**
+     * Starts a flow file on the given stream.
+     * @param stream Stream to write to, which is closed with the writer. Data streams are written to
+     *               directly, so that flows can be embedded in a larger file.
+     * @throws IOException Thrown if the header cannot be written.
+     */
+    public FlowWriter(OutputStream stream) throws IOException {
+        if(stream instanceof DataOutputStream) this.output = (DataOutputStream) stream;
+        else this.output = new DataOutputStream(new BufferedOutputStream(stream));
+        this.encoder = new StringTableEncoder(output);
+        output.writeInt(MAGIC);
+        VarInts.write(output, VERSION);
+    }
+
+    private void writeWords(List<TaggedWord> words) throws IOException {
+        VarInts.write(output, words.size());
+        for(TaggedWord word : words) encoder.writeWord(word);
+    }
+
+    /**
+     * Appends a flow to the file.
+     * @param flow Flow to be written.
+     * @throws IOException Thrown if the flow cannot be written.
+     */
+    public void write(Flow flow) throws IOException {
+        List<Action> actions = new ArrayList<>(flow.vertexSet());
+        Map<Action, Integer> positions = new HashMap<>();
+        for(int i = 0; i < actions.size(); i++) positions.put(actions.get(i), i);
+
+        VarInts.write(output, FLOW);
+        VarInts.write(output, actions.size());
+        for(Action action : actions) {
+            VarInts.writeSigned(output, action.getID());
+            encoder.writeWord(action.getDescription());
+            writeWords(action.getDObjects());
+            writeWords(action.getIObjects());
+        }
+
+        VarInts.write(output, flow.edgeSet().size());
+        for(DefaultEdge edge : flow.edgeSet()) {
+            VarInts.write(output, positions.get(flow.getEdgeSource(edge)));
+            VarInts.write(output, positions.get(flow.getEdgeTarget(edge)));
+        }
+    }
+
+    /**
+     * Ends the file without closing the underlying stream.
+     * @throws IOException Thrown if the end of the file cannot be written.
+     */
+    public void finish() throws IOException {
+        VarInts.write(output, END);
+        output.flush();
+    }
+
+    /**
+     * Ends the file and closes the underlying stream.
+     * @throws IOException Thrown if the end of the file cannot be written.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        } finally {
+            output.close();
+        }
+    }
+
+    /**
+     * Saves flows to a binary flow file.
+     * @param flows Flows to be saved, in the order they will be read back.
+     * @param filename Filename.
+     * @throws IOToolsException Thrown when IO errors occur.
+     */
+    public static void save(Collection<Flow> flows, String filename) throws IOToolsException {
+        try(FlowWriter writer = new FlowWriter(new FileOutputStream(filename))) {
+            for(Flow flow : flows) writer.write(flow);
+        } catch(IOException ioException) {
+            logger.log(Level.SEVERE, "Could not write flows to file.", ioException);
+            throw new IOToolsException();
+        }
+    }
+}
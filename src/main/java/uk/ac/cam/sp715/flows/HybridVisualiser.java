@@ -1,9 +1,12 @@
 package uk.ac.cam.sp715.flows;
 
 import edu.stanford.nlp.classify.Classifier;
+import edu.stanford.nlp.classify.LogisticClassifier;
 import edu.stanford.nlp.ling.IndexedWord;
 import org.jgrapht.graph.DefaultEdge;
 import uk.ac.cam.sp715.ml.DataHandler;
+import uk.ac.cam.sp715.ml.FeatureMatrix;
+import uk.ac.cam.sp715.ml.LinearScorer;
 import uk.ac.cam.sp715.recipes.Recipe;
 import uk.ac.cam.sp715.recognition.TaggedWord;
 import uk.ac.cam.sp715.util.IOToolsException;
@@ -16,12 +19,31 @@ import java.util.stream.Collectors;
  * Created by Srijan on 18/01/2016.
  */
 public class HybridVisualiser extends Visualiser {
+    //Number of action pairs above which pairs are scored in parallel.
+    private static final int PARALLEL_PAIRS = 4096;
+    private static final PairPruner DEFAULT_PRUNER = new PairPruner(2, 0);
     private final Classifier<Boolean, String> dependencyClassifier;
+    private final LinearScorer<Boolean> scorer;
     private final CoreNLPVisualiser visualiser;
+    private final PairPruner pruner;
     public HybridVisualiser(CoreNLPVisualiser visualiser) {
+        this(visualiser, DEFAULT_PRUNER);
+    }
+
+    /**
+     * Constructs a visualiser which only classifies the pairs of actions kept by a pruner.
+     * Pairs which are pruned are taken to have no dependency.
+     * @param visualiser Heuristic visualiser whose flow is refined.
+     * @param pruner Pruner choosing the pairs of actions to classify, or {@link PairPruner#NONE}.
+     */
+    public HybridVisualiser(CoreNLPVisualiser visualiser, PairPruner pruner) {
         try {
             this.visualiser = visualiser;
+            this.pruner = pruner;
             this.dependencyClassifier = DataHandler.getDependencyClassifier();
+            if(dependencyClassifier instanceof LogisticClassifier) {
+                this.scorer = new LinearScorer<>((LogisticClassifier<Boolean, String>) dependencyClassifier, FeatureVectors.PAIR_FEATURE_TEMPLATES);
+            } else this.scorer = null;
         } catch (IOToolsException | IOException e) {
             throw new RuntimeException(e.getMessage());
         }
@@ -29,23 +51,33 @@ public class HybridVisualiser extends Visualiser {
     @Override
     public Flow parse(Recipe recipe) {
         Flow flow = new Flow();
+        flow.beginBulk();
         Flow heuristicFlow = visualiser.parse(recipe);
 
         List<Action> actions = new ArrayList<>(heuristicFlow.vertexSet());
         Collections.sort(actions, (o1, o2) -> Integer.compare(o1.getID(), o2.getID()));
         for(Action action : actions) flow.addVertex(action);
 
-        for(Action src : actions) {
-            for(Action dst : actions) {
-                if(src.getID() < dst.getID()) {
-                    if(dependencyClassifier.classOf(FeatureVectors.getDatum(src, dst, heuristicFlow))) {
-                        flow.addEdge(src, dst);
-                    }
+        ActionPairs pairs = pruner.candidates(actions, heuristicFlow);
+        if(scorer == null) {
+            for(int pair = 0; pair < pairs.size(); pair++) {
+                Action src = actions.get(pairs.source(pair));
+                Action dst = actions.get(pairs.destination(pair));
+                if(dependencyClassifier.classOf(FeatureVectors.getDatum(src, dst, heuristicFlow))) {
+                    flow.addEdge(src, dst);
                 }
             }
+        } else {
+            //Score every pair in one pass, then add edges in order.
+            FeatureMatrix features = FeatureVectors.getPairFeatureIds(actions, pairs, heuristicFlow, scorer.getFeatureIndex());
+            int[] labels = scorer.bestLabels(features, features.rows() > PARALLEL_PAIRS);
+            for(int pair = 0; pair < pairs.size(); pair++) {
+                if(scorer.labels().get(labels[pair])) flow.addEdge(actions.get(pairs.source(pair)), actions.get(pairs.destination(pair)));
+            }
         }
 
         flow.mergeFlows(heuristicFlow);
+        flow.endBulk();
         return flow;
     }
 }
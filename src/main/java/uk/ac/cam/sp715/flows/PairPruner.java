@@ -0,0 +1,86 @@
+package uk.ac.cam.sp715.flows;
+
+import org.jgrapht.graph.DefaultEdge;
+
+import java.util.*;
+
+/**
+ * Chooses which pairs of actions {@link HybridVisualiser} should classify. A pair is kept if the
+ * actions are close together in the recipe, if their objects share a lemma, or if the heuristic
+ * flow already links them. The remaining pairs are distant, unrelated and almost always classified
+ * as having no dependency, so in long recipes pruning them removes most of the quadratic work.
+ * Pairs sharing a lemma are found through an inverted index from lemmas to actions.
+ * @author Srijan Parmeshwar <sp715@cam.ac.uk>
+ */
+public class PairPruner {
+    /**
+     * Pruner which keeps every pair.
+     */
+    public static final PairPruner NONE = new PairPruner(Integer.MAX_VALUE, Integer.MAX_VALUE);
+
+    private final int actionWindow;
+    private final int sentenceWindow;
+
+    /**
+     * Constructs a pruner.
+     * @param actionWindow Pairs whose ids differ by at most this much are always kept.
+     * @param sentenceWindow Pairs whose sentences differ by at most this much are always kept.
+     */
+    public PairPruner(int actionWindow, int sentenceWindow) {
+        if(actionWindow < 0 || sentenceWindow < 0) throw new IllegalArgumentException("Pruning windows must not be negative.");
+        this.actionWindow = actionWindow;
+        this.sentenceWindow = sentenceWindow;
+    }
+
+    private boolean inWindow(Action src, Action dst) {
+        return (long) dst.getID() - src.getID() <= actionWindow
+                || (long) dst.sentIndex() - src.sentIndex() <= sentenceWindow;
+    }
+
+    /**
+     * Finds the pairs of actions to classify, in the order given by {@link ActionPairs#all(List)}.
+     * @param actions Actions of a recipe sorted by id, which follows their order in the text.
+     * @param flow Heuristic flow for the recipe.
+     * @return Pairs to classify.
+     */
+    public ActionPairs candidates(List<Action> actions, Flow flow) {
+        if(this == NONE) return ActionPairs.all(actions);
+
+        int count = actions.size();
+        Map<Action, Integer> positions = new HashMap<>();
+        Map<String, List<Integer>> postings = new HashMap<>();
+        for(int i = 0; i < count; i++) {
+            positions.put(actions.get(i), i);
+            for(String lemma : actions.get(i).getObjectLemmas()) {
+                postings.computeIfAbsent(lemma, key -> new ArrayList<>()).add(i);
+            }
+        }
+
+        ActionPairs pairs = new ActionPairs(count * Math.min(count, 8));
+        BitSet destinations = new BitSet(count);
+        for(int i = 0; i < count; i++) {
+            Action src = actions.get(i);
+            destinations.clear();
+            for(int j = i + 1; j < count && inWindow(src, actions.get(j)); j++) destinations.set(j);
+            for(String lemma : src.getObjectLemmas()) {
+                List<Integer> posting = postings.get(lemma);
+                for(int k = posting.size() - 1; k >= 0 && posting.get(k) > i; k--) destinations.set(posting.get(k));
+            }
+            if(flow.containsVertex(src)) {
+                for(DefaultEdge edge : flow.outgoingEdgesOf(src)) {
+                    Integer j = positions.get(flow.getEdgeTarget(edge));
+                    if(j != null && j > i) destinations.set(j);
+                }
+            }
+            for(int j = destinations.nextSetBit(i + 1); j >= 0; j = destinations.nextSetBit(j + 1)) {
+                if(src.getID() < actions.get(j).getID()) pairs.add(i, j);
+            }
+        }
+        return pairs;
+    }
+
+    @Override
+    public String toString() {
+        return this == NONE ? "no pruning" : "actions within " + actionWindow + ", sentences within " + sentenceWindow;
+    }
+}
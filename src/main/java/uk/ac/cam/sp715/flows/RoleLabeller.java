@@ -0,0 +1,52 @@
+package uk.ac.cam.sp715.flows;
+
+import edu.stanford.nlp.classify.Classifier;
+import edu.stanford.nlp.classify.LinearClassifier;
+import edu.stanford.nlp.ling.BasicDatum;
+import uk.ac.cam.sp715.ml.FeatureBuffer;
+import uk.ac.cam.sp715.ml.LinearScorer;
+import uk.ac.cam.sp715.recognition.EntityAnnotator.AugmentedSemanticGraph;
+
+/**
+ * Labels tokens with their semantic role using a trained classifier. For a {@link LinearClassifier}
+ * the weights are copied into a {@link LinearScorer} and tokens are scored from their feature ids in
+ * a reusable buffer, so labelling a token does not allocate. Other classifiers are given string
+ * features as before. A labeller reuses its buffer, so it should only be used by one thread at a time.
+ * @author Srijan Parmeshwar <sp715@cam.ac.uk>
+ */
+public class RoleLabeller {
+    private final Classifier<Role, String> classifier;
+    private final LinearScorer<Role> scorer;
+    private final Role[] roles;
+    private final FeatureBuffer buffer;
+
+    /**
+     * Constructs a labeller.
+     * @param classifier Trained role classifier over the features from {@link FeatureVectors#getFeatures}.
+     */
+    public RoleLabeller(Classifier<Role, String> classifier) {
+        this.classifier = classifier;
+        this.buffer = new FeatureBuffer();
+        if(classifier instanceof LinearClassifier) {
+            this.scorer = new LinearScorer<>((LinearClassifier<Role, String>) classifier, FeatureVectors.TOKEN_FEATURE_TEMPLATES);
+            this.roles = scorer.labels().toArray(new Role[scorer.labels().size()]);
+        } else {
+            this.scorer = null;
+            this.roles = null;
+        }
+    }
+
+    /**
+     * Finds the role of a token.
+     * @param dependencies Dependencies in the sentence containing the token.
+     * @param position Position of the token in {@link AugmentedSemanticGraph#orderedTokens()}.
+     * @return The role of the token.
+     */
+    public Role roleOf(AugmentedSemanticGraph dependencies, int position) {
+        if(scorer == null) {
+            return classifier.classOf(new BasicDatum<>(FeatureVectors.getFeatures(dependencies.tokenAt(position), position, dependencies, dependencies.orderedTokens())));
+        }
+        FeatureVectors.getFeatureIds(position, dependencies, scorer.getFeatureIndex(), buffer);
+        return roles[scorer.bestLabel(buffer)];
+    }
+}
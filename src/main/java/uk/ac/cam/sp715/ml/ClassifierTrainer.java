@@ -13,8 +13,12 @@ import uk.ac.cam.sp715.flows.Role;
  */
 public class ClassifierTrainer {
     private static final LinearClassifierFactory<Role, String> lcFactory = new LinearClassifierFactory<>();
-    public static Classifier<Role, String> train(GeneralDataset<Role, String> dataset) {
+    public static LinearClassifier<Role, String> train(GeneralDataset<Role, String> dataset) {
         return lcFactory.trainClassifier(dataset);
     }
 
+    public static LinearClassifier<Role, String> train(TrainingMatrix<Role> matrix) {
+        return train(matrix.toDataset());
+    }
+
 }
@@ -0,0 +1,419 @@
+package uk.ac.cam.sp715.ml;
+
+import edu.stanford.nlp.classify.*;
+import edu.stanford.nlp.stats.Counters;
+import edu.stanford.nlp.util.Index;
+import uk.ac.cam.sp715.flows.FeatureVectors;
+import uk.ac.cam.sp715.flows.Role;
+import uk.ac.cam.sp715.util.IOTools;
+import uk.ac.cam.sp715.util.IOToolsException;
+import uk.ac.cam.sp715.util.Logging;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.function.ToIntFunction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Compares classifier configurations by k-fold cross validation. A configuration is a choice of feature
+ * set, given as one of several datasets describing the same examples in the same order, and a
+ * regularization strength. Each feature set is turned into rows of feature ids once, and every fold
+ * of every configuration trains on the same shared rows, so folds and configurations can be run in
+ * parallel without copying the data. Folds are contiguous, as in {@link GeneralDataset#splitOutFold(int, int)},
+ * so examples from the same recipe mostly stay in the same fold.
+ * @param <L> The label type.
+ * @author Srijan Parmeshwar <sp715@cam.ac.uk>
+ */
+public class CrossValidator<L> {
+    private static final Logger logger = Logging.getLogger(CrossValidator.class);
+
+    /**
+     * Trains a classifier with the given regularization and returns a function from the feature ids of an
+     * example to the id of its predicted label, in the label index of the training data.
+     * @param <L> The label type.
+     */
+    public interface Learner<L> {
+        ToIntFunction<int[]> train(GeneralDataset<L, String> dataset, double sigma);
+    }
+
+    /**
+     * Multiclass {@link LinearClassifier}, as trained by {@link ClassifierTrainer} for role labelling.
+     * @param <L> The label type.
+     * @return Learner with a quadratic prior of the given sigma.
+     */
+    public static <L> Learner<L> linear() {
+        return (dataset, sigma) -> {
+            LinearClassifierFactory<L, String> factory = new LinearClassifierFactory<>();
+            factory.setSigma(sigma);
+            LinearClassifier<L, String> classifier = factory.trainClassifier(dataset);
+            Index<L> labelIndex = dataset.labelIndex();
+            return features -> labelIndex.indexOf(Counters.argmax(classifier.scoresOf(features)));
+        };
+    }
+
+    /**
+     * Binary {@link LogisticClassifier}, as trained for dependencies between actions.
+     * @param <L> The label type.
+     * @return Learner with a quadratic prior of the given sigma.
+     */
+    public static <L> Learner<L> logistic() {
+        return (dataset, sigma) -> {
+            LogisticClassifierFactory<L, String> factory = new LogisticClassifierFactory<>();
+            LogisticClassifier<L, String> classifier = factory.trainClassifier(dataset, 0.0, 1e-4,
+                    new LogPrior(LogPrior.LogPriorType.QUADRATIC, sigma, 0.1));
+            double[] weights = classifier.getWeights();
+            int positive = dataset.labelIndex().indexOf(classifier.getLabelForInternalPositiveClass());
+            int negative = dataset.labelIndex().indexOf(classifier.getLabelForInternalNegativeClass());
+            return features -> {
+                double score = 0;
+                for(int feature : features) score += weights[feature];
+                return score > 0 ? positive : negative;
+            };
+        };
+    }
+
+    /**
+     * A feature set and regularization strength to be evaluated.
+     */
+    public static class Configuration {
+        private final String features;
+        private final double sigma;
+
+        public Configuration(String features, double sigma) {
+            this.features = features;
+            this.sigma = sigma;
+        }
+
+        public String getFeatures() {
+            return features;
+        }
+
+        public double getSigma() {
+            return sigma;
+        }
+
+        @Override
+        public String toString() {
+            return features + ", sigma=" + sigma;
+        }
+    }
+
+    /**
+     * Every combination of the given feature sets and regularization strengths.
+     * @param features Names of the feature sets.
+     * @param sigmas Regularization strengths.
+     * @return Configurations in order of feature set and then sigma.
+     */
+    public static List<Configuration> grid(Collection<String> features, double... sigmas) {
+        List<Configuration> configurations = new ArrayList<>();
+        for(String feature : features) {
+            for(double sigma : sigmas) configurations.add(new Configuration(feature, sigma));
+        }
+        return configurations;
+    }
+
+    /**
+     * Random configurations, with feature sets chosen uniformly and sigmas log uniformly between the bounds.
+     * @param features Names of the feature sets.
+     * @param minSigma Smallest regularization strength.
+     * @param maxSigma Largest regularization strength.
+     * @param count Number of configurations.
+     * @param seed Seed of the random choices.
+     * @return Configurations in the order they were drawn.
+     */
+    public static List<Configuration> random(Collection<String> features, double minSigma, double maxSigma, int count, long seed) {
+        List<String> names = new ArrayList<>(features);
+        Random random = new Random(seed);
+        List<Configuration> configurations = new ArrayList<>();
+        for(int i = 0; i < count; i++) {
+            double sigma = Math.exp(Math.log(minSigma) + random.nextDouble() * (Math.log(maxSigma) - Math.log(minSigma)));
+            configurations.add(new Configuration(names.get(random.nextInt(names.size())), sigma));
+        }
+        return configurations;
+    }
+
+    /**
+     * Cross validated performance of a configuration.
+     */
+    public class Result {
+        private final Configuration configuration;
+        private final double[] accuracies;
+        //Counts pooled over all folds, indexed by label.
+        private final int[] truePositives;
+        private final int[] falsePositives;
+        private final int[] falseNegatives;
+
+        private Result(Configuration configuration, double[] accuracies, int[] truePositives, int[] falsePositives, int[] falseNegatives) {
+            this.configuration = configuration;
+            this.accuracies = accuracies;
+            this.truePositives = truePositives;
+            this.falsePositives = falsePositives;
+            this.falseNegatives = falseNegatives;
+        }
+
+        public Configuration getConfiguration() {
+            return configuration;
+        }
+
+        /**
+         * @return Accuracy on each fold, in order.
+         */
+        public double[] getFoldAccuracies() {
+            return accuracies.clone();
+        }
+
+        public double getAccuracy() {
+            return Arrays.stream(accuracies).average().orElse(0);
+        }
+
+        /**
+         * @return Standard deviation of the accuracy over folds.
+         */
+        public double getDeviation() {
+            double mean = getAccuracy();
+            return Math.sqrt(Arrays.stream(accuracies).map(accuracy -> (accuracy - mean) * (accuracy - mean)).average().orElse(0));
+        }
+
+        public double getPrecision(L label) {
+            int id = labels.indexOf(label);
+            return ratio(truePositives[id], truePositives[id] + falsePositives[id]);
+        }
+
+        public double getRecall(L label) {
+            int id = labels.indexOf(label);
+            return ratio(truePositives[id], truePositives[id] + falseNegatives[id]);
+        }
+
+        public double getF1Score(L label) {
+            int id = labels.indexOf(label);
+            return ratio(2 * truePositives[id], 2 * truePositives[id] + falsePositives[id] + falseNegatives[id]);
+        }
+
+        /**
+         * @return Mean of the F1 scores of the labels.
+         */
+        public double getMacroF1Score() {
+            return labels.stream().mapToDouble(this::getF1Score).average().orElse(0);
+        }
+    }
+
+    private static double ratio(int numerator, int denominator) {
+        return denominator == 0 ? 0 : (double) numerator / denominator;
+    }
+
+    /**
+     * Rows of feature ids of one feature set.
+     */
+    private static class FeatureSet<L> {
+        private final Index<L> labelIndex;
+        private final Index<String> featureIndex;
+        private final int[][] data;
+        private final int[] labels;
+        private FeatureSet(GeneralDataset<L, String> dataset) {
+            this.labelIndex = dataset.labelIndex();
+            this.featureIndex = dataset.featureIndex();
+            this.data = Arrays.copyOf(dataset.getDataArray(), dataset.size());
+            this.labels = Arrays.copyOf(dataset.getLabelsArray(), dataset.size());
+        }
+    }
+
+    private final Map<String, FeatureSet<L>> featureSets;
+    private final List<L> labels;
+    private final int size;
+    private final int folds;
+    private final Learner<L> learner;
+
+    /**
+     * Constructs a cross validator over feature sets describing the same examples.
+     * @param features Datasets of each feature set by name, with the same labelled examples in the same order.
+     * @param folds Number of folds.
+     * @param learner Trains the classifiers.
+     */
+    public CrossValidator(Map<String, GeneralDataset<L, String>> features, int folds, Learner<L> learner) {
+        if(features.isEmpty()) throw new IllegalArgumentException("No feature sets given.");
+        this.featureSets = new LinkedHashMap<>();
+        this.folds = folds;
+        this.learner = learner;
+
+        GeneralDataset<L, String> first = features.values().iterator().next();
+        this.size = first.size();
+        this.labels = Collections.unmodifiableList(new ArrayList<>(first.labelIndex().objectsList()));
+        if(folds < 2 || folds > size) throw new IllegalArgumentException("Cannot split " + size + " examples into " + folds + " folds.");
+        for(Map.Entry<String, GeneralDataset<L, String>> entry : features.entrySet()) {
+            FeatureSet<L> featureSet = new FeatureSet<>(entry.getValue());
+            if(featureSet.data.length != size) throw new IllegalArgumentException("Feature set " + entry.getKey() + " has a different number of examples.");
+            for(int i = 0; i < size; i++) {
+                if(!labels.get(first.getLabelsArray()[i]).equals(featureSet.labelIndex.get(featureSet.labels[i]))) {
+                    throw new IllegalArgumentException("Feature set " + entry.getKey() + " has different labels.");
+                }
+            }
+            featureSets.put(entry.getKey(), featureSet);
+        }
+    }
+
+    public List<L> labels() {
+        return labels;
+    }
+
+    /**
+     * Names of the feature sets, for building configurations.
+     * @return Feature set names in the order they were given.
+     */
+    public Set<String> featureSets() {
+        return Collections.unmodifiableSet(featureSets.keySet());
+    }
+
+    //Examples from start to end are held out, with the same boundaries as GeneralDataset.splitOutFold.
+    private int foldStart(int fold) {
+        return (size / folds) * fold;
+    }
+
+    private int foldEnd(int fold) {
+        return fold == folds - 1 ? size : foldStart(fold) + size / folds;
+    }
+
+    /**
+     * Counts of one fold, indexed as in {@link Result}.
+     */
+    private class FoldResult {
+        private final double accuracy;
+        private final int[] truePositives = new int[labels.size()];
+        private final int[] falsePositives = new int[labels.size()];
+        private final int[] falseNegatives = new int[labels.size()];
+
+        private FoldResult(FeatureSet<L> featureSet, int fold, double sigma) {
+            int start = foldStart(fold);
+            int end = foldEnd(fold);
+            int trainSize = size - (end - start);
+            int[][] data = new int[trainSize][];
+            int[] labelIds = new int[trainSize];
+            System.arraycopy(featureSet.data, 0, data, 0, start);
+            System.arraycopy(featureSet.data, end, data, start, size - end);
+            System.arraycopy(featureSet.labels, 0, labelIds, 0, start);
+            System.arraycopy(featureSet.labels, end, labelIds, start, size - end);
+            GeneralDataset<L, String> train = new Dataset<>(featureSet.labelIndex, labelIds, featureSet.featureIndex, data, trainSize);
+            ToIntFunction<int[]> classifier = learner.train(train, sigma);
+
+            int correct = 0;
+            for(int i = start; i < end; i++) {
+                int gold = labels.indexOf(featureSet.labelIndex.get(featureSet.labels[i]));
+                int guess = labels.indexOf(featureSet.labelIndex.get(classifier.applyAsInt(featureSet.data[i])));
+                if(gold == guess) {
+                    correct++;
+                    truePositives[gold]++;
+                } else {
+                    falseNegatives[gold]++;
+                    falsePositives[guess]++;
+                }
+            }
+            this.accuracy = (double) correct / (end - start);
+        }
+    }
+
+    /**
+     * Evaluates configurations, training one classifier for each fold of each configuration.
+     * @param configurations Configurations to evaluate, with feature sets from {@link #featureSets()}.
+     * @param parallel Whether folds and configurations should be run in parallel on the common fork-join pool.
+     * @return Result of each configuration, in order.
+     */
+    public List<Result> evaluate(List<Configuration> configurations, boolean parallel) {
+        for(Configuration configuration : configurations) {
+            if(!featureSets.containsKey(configuration.getFeatures())) {
+                throw new IllegalArgumentException("Unknown feature set " + configuration.getFeatures() + ".");
+            }
+        }
+
+        IntStream tasks = IntStream.range(0, configurations.size() * folds);
+        if(parallel) tasks = tasks.parallel();
+        List<FoldResult> foldResults = tasks.mapToObj(task -> {
+            Configuration configuration = configurations.get(task / folds);
+            return new FoldResult(featureSets.get(configuration.getFeatures()), task % folds, configuration.getSigma());
+        }).collect(Collectors.toList());
+
+        List<Result> results = new ArrayList<>();
+        for(int i = 0; i < configurations.size(); i++) {
+            double[] accuracies = new double[folds];
+            int[] truePositives = new int[labels.size()];
+            int[] falsePositives = new int[labels.size()];
+            int[] falseNegatives = new int[labels.size()];
+            for(int fold = 0; fold < folds; fold++) {
+                FoldResult foldResult = foldResults.get(i * folds + fold);
+                accuracies[fold] = foldResult.accuracy;
+                for(int label = 0; label < labels.size(); label++) {
+                    truePositives[label] += foldResult.truePositives[label];
+                    falsePositives[label] += foldResult.falsePositives[label];
+                    falseNegatives[label] += foldResult.falseNegatives[label];
+                }
+            }
+            results.add(new Result(configurations.get(i), accuracies, truePositives, falsePositives, falseNegatives));
+        }
+        return results;
+    }
+
+    /**
+     * Formats results as comma separated lines, with a header line, best accuracy first.
+     * @param results Results to be formatted.
+     * @return Lines of the table.
+     */
+    public List<String> table(List<Result> results) {
+        List<String> lines = new ArrayList<>();
+        StringBuilder header = new StringBuilder("features,sigma,accuracy,deviation,macroF1");
+        for(L label : labels) header.append(",F1 ").append(label);
+        lines.add(header.toString());
+
+        List<Result> sorted = new ArrayList<>(results);
+        sorted.sort((a, b) -> Double.compare(b.getAccuracy(), a.getAccuracy()));
+        for(Result result : sorted) {
+            StringBuilder line = new StringBuilder();
+            line.append(result.getConfiguration().getFeatures()).append(',')
+                    .append(result.getConfiguration().getSigma()).append(',')
+                    .append(result.getAccuracy()).append(',')
+                    .append(result.getDeviation()).append(',')
+                    .append(result.getMacroF1Score());
+            for(L label : labels) line.append(',').append(result.getF1Score(label));
+            lines.add(line.toString());
+        }
+        return lines;
+    }
+
+    private static <L> void search(String name, CrossValidator<L> validator, List<Configuration> configurations) throws IOToolsException {
+        long start = System.nanoTime();
+        List<CrossValidator<L>.Result> results = validator.evaluate(configurations, true);
+        logger.log(Level.INFO, "Evaluated " + configurations.size() + " configurations of the " + name + " classifier in "
+                + (System.nanoTime() - start) / 1000000 + " ms.");
+        IOTools.save(validator.table(results), Paths.get("data", "cross-validation-" + name + ".csv"));
+    }
+
+    /**
+     * Searches over the regularization and feature templates of the role classifier and the regularization of the
+     * dependency classifier, writing a table of results for each to {@code data}. The advanced role features are
+     * only tried when the stored annotations they are extracted from are present.
+     * @param args Ignored.
+     * @throws IOToolsException Thrown if the training data cannot be read or the results cannot be written.
+     * @throws IOException Thrown if the dependency training data cannot be read.
+     */
+    public static void main(String[] args) throws IOToolsException, IOException {
+        double[] sigmas = {0.25, 0.5, 1, 2, 4, 8};
+
+        Map<String, GeneralDataset<Role, String>> roleFeatures = new LinkedHashMap<>();
+        Path annotations = Paths.get("data", "annotations.graphs");
+        if(Files.exists(annotations)) {
+            for(FeatureVectors.TokenFeatures templates : FeatureVectors.TokenFeatures.values()) {
+                roleFeatures.put(templates.name().toLowerCase(), SRLDataHandler.buildTrainingData(templates));
+            }
+        } else roleFeatures.put(FeatureVectors.TokenFeatures.ORIGINAL.name().toLowerCase(), SRLDataHandler.loadTrainingData(4));
+        CrossValidator<Role> roles = new CrossValidator<>(roleFeatures, 10, linear());
+        search("srl", roles, grid(roles.featureSets(), sigmas));
+
+        Map<String, GeneralDataset<Boolean, String>> dependencyFeatures = new LinkedHashMap<>();
+        dependencyFeatures.put("pairs", DataHandler.loadDependencyData());
+        CrossValidator<Boolean> dependencies = new CrossValidator<>(dependencyFeatures, 10, logistic());
+        search("dependencies", dependencies, grid(dependencies.featureSets(), sigmas));
+    }
+}
@@ -8,8 +8,10 @@ import edu.stanford.nlp.ling.Datum;
 import edu.stanford.nlp.pipeline.Annotation;
 import edu.stanford.nlp.util.CoreMap;
 import uk.ac.cam.sp715.flows.*;
+import uk.ac.cam.sp715.recipes.CorpusReader;
 import uk.ac.cam.sp715.recipes.Ingredient;
 import uk.ac.cam.sp715.recipes.Recipe;
+import uk.ac.cam.sp715.recognition.AnnotationReader;
 import uk.ac.cam.sp715.recognition.TaggedWord;
 import uk.ac.cam.sp715.util.*;
 
@@ -38,22 +40,50 @@ public class DataHandler {
 
     private static void serializeFlows() throws IOToolsException {
         Visualiser visualiser = new CoreNLPVisualiser(Pipeline.getMainPipeline());
-        List<Recipe> recipes = IOTools.read(getPath("recipes.ser").toString());
         LinkedList<Flow> flows = new LinkedList<>();
 
-        for(Recipe recipe : recipes) {
-            flows.add(visualiser.parse(recipe));
+        try(CorpusReader recipes = CorpusReader.open(getPath("recipes.corpus").toString())) {
+            for(Recipe recipe : recipes) {
+                flows.add(visualiser.parse(recipe));
+            }
         }
 
-        IOTools.save(flows, getPath("heuristic-flows.ser").toString());
+        FlowWriter.save(flows, getPath("heuristic-flows.flows").toString());
     }
 
+    //Increase when the training of the dependency classifier changes, so that stored models are retrained.
+    private static final int DEPENDENCY_CLASSIFIER_VERSION = 1;
+
+    /**
+     * Classifier for dependencies between actions, loaded from the {@link ModelRegistry} unless the
+     * training data has changed since it was stored.
+     * @return Trained dependency classifier.
+     * @throws IOException Thrown if the training data cannot be read.
+     * @throws IOToolsException Thrown if the training data cannot be read.
+     */
     public static Classifier<Boolean, String> getDependencyClassifier() throws IOException, IOToolsException {
+        String fingerprint = ModelRegistry.fingerprint(DEPENDENCY_CLASSIFIER_VERSION, FeatureVectors.PAIR_FEATURE_TEMPLATES,
+                getPath("action-dep.txt"), getPath("heuristic-flows.flows"));
+        return ModelRegistry.getDefault().get("dependencies", fingerprint, Codecs.DEPENDENCY_CLASSIFIER,
+                DataHandler::trainDependencyClassifier);
+    }
+
+    private static LogisticClassifier<Boolean, String> trainDependencyClassifier() throws IOException, IOToolsException {
+        LogisticClassifierFactory<Boolean, String> factory = new LogisticClassifierFactory<>();
+        return factory.trainClassifier(loadDependencyData());
+    }
+
+    /**
+     * Builds the training data for the dependency classifier from the annotated dependencies between
+     * the actions of the heuristic flows.
+     * @return Dataset with a datum for each pair of actions, labelled with whether they depend on each other.
+     * @throws IOException Thrown if the annotated dependencies cannot be read.
+     * @throws IOToolsException Thrown if the heuristic flows cannot be read.
+     */
+    public static GeneralDataset<Boolean, String> loadDependencyData() throws IOException, IOToolsException {
         GeneralDataset<Boolean, String> dataset = new Dataset<>();
         List<String> lines = Files.lines(getPath("action-dep.txt")).collect(Collectors.toList());
-        List<Annotation> annotations = IOTools.read(getPath("annotations.ser").toString());
-        List<Recipe> recipes = IOTools.read(getPath("recipes.ser").toString());
-        List<Flow> flows = IOTools.read(getPath("heuristic-flows.ser").toString());
+        List<Flow> flows = FlowReader.read(getPath("heuristic-flows.flows").toString());
 
         int count = 0;
         int recipeIndex = 0;
@@ -124,35 +154,34 @@ public class DataHandler {
 
         dataset.summaryStatistics();
         //dataset.printSparseFeatureMatrix();
-        LogisticClassifierFactory<Boolean, String> factory = new LogisticClassifierFactory<>();
-        return factory.trainClassifier(dataset);
+        return dataset;
     }
 
     private static void runDepTrainingPrep() throws IOToolsException {
-        List<Annotation> annotations = IOTools.read(getPath("annotations.ser").toString());
         Classifier<Role, String> classifier = SRLDataHandler.getClassifier(4);
         int index = 0;
 
         List<String> lines = new LinkedList<>();
-        for (Annotation annotation : annotations) {
-            for (CoreMap sentence : annotation.get(CoreAnnotations.SentencesAnnotation.class)) {
-                AugmentedSemanticGraph dependencies = sentence.get(EntityAnnotations.class);
-                List<TaggedWord> tokens = dependencies.orderedTokens();
-                int position = 0;
-                List<String> line = new LinkedList<>();
-                for (TaggedWord token : tokens) {
-                    List<String> features = FeatureVectors.getFeatures(token, position, dependencies, tokens);
-                    if(classifier.classOf(new BasicDatum<>(features)) == Role.ACTION) {
-                        line.add("<" + token + ":" + index + ":>");
-                        index++;
-                    } else line.add(token.toString());
-                    position++;
+        try(AnnotationReader annotations = AnnotationReader.open(getPath("annotations.graphs").toString())) {
+            for (List<AugmentedSemanticGraph> sentences : annotations) {
+                for (AugmentedSemanticGraph dependencies : sentences) {
+                    List<TaggedWord> tokens = dependencies.orderedTokens();
+                    int position = 0;
+                    List<String> line = new LinkedList<>();
+                    for (TaggedWord token : tokens) {
+                        List<String> features = FeatureVectors.getFeatures(token, position, dependencies, tokens);
+                        if(classifier.classOf(new BasicDatum<>(features)) == Role.ACTION) {
+                            line.add("<" + token + ":" + index + ":>");
+                            index++;
+                        } else line.add(token.toString());
+                        position++;
+                    }
+                    lines.add(line
+                            .stream()
+                            .collect(Collectors.joining(" ")));
                 }
-                lines.add(line
-                        .stream()
-                        .collect(Collectors.joining(" ")));
+                lines.add("------------------");
             }
-            lines.add("------------------");
         }
         IOTools.save(lines, getPath("action-dep-new.txt"));
     }
@@ -161,7 +190,7 @@ public class DataHandler {
         /*CoreNLPVisualiser visualiser = new CoreNLPVisualiser(Pipeline.getMainPipeline());
         Classifier<Boolean, String> depClassifier = getDependencyClassifier(visualiser);
         HybridVisualiser hybridVisualiser = new HybridVisualiser(visualiser);
-        List<Recipe> recipes = IOTools.read(getPath("recipes.ser").toString());
+        List<Recipe> recipes = IOTools.read(Codecs.RECIPES, getPath("recipes.bin").toString());
 
         for (int i = 0; i<3; i++) {
             Flow flow = hybridVisualiser.parse(recipes.get(i));
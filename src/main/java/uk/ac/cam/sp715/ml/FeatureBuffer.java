@@ -0,0 +1,73 @@
+package uk.ac.cam.sp715.ml;
+
+import java.util.Arrays;
+
+/**
+ * Reusable buffer of feature ids, filled by feature extraction and read by {@link LinearScorer}.
+ * Ids of unknown features (negative ids) are dropped when added, as the classifier ignores
+ * features it was not trained on.
+ * @author Srijan Parmeshwar <sp715@cam.ac.uk>
+ */
+public class FeatureBuffer {
+    private int[] ids;
+    private int size;
+
+    public FeatureBuffer() {
+        this(32);
+    }
+
+    /**
+     * Constructs a buffer.
+     * @param capacity Initial number of ids which can be held before the buffer grows.
+     */
+    public FeatureBuffer(int capacity) {
+        this.ids = new int[Math.max(1, capacity)];
+        this.size = 0;
+    }
+
+    /**
+     * Empties the buffer, keeping its storage.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Appends a feature id.
+     * @param id Feature id, ignored if negative.
+     */
+    public void add(int id) {
+        if(id < 0) return;
+        if(size == ids.length) ids = Arrays.copyOf(ids, 2 * size);
+        ids[size++] = id;
+    }
+
+    /**
+     * Checks whether an id has been added since the given position.
+     * @param from Position to start searching from.
+     * @param id Feature id.
+     * @return True if the id is in the buffer at or after the position.
+     */
+    public boolean contains(int from, int id) {
+        for(int i = from; i < size; i++) {
+            if(ids[i] == id) return true;
+        }
+        return false;
+    }
+
+    public int get(int position) {
+        return ids[position];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Copies the ids currently in the buffer.
+     * @return Array of feature ids in the order they were added.
+     */
+    public int[] toArray() {
+        return Arrays.copyOf(ids, size);
+    }
+}
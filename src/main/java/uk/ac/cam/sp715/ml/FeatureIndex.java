@@ -0,0 +1,73 @@
+package uk.ac.cam.sp715.ml;
+
+import java.util.*;
+
+/**
+ * Frozen mapping from feature strings to integer ids. Features of the form {@code prefix + value}
+ * can also be looked up from their prefix and value separately, which avoids building the
+ * feature string for every token when the prefixes are fixed templates such as {@code "posTag="}.
+ * @author Srijan Parmeshwar <sp715@cam.ac.uk>
+ */
+public class FeatureIndex {
+    private final Map<String, Integer> ids;
+    private final Map<String, Map<String, Integer>> templates;
+    private final List<String> features;
+
+    /**
+     * Constructs an index with ids given by the order of the features.
+     * @param features Distinct feature strings.
+     * @param prefixes Template prefixes, each feature is filed under the longest prefix it starts with.
+     */
+    public FeatureIndex(List<String> features, Collection<String> prefixes) {
+        this.ids = new HashMap<>();
+        this.templates = new HashMap<>();
+        this.features = Collections.unmodifiableList(new ArrayList<>(features));
+        for(String prefix : prefixes) templates.put(prefix, new HashMap<>());
+
+        for(int id = 0; id < features.size(); id++) {
+            String feature = features.get(id);
+            if(ids.putIfAbsent(feature, id) != null) throw new IllegalArgumentException("Duplicate feature " + feature + ".");
+            String template = null;
+            for(String prefix : prefixes) {
+                if(feature.startsWith(prefix) && (template == null || prefix.length() > template.length())) template = prefix;
+            }
+            if(template != null) templates.get(template).put(feature.substring(template.length()), id);
+        }
+    }
+
+    /**
+     * Looks up the id of a feature.
+     * @param feature Feature string.
+     * @return Id of the feature, or -1 if it is not in the index.
+     */
+    public int indexOf(String feature) {
+        Integer id = ids.get(feature);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Looks up the id of the feature {@code prefix + value} without concatenating the strings.
+     * @param prefix One of the template prefixes given when the index was constructed.
+     * @param value Feature value.
+     * @return Id of the feature, or -1 if it is not in the index.
+     */
+    public int indexOf(String prefix, String value) {
+        Map<String, Integer> template = templates.get(prefix);
+        if(template == null) throw new IllegalArgumentException("Unknown feature template " + prefix + ".");
+        Integer id = template.get(value);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Feature string with the given id.
+     * @param id Feature id.
+     * @return Feature string.
+     */
+    public String get(int id) {
+        return features.get(id);
+    }
+
+    public int size() {
+        return features.size();
+    }
+}
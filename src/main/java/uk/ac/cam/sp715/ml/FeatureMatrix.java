@@ -0,0 +1,99 @@
+package uk.ac.cam.sp715.ml;
+
+import java.util.Arrays;
+
+/**
+ * Sparse binary feature matrix in compressed sparse row form, with one row of feature ids per example.
+ * Rows are appended from a {@link FeatureBuffer} and keep the order of their ids, so that
+ * {@link LinearScorer} sums the weights of a row in the same order as the classifier would.
+ * @author Srijan Parmeshwar <sp715@cam.ac.uk>
+ */
+public class FeatureMatrix {
+    private int[] offsets;
+    private int[] columns;
+    private int rows;
+
+    public FeatureMatrix() {
+        this(16, 16 * 8);
+    }
+
+    /**
+     * Constructs an empty matrix.
+     * @param rowCapacity Expected number of rows.
+     * @param nonZeroCapacity Expected total number of feature ids.
+     */
+    public FeatureMatrix(int rowCapacity, int nonZeroCapacity) {
+        this.offsets = new int[Math.max(1, rowCapacity) + 1];
+        this.columns = new int[Math.max(1, nonZeroCapacity)];
+        this.rows = 0;
+    }
+
+    //Wraps arrays read back by TrainingMatrix, which have been checked to be well formed.
+    FeatureMatrix(int[] offsets, int[] columns, int rows) {
+        this.offsets = offsets;
+        this.columns = columns;
+        this.rows = rows;
+    }
+
+    /**
+     * Appends a row.
+     * @param features Feature ids of the row.
+     */
+    public void addRow(FeatureBuffer features) {
+        int start = offsets[rows];
+        int end = start + features.size();
+        if(rows + 1 == offsets.length) offsets = Arrays.copyOf(offsets, 2 * offsets.length);
+        if(end > columns.length) columns = Arrays.copyOf(columns, Math.max(end, 2 * columns.length));
+        for(int i = 0; i < features.size(); i++) columns[start + i] = features.get(i);
+        rows++;
+        offsets[rows] = end;
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    /**
+     * Total number of feature ids stored.
+     * @return Number of non-zero entries.
+     */
+    public int nonZeros() {
+        return offsets[rows];
+    }
+
+    /**
+     * Position of the first feature id of a row.
+     * @param row Row index.
+     * @return Start position, to be used with {@link #column(int)}.
+     */
+    public int rowStart(int row) {
+        return offsets[row];
+    }
+
+    /**
+     * Position after the last feature id of a row.
+     * @param row Row index.
+     * @return End position, to be used with {@link #column(int)}.
+     */
+    public int rowEnd(int row) {
+        return offsets[row + 1];
+    }
+
+    /**
+     * Feature id stored at a position.
+     * @param position Position between {@link #rowStart(int)} and {@link #rowEnd(int)} of a row.
+     * @return Feature id.
+     */
+    public int column(int position) {
+        return columns[position];
+    }
+
+    /**
+     * Copies the feature ids of a row.
+     * @param row Row index.
+     * @return Feature ids in the order they were added.
+     */
+    public int[] row(int row) {
+        return Arrays.copyOfRange(columns, offsets[row], offsets[row + 1]);
+    }
+}
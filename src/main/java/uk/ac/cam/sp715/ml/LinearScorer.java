@@ -0,0 +1,167 @@
+package uk.ac.cam.sp715.ml;
+
+import edu.stanford.nlp.classify.LinearClassifier;
+import edu.stanford.nlp.classify.LogisticClassifier;
+import edu.stanford.nlp.stats.Counter;
+
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * Scores feature ids in a {@link FeatureBuffer} or the rows of a {@link FeatureMatrix} with the weights of a
+ * trained {@link LinearClassifier} or {@link LogisticClassifier}, without creating a datum or a counter per example.
+ * Scores are summed in the same order as the classifier sums them, so predictions are the same as those of
+ * the classifier's {@code classOf}. Ties, which a linear classifier breaks arbitrarily, go to the label which
+ * comes first in its label index.
+ * <p>
+ * A logistic classifier is treated as a linear classifier over its negative and positive labels, with zero
+ * weights for the negative label, so the positive label is chosen exactly when its score is above zero.
+ * @param <L> The label type.
+ * @author Srijan Parmeshwar <sp715@cam.ac.uk>
+ */
+public class LinearScorer<L> {
+    private final List<L> labels;
+    private final FeatureIndex featureIndex;
+    //Weights stored label by label so each score is a pass over one contiguous row.
+    private final double[] weights;
+    private final double[] thresholds;
+    private final int numFeatures;
+
+    /**
+     * Copies the weights of a trained classifier.
+     * @param classifier Trained classifier over string features.
+     * @param prefixes Feature template prefixes used for lookups in the {@link FeatureIndex}.
+     */
+    public LinearScorer(LinearClassifier<L, String> classifier, Collection<String> prefixes) {
+        this.labels = Collections.unmodifiableList(new ArrayList<>(classifier.labelIndex().objectsList()));
+        this.featureIndex = new FeatureIndex(classifier.featureIndex().objectsList(), prefixes);
+        this.numFeatures = featureIndex.size();
+
+        double[][] classifierWeights = classifier.weights();
+        this.weights = new double[labels.size() * numFeatures];
+        for(int feature = 0; feature < numFeatures; feature++) {
+            for(int label = 0; label < labels.size(); label++) {
+                weights[label * numFeatures + feature] = classifierWeights[feature][label];
+            }
+        }
+
+        //The score of an example with no features is the threshold of each label.
+        Counter<L> empty = classifier.scoresOf(new int[0]);
+        this.thresholds = new double[labels.size()];
+        for(int label = 0; label < labels.size(); label++) thresholds[label] = empty.getCount(labels.get(label));
+    }
+
+    /**
+     * Copies the weights of a trained binary logistic classifier.
+     * @param classifier Trained classifier over string features.
+     * @param prefixes Feature template prefixes used for lookups in the {@link FeatureIndex}.
+     */
+    public LinearScorer(LogisticClassifier<L, String> classifier, Collection<String> prefixes) {
+        this.labels = Collections.unmodifiableList(Arrays.asList(
+                classifier.getLabelForInternalNegativeClass(),
+                classifier.getLabelForInternalPositiveClass()));
+        this.featureIndex = new FeatureIndex(classifier.getFeatureIndex().objectsList(), prefixes);
+        this.numFeatures = featureIndex.size();
+        this.weights = new double[2 * numFeatures];
+        System.arraycopy(classifier.getWeights(), 0, weights, numFeatures, numFeatures);
+        this.thresholds = new double[2];
+    }
+
+    public FeatureIndex getFeatureIndex() {
+        return featureIndex;
+    }
+
+    public List<L> labels() {
+        return labels;
+    }
+
+    /**
+     * Computes the score of a single label.
+     * @param features Ids of the features present.
+     * @param label Position of the label in {@link #labels()}.
+     * @return Score of the label.
+     */
+    public double scoreOf(FeatureBuffer features, int label) {
+        int offset = label * numFeatures;
+        double score = 0;
+        for(int i = 0; i < features.size(); i++) score += weights[offset + features.get(i)];
+        return score + thresholds[label];
+    }
+
+    /**
+     * Computes the scores of every label.
+     * @param features Ids of the features present.
+     * @param scores Array to be filled with the score of each label, in the order of {@link #labels()}.
+     */
+    public void scoresOf(FeatureBuffer features, double[] scores) {
+        for(int label = 0; label < labels.size(); label++) scores[label] = scoreOf(features, label);
+    }
+
+    /**
+     * Computes the score of a single label for one row of a matrix.
+     * @param matrix Feature ids of the examples.
+     * @param row Row of the example.
+     * @param label Position of the label in {@link #labels()}.
+     * @return Score of the label.
+     */
+    public double scoreOf(FeatureMatrix matrix, int row, int label) {
+        int offset = label * numFeatures;
+        double score = 0;
+        for(int i = matrix.rowStart(row); i < matrix.rowEnd(row); i++) score += weights[offset + matrix.column(i)];
+        return score + thresholds[label];
+    }
+
+    /**
+     * Finds the position of the best scoring label.
+     * @param features Ids of the features present.
+     * @return Position of the label in {@link #labels()}.
+     */
+    public int bestLabel(FeatureBuffer features) {
+        int best = 0;
+        double bestScore = Double.NEGATIVE_INFINITY;
+        for(int label = 0; label < labels.size(); label++) {
+            double score = scoreOf(features, label);
+            if(score > bestScore) {
+                best = label;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    private int bestLabel(FeatureMatrix matrix, int row) {
+        int best = 0;
+        double bestScore = Double.NEGATIVE_INFINITY;
+        for(int label = 0; label < labels.size(); label++) {
+            double score = scoreOf(matrix, row, label);
+            if(score > bestScore) {
+                best = label;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Finds the best scoring label of every row of a matrix in one pass.
+     * @param matrix Feature ids of the examples.
+     * @param parallel Whether rows should be scored in parallel, which pays off for large matrices.
+     * @return Position in {@link #labels()} of the best label of each row.
+     */
+    public int[] bestLabels(FeatureMatrix matrix, boolean parallel) {
+        int[] best = new int[matrix.rows()];
+        IntStream rows = IntStream.range(0, matrix.rows());
+        if(parallel) rows = rows.parallel();
+        rows.forEach(row -> best[row] = bestLabel(matrix, row));
+        return best;
+    }
+
+    /**
+     * Classifies an example given by its feature ids.
+     * @param features Ids of the features present.
+     * @return The best scoring label.
+     */
+    public L classOf(FeatureBuffer features) {
+        return labels.get(bestLabel(features));
+    }
+}
@@ -0,0 +1,173 @@
+package uk.ac.cam.sp715.ml;
+
+import uk.ac.cam.sp715.util.*;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Saves trained models to disk so that they are only trained again when their training data changes.
+ * Each model is stored under its name as {@code <name>.model} in the registry's directory, together
+ * with a fingerprint of everything it was trained from: the training files, the feature templates and
+ * a version which is increased whenever the training code changes. When a model is requested, the
+ * stored model is loaded if its fingerprint matches, otherwise it is trained, saved and returned.
+ * Requests for the same model through one registry are handled one at a time, so a model is not
+ * trained twice concurrently.
+ * @author Srijan Parmeshwar <sp715@cam.ac.uk>
+ */
+public class ModelRegistry {
+    private static final Logger logger = Logging.getLogger(ModelRegistry.class);
+    private static final String EXTENSION = ".model";
+    private static final ModelRegistry defaultRegistry = new ModelRegistry(Paths.get("data", "models").toString());
+
+    private final String directory;
+    private final Map<String, Object> locks;
+
+    /**
+     * Trains a model when no stored model matches.
+     * @param <M> Model type.
+     */
+    public interface Trainer<M> {
+        M train() throws IOToolsException, IOException;
+    }
+
+    /**
+     * A model with the fingerprint of its training data.
+     */
+    private static class Artifact<M> {
+        private final String fingerprint;
+        private final M model;
+        private Artifact(String fingerprint, M model) {
+            this.fingerprint = fingerprint;
+            this.model = model;
+        }
+    }
+
+    private static <M> Codec<Artifact<M>> artifact(Codec<M> codec) {
+        return new Codec<Artifact<M>>() {
+            @Override
+            public void write(Artifact<M> value, DataOutputStream output) throws IOException {
+                Codecs.STRING.write(value.fingerprint, output);
+                codec.write(value.model, output);
+            }
+
+            @Override
+            public Artifact<M> read(DataInputStream input) throws IOException {
+                return new Artifact<>(Codecs.STRING.read(input), codec.read(input));
+            }
+        };
+    }
+
+    /**
+     * Constructs a registry storing models in the given directory, which is created when the first model is saved.
+     * @param directory Directory of the stored models.
+     */
+    public ModelRegistry(String directory) {
+        this.directory = directory;
+        this.locks = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * @return {@link ModelRegistry} - Registry storing models in {@code data/models}.
+     */
+    public static ModelRegistry getDefault() {
+        return defaultRegistry;
+    }
+
+    private Path getPath(String name) {
+        return Paths.get(directory, name + EXTENSION);
+    }
+
+    /**
+     * Computes the fingerprint of a model's training data.
+     * @param version Version of the training code, to be increased whenever it changes.
+     * @param templates Feature templates the model is trained on.
+     * @param inputs Training files.
+     * @return Hexadecimal SHA-256 digest of the version, templates and file contents.
+     * @throws IOToolsException Thrown if a training file cannot be read.
+     */
+    public static String fingerprint(int version, Collection<String> templates, Path... inputs) throws IOToolsException {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(("version=" + version + "\n").getBytes(StandardCharsets.UTF_8));
+            for(String template : templates) digest.update(("template=" + template + "\n").getBytes(StandardCharsets.UTF_8));
+            for(Path input : inputs) {
+                byte[] bytes = Files.readAllBytes(input);
+                digest.update(("input=" + input.getFileName() + ":" + bytes.length + "\n").getBytes(StandardCharsets.UTF_8));
+                digest.update(bytes);
+            }
+            StringBuilder builder = new StringBuilder();
+            for(byte b : digest.digest()) builder.append(String.format("%02x", b));
+            return builder.toString();
+        } catch(IOException ioException) {
+            logger.log(Level.SEVERE, "Could not read training data.", ioException);
+            throw new IOToolsException();
+        } catch(NoSuchAlgorithmException nsae) {
+            throw new IllegalStateException(nsae);
+        }
+    }
+
+    /**
+     * Loads a stored model if it was trained from data with the given fingerprint, otherwise trains
+     * the model and stores it. A stored model which cannot be read is trained again.
+     * @param name Name of the model.
+     * @param fingerprint Fingerprint of the training data, from {@link #fingerprint(int, Collection, Path...)}.
+     * @param codec Codec for the model.
+     * @param trainer Trains the model.
+     * @param <M> Model type.
+     * @return The model.
+     * @throws IOToolsException Thrown if the model must be trained and training fails.
+     */
+    public <M> M get(String name, String fingerprint, Codec<M> codec, Trainer<M> trainer) throws IOToolsException {
+        synchronized(locks.computeIfAbsent(name, key -> new Object())) {
+            Path path = getPath(name);
+            Codec<Artifact<M>> artifactCodec = artifact(codec);
+            if(Files.exists(path)) {
+                try {
+                    Artifact<M> stored = IOTools.read(artifactCodec, path.toString());
+                    if(fingerprint.equals(stored.fingerprint)) return stored.model;
+                    logger.log(Level.INFO, "Training data of model " + name + " has changed, retraining.");
+                } catch(IOToolsException iote) {
+                    logger.log(Level.WARNING, "Could not read model " + name + ", retraining.");
+                }
+            }
+
+            M model;
+            try {
+                model = trainer.train();
+            } catch(IOException ioException) {
+                logger.log(Level.SEVERE, "Could not train model " + name + ".", ioException);
+                throw new IOToolsException();
+            }
+            save(path, new Artifact<>(fingerprint, model), artifactCodec);
+            return model;
+        }
+    }
+
+    //Written to a temporary file of its own and moved into place, so that a model is never read half written.
+    private <M> void save(Path path, Artifact<M> artifact, Codec<Artifact<M>> codec) {
+        try {
+            Files.createDirectories(path.getParent());
+            Path temporary = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+            try {
+                IOTools.save(artifact, codec, IOTools.Compression.DEFLATE, temporary.toString());
+                Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temporary);
+            }
+        } catch(IOException | IOToolsException exception) {
+            //The model is still usable, it will just be trained again next time.
+            logger.log(Level.WARNING, "Could not save model to " + path + ".", exception);
+        }
+    }
+}
@@ -1,27 +1,38 @@
 package uk.ac.cam.sp715.ml;
 
 import edu.stanford.nlp.classify.*;
-import edu.stanford.nlp.ling.BasicDatum;
 import edu.stanford.nlp.ling.Datum;
 import edu.stanford.nlp.stats.ClassicCounter;
 import edu.stanford.nlp.stats.Counter;
 import edu.stanford.nlp.stats.Counters;
+import edu.stanford.nlp.util.HashIndex;
+import edu.stanford.nlp.util.Index;
 
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
- * Created by Srijan on 22/03/2016.
+ * Multiclass classifier which trains a binary logistic classifier for every pair of labels and
+ * labels an example with the label winning the most pairwise votes.
+ * <p>
+ * The pairwise classifiers are trained in parallel on the common fork-join pool. Each is trained on
+ * the feature ids of the rows of its two labels, taken from the dataset once and shared between
+ * pairs, and all share the dataset's feature index, so an example's features are looked up once
+ * rather than once per pair.
+ * @author Srijan Parmeshwar <sp715@cam.ac.uk>
  */
 public class OneVsOneClassifier<L, F> implements Classifier<L, F> {
     private static class BinaryClassifier<L, F> implements Classifier<L, F> {
         private final L labelA;
         private final L labelB;
-        private final Classifier<Boolean, F> classifier;
-        public BinaryClassifier(L labelA, L labelB, Classifier<Boolean, F> classifier) {
+        private final LogisticClassifier<Boolean, F> classifier;
+        private final double[] weights;
+        public BinaryClassifier(L labelA, L labelB, LogisticClassifier<Boolean, F> classifier) {
             this.labelA = labelA;
             this.labelB = labelB;
             this.classifier = classifier;
+            this.weights = classifier.getWeights();
         }
 
         @Override
@@ -31,11 +42,26 @@ public class OneVsOneClassifier<L, F> implements Classifier<L, F> {
 
         @Override
         public Counter<L> scoresOf(Datum<L, F> example) {
-            Datum<Boolean, F> proxyExample = new BasicDatum<>(example.asFeatures());
-            Counter<Boolean> proxyCounter = classifier.scoresOf(proxyExample);
+            return scoresOf(classifier.scoreOf(example.asFeatures()));
+        }
+
+        //Sums the weights in the order of the features, as the logistic classifier does.
+        private L classOf(int[] features) {
+            double score = 0;
+            for(int feature : features) {
+                if(feature >= 0) score += weights[feature];
+            }
+            //Ties are left to the counter so that they are broken as before.
+            if(score == 0) return Counters.argmax(scoresOf(score));
+            return (score > 0) == classifier.getLabelForInternalPositiveClass() ? labelA : labelB;
+        }
+
+        //Scores for labels A and B of the logistic classifier's scores for true and false.
+        private Counter<L> scoresOf(double score) {
+            boolean positive = classifier.getLabelForInternalPositiveClass();
             Counter<L> counter = new ClassicCounter<>();
-            counter.incrementCount(labelA, proxyCounter.getCount(true));
-            counter.incrementCount(labelB, proxyCounter.getCount(false));
+            counter.incrementCount(labelA, positive ? score : -score);
+            counter.incrementCount(labelB, positive ? -score : score);
             return counter;
         }
 
@@ -46,41 +72,59 @@ public class OneVsOneClassifier<L, F> implements Classifier<L, F> {
     }
     private final List<BinaryClassifier<L, F>> classifiers;
     private final List<L> labels;
+    private final Index<F> featureIndex;
 
     public OneVsOneClassifier(GeneralDataset<L, F> dataset, List<L> labels) {
-        this.classifiers = new LinkedList<>();
         this.labels = labels;
-        trainClassifiers(dataset, this.labels);
+        this.featureIndex = dataset.featureIndex();
+        this.classifiers = trainClassifiers(dataset, this.labels);
     }
 
-    private void trainClassifiers(GeneralDataset<L, F> dataset, List<L> labels) {
-        LogisticClassifierFactory<Boolean, F> factory = new LogisticClassifierFactory<>();
-        Map<L, Collection<Datum<L, F>>> subsets = new HashMap<>();
-
+    private List<BinaryClassifier<L, F>> trainClassifiers(GeneralDataset<L, F> dataset, List<L> labels) {
+        int[][] data = dataset.getDataArray();
+        int[] labelIds = dataset.getLabelsArray();
+        Map<L, List<int[]>> subsets = new HashMap<>();
+        for(L label : labels) subsets.put(label, new ArrayList<>());
         for(int i = 0; i < dataset.size(); i++) {
-            Datum<L, F> datum = dataset.getDatum(i);
-            if(!subsets.containsKey(datum.label())) subsets.put(datum.label(), new LinkedList<>());
-            subsets.get(datum.label()).add(datum);
+            List<int[]> subset = subsets.get(dataset.labelIndex().get(labelIds[i]));
+            if(subset != null) subset.add(data[i]);
         }
 
+        List<int[]> pairs = new ArrayList<>();
         for(int i = 0; i < labels.size(); i++) {
-            L labelA = labels.get(i);
-            for(int j = i + 1; j < labels.size(); j++) {
-                L labelB = labels.get(j);
-                GeneralDataset<Boolean, F> subset = new Dataset<>();
-                Collection<Datum<Boolean, F>> subsetA = subsets.get(labelA)
-                        .stream()
-                        .map(datum -> new BasicDatum<Boolean, F>(datum.asFeatures(), true))
-                        .collect(Collectors.toList());
-                Collection<Datum<Boolean, F>> subsetB = subsets.get(labelB)
-                        .stream()
-                        .map(datum -> new BasicDatum<Boolean, F>(datum.asFeatures(), false))
-                        .collect(Collectors.toList());
-                subset.addAll(subsetA);
-                subset.addAll(subsetB);
-                classifiers.add(new BinaryClassifier<>(labelA, labelB, factory.trainClassifier(subset)));
-            }
+            for(int j = i + 1; j < labels.size(); j++) pairs.add(new int[] {i, j});
+        }
+
+        return pairs.parallelStream()
+                .map(pair -> train(labels.get(pair[0]), labels.get(pair[1]), subsets))
+                .collect(Collectors.toList());
+    }
+
+    //Factories keep the last classifier they trained, so each pair has its own.
+    private BinaryClassifier<L, F> train(L labelA, L labelB, Map<L, List<int[]>> subsets) {
+        List<int[]> subsetA = subsets.get(labelA);
+        List<int[]> subsetB = subsets.get(labelB);
+        int size = subsetA.size() + subsetB.size();
+        int[][] data = new int[size][];
+        int[] labelIds = new int[size];
+        for(int i = 0; i < subsetA.size(); i++) data[i] = subsetA.get(i);
+        for(int i = 0; i < subsetB.size(); i++) {
+            data[subsetA.size() + i] = subsetB.get(i);
+            labelIds[subsetA.size() + i] = 1;
         }
+
+        Index<Boolean> labelIndex = new HashIndex<>(Arrays.asList(true, false));
+        GeneralDataset<Boolean, F> subset = new Dataset<>(labelIndex, labelIds, featureIndex, data, size);
+        LogisticClassifierFactory<Boolean, F> factory = new LogisticClassifierFactory<>();
+        return new BinaryClassifier<>(labelA, labelB, factory.trainClassifier(subset));
+    }
+
+    private int[] featureIds(Datum<L, F> example) {
+        Collection<F> features = example.asFeatures();
+        int[] ids = new int[features.size()];
+        int i = 0;
+        for(F feature : features) ids[i++] = featureIndex.indexOf(feature);
+        return ids;
     }
 
     @Override
@@ -90,13 +134,36 @@ public class OneVsOneClassifier<L, F> implements Classifier<L, F> {
 
     @Override
     public Counter<L> scoresOf(Datum<L, F> example) {
+        int[] features = featureIds(example);
         Counter<L> counter = new ClassicCounter<>();
-        for(Classifier<L, F> classifier : classifiers) {
-            counter.incrementCount(classifier.classOf(example));
+        for(BinaryClassifier<L, F> classifier : classifiers) {
+            counter.incrementCount(classifier.classOf(features));
         }
         return counter;
     }
 
+    /**
+     * Counts the pairwise votes for each of a batch of examples.
+     * @param examples Examples to be scored.
+     * @param parallel Whether examples should be scored in parallel, which pays off for large batches.
+     * @return Votes for each label, for each example in order.
+     */
+    public List<Counter<L>> scoresOf(List<? extends Datum<L, F>> examples, boolean parallel) {
+        IntStream indices = IntStream.range(0, examples.size());
+        if(parallel) indices = indices.parallel();
+        return indices.mapToObj(i -> scoresOf(examples.get(i))).collect(Collectors.toList());
+    }
+
+    /**
+     * Classifies a batch of examples.
+     * @param examples Examples to be classified.
+     * @param parallel Whether examples should be classified in parallel, which pays off for large batches.
+     * @return Label of each example in order.
+     */
+    public List<L> classesOf(List<? extends Datum<L, F>> examples, boolean parallel) {
+        return scoresOf(examples, parallel).stream().map(Counters::argmax).collect(Collectors.toList());
+    }
+
     @Override
     public Collection<L> labels() {
         return labels;
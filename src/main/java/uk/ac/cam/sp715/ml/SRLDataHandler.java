@@ -8,8 +8,11 @@ import edu.stanford.nlp.ling.Datum;
 import edu.stanford.nlp.pipeline.Annotation;
 import edu.stanford.nlp.util.CoreMap;
 import uk.ac.cam.sp715.flows.*;
+import uk.ac.cam.sp715.recipes.CorpusReader;
 import uk.ac.cam.sp715.recipes.Ingredient;
 import uk.ac.cam.sp715.recipes.Recipe;
+import uk.ac.cam.sp715.recognition.AnnotationReader;
+import uk.ac.cam.sp715.recognition.AnnotationWriter;
 import uk.ac.cam.sp715.recognition.TaggedWord;
 import uk.ac.cam.sp715.util.*;
 
@@ -18,6 +21,8 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
 import static uk.ac.cam.sp715.recognition.EntityAnnotator.*;
@@ -26,12 +31,31 @@ import static uk.ac.cam.sp715.recognition.EntityAnnotator.*;
  * Created by Srijan on 18/12/2015.
  */
 public class SRLDataHandler {
+    private static final Logger logger = Logging.getLogger(SRLDataHandler.class);
     private static final String path = "data";
-    private static int index = 0;
     private static Path getPath(String name) {
         return Paths.get(path, name);
     }
 
+    private static final Codec<Role> ROLES = Codecs.enumeration(Role.class);
+    private static final String TOKEN_SEPARATOR = ";;";
+    private static final String LABEL_SEPARATOR = "::";
+
+    private static Role parseLabel(String label) {
+        switch (label) {
+            case "A":
+                return Role.ACTION;
+            case "D":
+                return Role.DOBJECT;
+            case "I":
+                return Role.IOBJECT;
+            case "O":
+                return Role.OTHER;
+            default:
+                return null;
+        }
+    }
+
     /**
      * Requires file of format:
      * token1::label;;token2::label;;...
@@ -40,39 +64,49 @@ public class SRLDataHandler {
      * @return Map of indices to labels from the training file.
      */
     public static Map<Integer, Role> loadLabels(String name) {
-        index = 0;
         Map<Integer, Role> labels = new TreeMap<>();
+        int index = 0;
         try {
-            Files.lines(getPath(name)).forEach(line -> {
-                String[] tokens = line.split(";;");
-                for(String token : tokens) {
-                    String[] pair = token.split("::");
-                    if(pair.length == 2) {
-                        String label = pair[1];
-                        switch (label) {
-                            case "A":
-                                labels.put(index, Role.ACTION);
-                                break;
-                            case "D":
-                                labels.put(index, Role.DOBJECT);
-                                break;
-                            case "I":
-                                labels.put(index, Role.IOBJECT);
-                                break;
-                            case "O":
-                                labels.put(index, Role.OTHER);
-                                break;
-                        }
-                    }
-                    index++;
-                }
-            });
+            for(String line : Files.readAllLines(getPath(name))) index = loadLabels(line, index, labels);
         } catch (IOException e) {
             throw new RuntimeException();
         }
         return labels;
     }
 
+    /**
+     * Reads the labels of one line of the training file, numbering its tokens as {@code line.split(";;")}
+     * does, so that separators at the end of the line do not count as tokens.
+     * @param line Line of the training file.
+     * @param index Index of the first token of the line.
+     * @param labels Map to which the labels of the line are added.
+     * @return Index of the first token of the next line.
+     */
+    static int loadLabels(String line, int index, Map<Integer, Role> labels) {
+        int start = 0;
+        if(!line.isEmpty() && onlySeparators(line, start)) return index;
+        do {
+            int end = line.indexOf(TOKEN_SEPARATOR, start);
+            if(end < 0) end = line.length();
+            int separator = line.indexOf(LABEL_SEPARATOR, start);
+            if(separator >= 0 && separator < end) {
+                Role role = parseLabel(line.substring(separator + LABEL_SEPARATOR.length(), end));
+                if(role != null) labels.put(index, role);
+            }
+            index++;
+            start = end + TOKEN_SEPARATOR.length();
+        } while(start <= line.length() && !onlySeparators(line, start));
+        return index;
+    }
+
+    //Whether the rest of the line from start is a run of zero or more token separators.
+    private static boolean onlySeparators(String line, int start) {
+        for(int i = start; i < line.length(); i += TOKEN_SEPARATOR.length()) {
+            if(!line.startsWith(TOKEN_SEPARATOR, i)) return false;
+        }
+        return true;
+    }
+
     public static GeneralDataset<Role, String> constructDataset(Map<Integer, Role> labels, Map<Integer, List<String>> features) {
         GeneralDataset<Role, String> dataset = new Dataset<>();
         for(int key : labels.keySet()) {
@@ -105,8 +139,20 @@ public class SRLDataHandler {
         }
     }
 
+    //Increase when the training of the role classifier changes, so that stored models are retrained.
+    private static final int CLASSIFIER_VERSION = 1;
+
+    /**
+     * Role classifier trained on the current training data, loaded from the {@link ModelRegistry}
+     * unless the training data has changed since it was stored.
+     * @return Trained role classifier.
+     * @throws IOToolsException Thrown if the training data cannot be read.
+     */
     public static Classifier<Role, String> getClassifier() throws IOToolsException {
-        return getClassifier(4);
+        String fingerprint = ModelRegistry.fingerprint(CLASSIFIER_VERSION, FeatureVectors.TOKEN_FEATURE_TEMPLATES,
+                getPath("srl-train-en.matrix"));
+        return ModelRegistry.getDefault().get("srl", fingerprint, Codecs.ROLE_CLASSIFIER,
+                () -> ClassifierTrainer.train(loadTrainingMatrix()));
     }
 
     public static Classifier<Role, String> getClassifier(int version) throws IOToolsException {
@@ -114,52 +160,105 @@ public class SRLDataHandler {
     }
 
     public static GeneralDataset<Role, String> loadTrainingData(int version) throws IOToolsException {
-        return IOTools.read(getPath("srl-train-en.ser").toString());
+        return loadTrainingMatrix().toDataset();
+    }
+
+    /**
+     * Loads the role training data compiled by {@link #compileTrainingData(FeatureVectors.TokenFeatures)}.
+     * @return Feature matrix of the labelled tokens.
+     * @throws IOToolsException Thrown if the training data cannot be read.
+     */
+    public static TrainingMatrix<Role> loadTrainingMatrix() throws IOToolsException {
+        return TrainingMatrix.load(ROLES, getPath("srl-train-en.matrix").toString());
     }
 
     private static void serializeAnnotations() throws IOToolsException {
         Pipeline pipeline = Pipeline.getMainPipeline();
-        List<Recipe> recipes = IOTools.read(getPath("recipes.ser").toString());
-        LinkedList<Annotation> annotations = new LinkedList<>();
 
-        for (Recipe recipe : recipes) {
-            annotations.add(pipeline.annotate(recipe));
+        try(CorpusReader recipes = CorpusReader.open(getPath("recipes.corpus").toString());
+            AnnotationWriter annotations = new AnnotationWriter(getPath("annotations.graphs").toString())) {
+            for (Recipe recipe : recipes) {
+                annotations.write(pipeline.annotate(recipe));
+            }
+        } catch (IOException ioException) {
+            logger.log(Level.SEVERE, "Could not write recipe annotations.", ioException);
+            throw new IOToolsException();
         }
-
-        IOTools.save(annotations, getPath("annotations.ser").toString());
     }
 
     public static Map<Integer, List<String>> getFeatureMap() throws IOToolsException {
         Map<Integer, List<String>> featureMap = new HashMap<>();
-        List<Annotation> annotations = IOTools.read(getPath("annotations.ser").toString());
         int index = 0;
 
-        for (Annotation annotation : annotations) {
-            for (CoreMap sentence : annotation.get(CoreAnnotations.SentencesAnnotation.class)) {
-                AugmentedSemanticGraph dependencies = sentence.get(EntityAnnotations.class);
-                List<TaggedWord> tokens = dependencies.orderedTokens();
-                int position = 0;
-                for (TaggedWord token : tokens) {
-                    List<String> features = FeatureVectors.getFeatures(token, position, dependencies, tokens);
-                    featureMap.put(index, features);
-                    position++;
-                    index++;
+        try(AnnotationReader annotations = AnnotationReader.open(getPath("annotations.graphs").toString())) {
+            for (List<AugmentedSemanticGraph> sentences : annotations) {
+                for (AugmentedSemanticGraph dependencies : sentences) {
+                    List<TaggedWord> tokens = dependencies.orderedTokens();
+                    int position = 0;
+                    for (TaggedWord token : tokens) {
+                        List<String> features = FeatureVectors.getFeatures(token, position, dependencies, tokens);
+                        featureMap.put(index, features);
+                        position++;
+                        index++;
+                    }
                 }
             }
         }
         return featureMap;
     }
 
+    /**
+     * Builds the role training data from the labelled tokens and the stored annotations, rather than
+     * reading the stored dataset, so that other feature templates can be tried.
+     * @param templates Feature templates to use.
+     * @return Dataset of role labelled tokens.
+     * @throws IOToolsException Thrown if the annotations cannot be read.
+     */
+    public static GeneralDataset<Role, String> buildTrainingData(FeatureVectors.TokenFeatures templates) throws IOToolsException {
+        return compileTrainingData(templates).toDataset();
+    }
+
+    /**
+     * Compiles the labelled tokens of the stored annotations into a feature matrix, extracting the
+     * features of each token once and numbering them as they are first seen.
+     * @param templates Feature templates to use.
+     * @return Feature matrix with a row for each labelled token, in order.
+     * @throws IOToolsException Thrown if the annotations cannot be read or do not cover every label.
+     */
+    public static TrainingMatrix<Role> compileTrainingData(FeatureVectors.TokenFeatures templates) throws IOToolsException {
+        Map<Integer, Role> labels = loadLabels("srl-train.txt");
+        TrainingMatrix.Builder<Role> builder = new TrainingMatrix.Builder<>();
+        int index = 0;
+
+        try(AnnotationReader annotations = AnnotationReader.open(getPath("annotations.graphs").toString())) {
+            for (List<AugmentedSemanticGraph> sentences : annotations) {
+                for (AugmentedSemanticGraph dependencies : sentences) {
+                    List<TaggedWord> tokens = dependencies.orderedTokens();
+                    for (int position = 0; position < tokens.size(); position++, index++) {
+                        Role role = labels.get(index);
+                        if(role != null) builder.add(role, FeatureVectors.getFeatures(tokens.get(position), position, dependencies, tokens, templates));
+                    }
+                }
+            }
+        }
+
+        TrainingMatrix<Role> matrix = builder.build();
+        if(matrix.size() != labels.size()) {
+            logger.log(Level.SEVERE, "Annotations have " + index + " tokens, fewer than the labelled tokens.");
+            throw new IOToolsException();
+        }
+        return matrix;
+    }
+
     private static void serializeTrainingData() throws IOToolsException {
         //LinkedList<Recipe> recipes = IOTools.read(getPath("recipes.ser").toString());
-        GeneralDataset<Role, String> dataset = constructDataset(loadLabels("srl-train.txt"), getFeatureMap());
-        IOTools.save(dataset, getPath("srl-train-en-new.ser").toString());
+        compileTrainingData(FeatureVectors.TokenFeatures.ORIGINAL).save(ROLES, getPath("srl-train-en-new.matrix").toString());
     }
 
     private static void runPreparation() throws HTMLParseException, IOToolsException {
         //List<Link> links = new LinkedList<>();
         //LinkedList<Recipe> recipes = new LinkedList<>();
-        LinkedList<Recipe> recipes = IOTools.read(getPath("recipes.ser").toString());
+        LinkedList<Recipe> recipes = new LinkedList<>(IOTools.read(Codecs.RECIPES, getPath("recipes.bin").toString()));
 
         //for(String query : new String[] {"chocolate", "halloween", "pizza", "tea"}) links.addAll(HTMLParser.search(query));
         //for(Link link : links) recipes.add(HTMLParser.getRecipe(link.getLink()));
@@ -177,8 +276,8 @@ public class SRLDataHandler {
         Map<Integer, String> newTokens = new TreeMap<>();
         Set<Integer> sentenceIndices = new HashSet<>();
         try {
-            index = 0;
-            Files.lines(getPath(sourceFile)).forEach(line -> {
+            int index = 0;
+            for(String line : Files.readAllLines(getPath(sourceFile))) {
                 String[] tokens = line.split(";;");
                 for(String token : tokens) {
                     String[] pair = token.split("::");
@@ -189,10 +288,10 @@ public class SRLDataHandler {
                     }
                     index++;
                 }
-            });
+            }
 
             index = 0;
-            Files.lines(getPath(newFormatFile)).forEach(line -> {
+            for(String line : Files.readAllLines(getPath(newFormatFile))) {
                 sentenceIndices.add(index);
                 String[] tokens = line.split(";;");
                 for(String token : tokens) {
@@ -200,7 +299,7 @@ public class SRLDataHandler {
                     newTokens.put(index, pair[0]);
                     index++;
                 }
-            });
+            }
 
             for(int ci = 0, ni = 0; ci<currentTokens.size() && ni<newTokens.size();) {
                 String cstring = currentTokens.get(ci);
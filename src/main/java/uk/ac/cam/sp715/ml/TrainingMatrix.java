@@ -0,0 +1,233 @@
+package uk.ac.cam.sp715.ml;
+
+import edu.stanford.nlp.classify.Dataset;
+import edu.stanford.nlp.classify.GeneralDataset;
+import edu.stanford.nlp.util.HashIndex;
+import edu.stanford.nlp.util.Index;
+import uk.ac.cam.sp715.util.*;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Training data compiled to a {@link FeatureMatrix} with one row of feature ids per example, a vector with
+ * the label id of each example and dictionaries mapping label and feature ids back to labels and feature strings.
+ * <p>
+ * In a saved file, a magic number and format version are followed by the number of labels, features, rows
+ * and feature ids. Then come the label vector, the row offsets and the feature ids as plain integers, so that
+ * they can be copied out of a single memory mapping in bulk, and finally the two dictionaries.
+ * @param <L> The label type.
+ * @author Srijan Parmeshwar <sp715@cam.ac.uk>
+ */
+public class TrainingMatrix<L> {
+    static final int MAGIC = 0x54524D58;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 24;
+
+    private static final Logger logger = Logging.getLogger(TrainingMatrix.class);
+
+    private final List<L> labels;
+    private final List<String> features;
+    private final int[] labelIds;
+    private final FeatureMatrix matrix;
+
+    private TrainingMatrix(List<L> labels, List<String> features, int[] labelIds, FeatureMatrix matrix) {
+        this.labels = Collections.unmodifiableList(labels);
+        this.features = Collections.unmodifiableList(features);
+        this.labelIds = labelIds;
+        this.matrix = matrix;
+    }
+
+    /**
+     * Compiles examples into a matrix, numbering labels and features in the order they first appear,
+     * as {@link Dataset} does.
+     * @param <L> The label type.
+     */
+    public static class Builder<L> {
+        private final Index<L> labelIndex = new HashIndex<>();
+        private final Index<String> featureIndex = new HashIndex<>();
+        private final FeatureMatrix matrix = new FeatureMatrix();
+        private final FeatureBuffer buffer = new FeatureBuffer();
+        private int[] labelIds = new int[16];
+
+        /**
+         * Appends an example.
+         * @param label Label of the example.
+         * @param features Features of the example, in order.
+         */
+        public void add(L label, Collection<String> features) {
+            buffer.clear();
+            for(String feature : features) buffer.add(featureIndex.addToIndex(feature));
+            if(matrix.rows() == labelIds.length) labelIds = Arrays.copyOf(labelIds, 2 * labelIds.length);
+            labelIds[matrix.rows()] = labelIndex.addToIndex(label);
+            matrix.addRow(buffer);
+        }
+
+        public TrainingMatrix<L> build() {
+            return new TrainingMatrix<>(new ArrayList<>(labelIndex.objectsList()), new ArrayList<>(featureIndex.objectsList()),
+                    Arrays.copyOf(labelIds, matrix.rows()), matrix);
+        }
+    }
+
+    /**
+     * Compiles a dataset, keeping its label and feature ids.
+     * @param dataset Dataset of binary features.
+     * @param <L> The label type.
+     * @return Matrix with the examples of the dataset in order.
+     */
+    public static <L> TrainingMatrix<L> of(GeneralDataset<L, String> dataset) {
+        int[][] data = dataset.getDataArray();
+        FeatureMatrix matrix = new FeatureMatrix(dataset.size(), dataset.size() * 8);
+        FeatureBuffer buffer = new FeatureBuffer();
+        for(int i = 0; i < dataset.size(); i++) {
+            buffer.clear();
+            for(int feature : data[i]) buffer.add(feature);
+            matrix.addRow(buffer);
+        }
+        return new TrainingMatrix<>(new ArrayList<>(dataset.labelIndex().objectsList()),
+                new ArrayList<>(dataset.featureIndex().objectsList()),
+                Arrays.copyOf(dataset.getLabelsArray(), dataset.size()), matrix);
+    }
+
+    /**
+     * Labels by their id.
+     * @return Label dictionary.
+     */
+    public List<L> labels() {
+        return labels;
+    }
+
+    /**
+     * Feature strings by their id.
+     * @return Feature dictionary.
+     */
+    public List<String> features() {
+        return features;
+    }
+
+    public FeatureMatrix getMatrix() {
+        return matrix;
+    }
+
+    public int size() {
+        return matrix.rows();
+    }
+
+    /**
+     * Label id of an example.
+     * @param row Row of the example.
+     * @return Position of the label in {@link #labels()}.
+     */
+    public int labelOf(int row) {
+        return labelIds[row];
+    }
+
+    /**
+     * Builds a dataset over the same label and feature ids, for training classifiers.
+     * @return Dataset with a datum for each row, in order.
+     */
+    public GeneralDataset<L, String> toDataset() {
+        int[][] data = new int[size()][];
+        for(int row = 0; row < size(); row++) data[row] = matrix.row(row);
+        return new Dataset<>(new HashIndex<>(labels), labelIds.clone(), new HashIndex<>(features), data, size());
+    }
+
+    /**
+     * Saves the matrix, replacing any existing file.
+     * @param codec Codec for the labels.
+     * @param filename Filename.
+     * @throws IOToolsException Thrown if the file cannot be written.
+     */
+    public void save(Codec<L> codec, String filename) throws IOToolsException {
+        try(DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename)))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(labels.size());
+            output.writeInt(features.size());
+            output.writeInt(size());
+            output.writeInt(matrix.nonZeros());
+            for(int row = 0; row < size(); row++) output.writeInt(labelIds[row]);
+            output.writeInt(0);
+            for(int row = 0; row < size(); row++) output.writeInt(matrix.rowEnd(row));
+            for(int position = 0; position < matrix.nonZeros(); position++) output.writeInt(matrix.column(position));
+            for(L label : labels) codec.write(label, output);
+            for(String feature : features) Codecs.STRING.write(feature, output);
+        } catch(IOException ioException) {
+            logger.log(Level.SEVERE, "Could not save training matrix.", ioException);
+            throw new IOToolsException();
+        }
+    }
+
+    /**
+     * Loads a matrix saved by {@link #save(Codec, String)} with a single memory mapping, which is released
+     * once the matrix has been read.
+     * @param codec Codec for the labels.
+     * @param filename Filename.
+     * @param <L> The label type.
+     * @return The matrix.
+     * @throws IOToolsException Thrown if the file cannot be read or is not a valid training matrix.
+     */
+    public static <L> TrainingMatrix<L> load(Codec<L> codec, String filename) throws IOToolsException {
+        try(FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            long length = channel.size();
+            if(length < HEADER_SIZE) throw new IOException("Training matrix is too short.");
+            if(length > Integer.MAX_VALUE) throw new IOException("Training matrix is too large to map.");
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+
+            if(buffer.getInt(0) != MAGIC) throw new IOException("Not a training matrix.");
+            int version = buffer.getInt(4);
+            if(version > VERSION) throw new IOException("Unsupported training matrix version " + version + ".");
+            int labelCount = buffer.getInt(8);
+            int featureCount = buffer.getInt(12);
+            int rows = buffer.getInt(16);
+            int nonZeros = buffer.getInt(20);
+            long dictionaries = HEADER_SIZE + 4L * ((long) rows + rows + 1 + nonZeros);
+            if(labelCount < 0 || featureCount < 0 || rows < 0 || nonZeros < 0 || dictionaries > length) {
+                throw new IOException("Training matrix header is malformed.");
+            }
+
+            ByteBuffer view = buffer.duplicate();
+            view.position(HEADER_SIZE);
+            IntBuffer ints = view.asIntBuffer();
+            int[] labelIds = new int[rows];
+            int[] offsets = new int[rows + 1];
+            int[] columns = new int[nonZeros];
+            ints.get(labelIds);
+            ints.get(offsets);
+            ints.get(columns);
+            for(int labelId : labelIds) {
+                if(labelId < 0 || labelId >= labelCount) throw new IOException("Unknown label id " + labelId + ".");
+            }
+            if(offsets[0] != 0 || offsets[rows] != nonZeros) throw new IOException("Row offsets are malformed.");
+            for(int row = 0; row < rows; row++) {
+                if(offsets[row + 1] < offsets[row]) throw new IOException("Row offsets are malformed.");
+            }
+            for(int column : columns) {
+                if(column < 0 || column >= featureCount) throw new IOException("Unknown feature id " + column + ".");
+            }
+
+            view.position((int) dictionaries);
+            DataInputStream input = new DataInputStream(new BufferInputStream(view));
+            List<L> labels = new ArrayList<>(labelCount);
+            for(int i = 0; i < labelCount; i++) labels.add(codec.read(input));
+            List<String> features = new ArrayList<>(featureCount);
+            for(int i = 0; i < featureCount; i++) features.add(Codecs.STRING.read(input));
+            if(view.hasRemaining()) throw new IOException("Training matrix has trailing bytes.");
+            if(new HashSet<>(labels).size() != labelCount || new HashSet<>(features).size() != featureCount) {
+                throw new IOException("Dictionary contains duplicate entries.");
+            }
+            return new TrainingMatrix<>(labels, features, labelIds, new FeatureMatrix(offsets, columns, rows));
+        } catch(IOException ioException) {
+            logger.log(Level.SEVERE, "Could not load training matrix.", ioException);
+            throw new IOToolsException();
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package uk.ac.cam.sp715.recipes;
+
+import uk.ac.cam.sp715.util.BufferInputStream;
+import uk.ac.cam.sp715.util.Codecs;
+import uk.ac.cam.sp715.util.IOToolsException;
+import uk.ac.cam.sp715.util.Logging;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static uk.ac.cam.sp715.recipes.CorpusWriter.*;
+
+/**
+ * Random access to the recipes in a corpus file written by {@link CorpusWriter}. The file is memory
+ * mapped and each recipe is only decoded when it is requested, so opening a corpus is immediate and
+ * only the recipes being processed are held on the heap. Readers can be shared between threads.
+ * @author Srijan Parmeshwar <sp715@cam.ac.uk>
+ */
+public class CorpusReader implements Iterable<Recipe>, Closeable {
+    private static final Logger logger = Logging.getLogger(CorpusReader.class);
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int size;
+    private final int indexOffset;
+
+    private CorpusReader(FileChannel channel, MappedByteBuffer buffer, int size, int indexOffset) {
+        this.channel = channel;
+        this.buffer = buffer;
+        this.size = size;
+        this.indexOffset = indexOffset;
+    }
+
+    /**
+     * Opens a corpus file and checks its header, footer and index.
+     * @param filename Corpus file.
+     * @return Reader for the corpus.
+     * @throws IOToolsException Thrown if the file cannot be read or is not a valid corpus.
+     */
+    public static CorpusReader open(String filename) throws IOToolsException {
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
+            long length = channel.size();
+            if(length < HEADER_SIZE + FOOTER_SIZE + 8) throw new IOException("Corpus file is too short.");
+            if(length > Integer.MAX_VALUE) throw new IOException("Corpus file is too large to map.");
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+
+            if(buffer.getInt(0) != MAGIC || buffer.getInt((int) length - 4) != MAGIC) throw new IOException("Not a corpus file.");
+            int version = buffer.getInt(4);
+            if(version > VERSION) throw new IOException("Unsupported corpus version " + version + ".");
+            long indexOffset = buffer.getLong((int) length - FOOTER_SIZE);
+            int size = buffer.getInt((int) length - 8);
+            if(size < 0 || indexOffset < HEADER_SIZE || indexOffset + 8L * (size + 1) != length - FOOTER_SIZE) {
+                throw new IOException("Corpus index is malformed.");
+            }
+
+            long previous = HEADER_SIZE;
+            for(int i = 0; i <= size; i++) {
+                long offset = buffer.getLong((int) indexOffset + 8 * i);
+                if(offset < previous || offset > indexOffset) throw new IOException("Corpus index is malformed.");
+                previous = offset;
+            }
+            return new CorpusReader(channel, buffer, size, (int) indexOffset);
+        } catch(IOException ioException) {
+            logger.log(Level.SEVERE, "Could not open corpus file.", ioException);
+            if(channel != null) {
+                try {
+                    channel.close();
+                } catch(IOException closeException) {
+                    logger.log(Level.WARNING, "Could not close corpus file.", closeException);
+                }
+            }
+            throw new IOToolsException();
+        }
+    }
+
+    /**
+     * Number of recipes in the corpus.
+     * @return Number of recipes.
+     */
+    public int size() {
+        return size;
+    }
+
+    private int offset(int index) {
+        return (int) buffer.getLong(indexOffset + 8 * index);
+    }
+
+    /**
+     * Decodes the recipe at the given position.
+     * @param index Position of the recipe in the corpus.
+     * @return The recipe.
+     * @throws IndexOutOfBoundsException Thrown if there is no recipe at that position.
+     * @throws UncheckedIOException Thrown if the recipe cannot be decoded.
+     */
+    public Recipe get(int index) {
+        if(index < 0 || index >= size) throw new IndexOutOfBoundsException("No recipe at position " + index + ".");
+        ByteBuffer record = buffer.duplicate();
+        record.limit(offset(index + 1));
+        record.position(offset(index));
+        try {
+            DataInputStream input = new DataInputStream(new BufferInputStream(record));
+            Recipe recipe = Codecs.RECIPE.read(input);
+            if(record.hasRemaining()) throw new IOException("Recipe record has trailing bytes.");
+            return recipe;
+        } catch(IOException ioException) {
+            logger.log(Level.SEVERE, "Could not decode recipe " + index + ".", ioException);
+            throw new UncheckedIOException(ioException);
+        }
+    }
+
+    @Override
+    public Iterator<Recipe> iterator() {
+        return new Iterator<Recipe>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public Recipe next() {
+                if(!hasNext()) throw new NoSuchElementException();
+                return get(next++);
+            }
+        };
+    }
+
+    @Override
+    public Spliterator<Recipe> spliterator() {
+        return new RecipeSpliterator(0, size);
+    }
+
+    /**
+     * Streams the recipes in order, decoding each as it is reached.
+     * @return Sequential stream of recipes.
+     */
+    public Stream<Recipe> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * Streams the recipes in parallel, splitting the corpus into ranges of positions.
+     * @return Parallel stream of recipes.
+     */
+    public Stream<Recipe> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
+    /**
+     * Closes the corpus file. Recipes already decoded remain usable.
+     */
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch(IOException ioException) {
+            logger.log(Level.WARNING, "Could not close corpus file.", ioException);
+        }
+    }
+
+    private class RecipeSpliterator implements Spliterator<Recipe> {
+        private int from;
+        private final int to;
+
+        private RecipeSpliterator(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Recipe> action) {
+            if(from >= to) return false;
+            action.accept(get(from++));
+            return true;
+        }
+
+        @Override
+        public Spliterator<Recipe> trySplit() {
+            int middle = (from + to) >>> 1;
+            if(middle <= from) return null;
+            Spliterator<Recipe> prefix = new RecipeSpliterator(from, middle);
+            from = middle;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return to - from;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package uk.ac.cam.sp715.recipes;
+
+import uk.ac.cam.sp715.util.Codecs;
+import uk.ac.cam.sp715.util.IOTools;
+import uk.ac.cam.sp715.util.IOToolsException;
+import uk.ac.cam.sp715.util.Logging;
+
+import java.io.*;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Writes recipes to a corpus file which {@link CorpusReader} can memory map and read one recipe at
+ * a time.
+ * <p>
+ * The file starts with a magic number and a format version, followed by each recipe encoded with
+ * {@link Codecs#RECIPE}. After the recipes comes an index holding the offset of every recipe and
+ * of the end of the last one, and a footer with the offset of the index, the number of recipes and
+ * the magic number again, so the reader can find the index from the end of the file.
+ * @author Srijan Parmeshwar <sp715@cam.ac.uk>
+ */
+public class CorpusWriter implements Closeable {
+    static final int MAGIC = 0x52435250;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 8;
+    static final int FOOTER_SIZE = 16;
+
+    private static final Logger logger = Logging.getLogger(CorpusWriter.class);
+
+    private final DataOutputStream output;
+    private long[] offsets;
+    private int count;
+
+    /**
+     * Creates a corpus file, replacing any existing file.
+     * @param filename Filename.
+     * @throws IOException Thrown if the file cannot be created.
+     */
+    public CorpusWriter(String filename) throws IOException {
+        this.output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename)));
+        this.offsets = new long[16];
+        this.count = 0;
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+    }
+
+    //DataOutputStream counts bytes in an int, which limits corpora to 2GB as does a single mapping.
+    private long position() throws IOException {
+        if(output.size() == Integer.MAX_VALUE) throw new IOException("Corpus is too large.");
+        return output.size();
+    }
+
+    /**
+     * Appends a recipe.
+     * @param recipe Recipe to be written.
+     * @throws IOException Thrown if the recipe cannot be written.
+     */
+    public void write(Recipe recipe) throws IOException {
+        if(count + 1 == offsets.length) offsets = Arrays.copyOf(offsets, 2 * offsets.length);
+        offsets[count++] = position();
+        Codecs.RECIPE.write(recipe, output);
+    }
+
+    /**
+     * Writes the index and footer and closes the file.
+     * @throws IOException Thrown if the index cannot be written.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            offsets[count] = position();
+            long indexOffset = offsets[count];
+            for(int i = 0; i <= count; i++) output.writeLong(offsets[i]);
+            output.writeLong(indexOffset);
+            output.writeInt(count);
+            output.writeInt(MAGIC);
+            output.flush();
+        } finally {
+            output.close();
+        }
+    }
+
+    /**
+     * Saves recipes to a corpus file.
+     * @param recipes Recipes, in the order they will be read back.
+     * @param filename Filename.
+     * @throws IOToolsException Thrown when IO errors occur.
+     */
+    public static void save(Iterable<Recipe> recipes, String filename) throws IOToolsException {
+        try(CorpusWriter writer = new CorpusWriter(filename)) {
+            for(Recipe recipe : recipes) writer.write(recipe);
+        } catch(IOException ioException) {
+            logger.log(Level.SEVERE, "Could not write corpus to file.", ioException);
+            throw new IOToolsException();
+        }
+    }
+
+    /**
+     * Converts a serialized collection of recipes to a corpus file, keeping its iteration order.
+     * @param serialized Serialized {@link Collection} of recipes.
+     * @param filename Corpus filename.
+     * @throws IOToolsException Thrown when IO errors occur.
+     */
+    public static void convert(String serialized, String filename) throws IOToolsException {
+        Collection<Recipe> recipes = IOTools.read(serialized);
+        save(recipes, filename);
+        logger.log(Level.INFO, "Converted " + recipes.size() + " recipes from " + serialized + " to " + filename + ".");
+    }
+
+    public static void main(String[] args) throws IOToolsException {
+        for(String name : new String[] {"recipes", "wordvecrecipes"}) {
+            convert(Paths.get("data", name + ".ser").toString(), Paths.get("data", name + ".corpus").toString());
+        }
+    }
+}
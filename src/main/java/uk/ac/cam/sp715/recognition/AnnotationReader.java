@@ -0,0 +1,266 @@
+package uk.ac.cam.sp715.recognition;
+
+import edu.stanford.nlp.international.Language;
+import edu.stanford.nlp.trees.GrammaticalRelation;
+import uk.ac.cam.sp715.recognition.EntityAnnotator.AugmentedSemanticGraph;
+import uk.ac.cam.sp715.util.BufferInputStream;
+import uk.ac.cam.sp715.util.IOToolsException;
+import uk.ac.cam.sp715.util.Logging;
+import uk.ac.cam.sp715.util.StringTableDecoder;
+import uk.ac.cam.sp715.util.VarInts;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static uk.ac.cam.sp715.recognition.AnnotationWriter.*;
+
+/**
+ * Reads the sentence graphs of recipes from an annotation store written by {@link AnnotationWriter}.
+ * The file is memory mapped and only the chunk headers are read when it is opened, so recipes can
+ * be streamed through one chunk at a time or read by their index in the store. Each call decodes
+ * new graphs, so readers can be shared between threads. Recipes appended after the store was
+ * opened are not seen.
+ * @author Srijan Parmeshwar <sp715@cam.ac.uk>
+ */
+public class AnnotationReader implements Iterable<List<AugmentedSemanticGraph>>, Closeable {
+    private static final Logger logger = Logging.getLogger(AnnotationReader.class);
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    //Offset of the recipes of each chunk, the end of each chunk and the index of its first recipe.
+    private final int[] starts;
+    private final int[] ends;
+    private final int[] firsts;
+    private final int size;
+
+    private AnnotationReader(FileChannel channel, MappedByteBuffer buffer, int[] starts, int[] ends, int[] firsts, int size) {
+        this.channel = channel;
+        this.buffer = buffer;
+        this.starts = starts;
+        this.ends = ends;
+        this.firsts = firsts;
+        this.size = size;
+    }
+
+    /**
+     * Opens an annotation store and reads its chunk headers. A chunk left incomplete at the end of
+     * the file by a writer which was not closed is ignored.
+     * @param filename Annotation store.
+     * @return Reader for the store.
+     * @throws IOToolsException Thrown if the file cannot be read or is not an annotation store.
+     */
+    public static AnnotationReader open(String filename) throws IOToolsException {
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
+            long length = channel.size();
+            if(length < HEADER_SIZE) throw new IOException("Annotation store is too short.");
+            if(length > Integer.MAX_VALUE) throw new IOException("Annotation store is too large to map.");
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+
+            if(buffer.getInt(0) != MAGIC) throw new IOException("Not an annotation store.");
+            int version = buffer.getInt(4);
+            if(version > VERSION) throw new IOException("Unsupported annotation store version " + version + ".");
+
+            int[] starts = new int[16];
+            int[] ends = new int[16];
+            int[] firsts = new int[16];
+            int chunks = 0;
+            int size = 0;
+            int position = HEADER_SIZE;
+            while(position < length) {
+                if(length - position < 4 || buffer.getInt(position) < 1 || buffer.getInt(position) > length - position - 4) {
+                    logger.log(Level.WARNING, "Ignoring incomplete chunk at the end of " + filename + ".");
+                    break;
+                }
+                int end = position + 4 + buffer.getInt(position);
+                ByteBuffer header = buffer.duplicate();
+                header.limit(end);
+                header.position(position + 4);
+                int count = VarInts.read(new DataInputStream(new BufferInputStream(header)));
+                if(count < 1) throw new IOException("Chunk at " + position + " is empty.");
+
+                if(chunks == starts.length) {
+                    starts = Arrays.copyOf(starts, 2 * chunks);
+                    ends = Arrays.copyOf(ends, 2 * chunks);
+                    firsts = Arrays.copyOf(firsts, 2 * chunks);
+                }
+                starts[chunks] = header.position();
+                ends[chunks] = end;
+                firsts[chunks] = size;
+                chunks++;
+                size += count;
+                position = end;
+            }
+            return new AnnotationReader(channel, buffer, Arrays.copyOf(starts, chunks), Arrays.copyOf(ends, chunks),
+                    Arrays.copyOf(firsts, chunks), size);
+        } catch(IOException ioException) {
+            logger.log(Level.SEVERE, "Could not open annotation store.", ioException);
+            if(channel != null) {
+                try {
+                    channel.close();
+                } catch(IOException closeException) {
+                    logger.log(Level.WARNING, "Could not close annotation store.", closeException);
+                }
+            }
+            throw new IOToolsException();
+        }
+    }
+
+    /**
+     * Number of recipes in the store.
+     * @return Number of recipes.
+     */
+    public int size() {
+        return size;
+    }
+
+    //Length of the file up to the end of the last complete chunk.
+    long length() {
+        return ends.length == 0 ? HEADER_SIZE : ends[ends.length - 1];
+    }
+
+    /**
+     * Decodes the recipes of one chunk in order, with the chunk's string table.
+     */
+    private class ChunkDecoder {
+        private final ByteBuffer chunk;
+        private final DataInputStream input;
+        private final StringTableDecoder decoder;
+        private final int chunkIndex;
+        private int next;
+
+        private ChunkDecoder(int chunkIndex) {
+            this.chunk = buffer.duplicate();
+            chunk.limit(ends[chunkIndex]);
+            chunk.position(starts[chunkIndex]);
+            this.input = new DataInputStream(new BufferInputStream(chunk));
+            this.decoder = new StringTableDecoder(input);
+            this.chunkIndex = chunkIndex;
+            this.next = firsts[chunkIndex];
+        }
+
+        private int end() {
+            return chunkIndex + 1 < firsts.length ? firsts[chunkIndex + 1] : size;
+        }
+
+        private GrammaticalRelation readRelation() throws IOException {
+            String language = decoder.readString();
+            String name = decoder.readString();
+            if(language == null || name == null) throw new IOException("Relation is missing its language or name.");
+            try {
+                return GrammaticalRelation.valueOf(Language.valueOf(language), name);
+            } catch(IllegalArgumentException iae) {
+                throw new IOException("Unknown relation language " + language + ".");
+            }
+        }
+
+        private AugmentedSemanticGraph readGraph() throws IOException {
+            AugmentedSemanticGraph graph = new AugmentedSemanticGraph();
+            List<TaggedWord> tokens = new ArrayList<>();
+            int vertices = VarInts.read(input);
+            for(int i = 0; i < vertices; i++) {
+                TaggedWord token = decoder.readWord();
+                tokens.add(token);
+                graph.addVertex(token);
+            }
+
+            int edges = VarInts.read(input);
+            for(int i = 0; i < edges; i++) {
+                int source = VarInts.read(input);
+                int target = VarInts.read(input);
+                if(source >= tokens.size() || target >= tokens.size()) throw new IOException("Edge refers to an unknown token.");
+                graph.addEdge(tokens.get(source), tokens.get(target), readRelation());
+            }
+            return graph;
+        }
+
+        private boolean hasNext() {
+            return next < end();
+        }
+
+        private List<AugmentedSemanticGraph> next() {
+            try {
+                int sentences = VarInts.read(input);
+                List<AugmentedSemanticGraph> graphs = new ArrayList<>(sentences);
+                for(int i = 0; i < sentences; i++) graphs.add(readGraph());
+                if(++next == end() && chunk.hasRemaining()) throw new IOException("Chunk has trailing bytes.");
+                return graphs;
+            } catch(IOException ioException) {
+                logger.log(Level.SEVERE, "Could not decode recipe " + next + ".", ioException);
+                throw new UncheckedIOException(ioException);
+            }
+        }
+    }
+
+    /**
+     * Decodes the sentence graphs of the recipe with the given index. The recipes before it in its
+     * chunk are decoded as well, to read the chunk's string table.
+     * @param index Index of the recipe in the store.
+     * @return Graphs of the sentences of the recipe, in order.
+     * @throws IndexOutOfBoundsException Thrown if there is no recipe with that index.
+     * @throws UncheckedIOException Thrown if the recipe cannot be decoded.
+     */
+    public List<AugmentedSemanticGraph> get(int index) {
+        if(index < 0 || index >= size) throw new IndexOutOfBoundsException("No recipe with index " + index + ".");
+        int chunkIndex = Arrays.binarySearch(firsts, index);
+        if(chunkIndex < 0) chunkIndex = -chunkIndex - 2;
+        ChunkDecoder decoder = new ChunkDecoder(chunkIndex);
+        for(int i = firsts[chunkIndex]; i < index; i++) decoder.next();
+        return decoder.next();
+    }
+
+    @Override
+    public Iterator<List<AugmentedSemanticGraph>> iterator() {
+        return new Iterator<List<AugmentedSemanticGraph>>() {
+            private ChunkDecoder decoder = null;
+            private int nextChunk = 0;
+
+            @Override
+            public boolean hasNext() {
+                return (decoder != null && decoder.hasNext()) || nextChunk < starts.length;
+            }
+
+            @Override
+            public List<AugmentedSemanticGraph> next() {
+                if(!hasNext()) throw new NoSuchElementException();
+                if(decoder == null || !decoder.hasNext()) decoder = new ChunkDecoder(nextChunk++);
+                return decoder.next();
+            }
+        };
+    }
+
+    @Override
+    public Spliterator<List<AugmentedSemanticGraph>> spliterator() {
+        return Spliterators.spliterator(iterator(), size, Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.IMMUTABLE);
+    }
+
+    /**
+     * Streams the recipes in order, decoding one chunk at a time.
+     * @return Sequential stream of the sentence graphs of each recipe.
+     */
+    public Stream<List<AugmentedSemanticGraph>> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * Closes the annotation store. Graphs already decoded remain usable.
+     */
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch(IOException ioException) {
+            logger.log(Level.WARNING, "Could not close annotation store.", ioException);
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package uk.ac.cam.sp715.recognition;
+
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.pipeline.Annotation;
+import edu.stanford.nlp.trees.GrammaticalRelation;
+import edu.stanford.nlp.util.CoreMap;
+import uk.ac.cam.sp715.recognition.EntityAnnotator.AugmentedSemanticGraph;
+import uk.ac.cam.sp715.recognition.EntityAnnotator.EntityAnnotations;
+import uk.ac.cam.sp715.util.IOToolsException;
+import uk.ac.cam.sp715.util.Logging;
+import uk.ac.cam.sp715.util.StringTableEncoder;
+import uk.ac.cam.sp715.util.VarInts;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Appends the annotations of recipes to an annotation store, which {@link AnnotationReader} can
+ * stream through or read by recipe index. Only what the classifiers use is kept: the
+ * {@link AugmentedSemanticGraph} of each sentence, with its tagged tokens and relations.
+ * <p>
+ * The file starts with a magic number and a format version, followed by chunks of recipes. Each
+ * chunk is its length in bytes, the number of recipes in it and then the recipes, each as its
+ * sentence graphs. A graph lists its tokens and then its edges as pairs of positions in that list,
+ * both in the order they were added, so reading the graph back gives the same iteration order.
+ * Tokens and the language and name of each relation are written by a
+ * {@link StringTableEncoder} whose table is started afresh for each chunk. Chunks can be decoded on their own, so only one chunk is ever held in
+ * memory, and since there is nothing after the last chunk, a store can be reopened with
+ * {@link #append(String)} to add more recipes.
+ * @author Srijan Parmeshwar <sp715@cam.ac.uk>
+ */
+public class AnnotationWriter implements Closeable {
+    static final int MAGIC = 0x52414E4E;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 8;
+
+    /**
+     * Number of recipes in each chunk unless otherwise given.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 32;
+
+    private static final Logger logger = Logging.getLogger(AnnotationWriter.class);
+
+    private final DataOutputStream output;
+    private final int chunkSize;
+    private final ByteArrayOutputStream chunk;
+    private final DataOutputStream chunkOutput;
+    private final StringTableEncoder encoder;
+    private int chunkCount;
+    private int count;
+
+    private AnnotationWriter(OutputStream stream, int chunkSize, int count) {
+        if(chunkSize < 1) throw new IllegalArgumentException("Chunks must hold at least one recipe.");
+        this.output = new DataOutputStream(new BufferedOutputStream(stream));
+        this.chunkSize = chunkSize;
+        this.chunk = new ByteArrayOutputStream();
+        this.chunkOutput = new DataOutputStream(chunk);
+        this.encoder = new StringTableEncoder(chunkOutput);
+        this.chunkCount = 0;
+        this.count = count;
+    }
+
+    /**
+     * Creates an annotation store, replacing any existing file.
+     * @param filename Filename.
+     * @param chunkSize Number of recipes in each chunk.
+     * @throws IOException Thrown if the file cannot be created.
+     */
+    public AnnotationWriter(String filename, int chunkSize) throws IOException {
+        this(new FileOutputStream(filename), chunkSize, 0);
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+    }
+
+    /**
+     * Creates an annotation store with the default chunk size, replacing any existing file.
+     * @param filename Filename.
+     * @throws IOException Thrown if the file cannot be created.
+     */
+    public AnnotationWriter(String filename) throws IOException {
+        this(filename, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Opens an annotation store to add recipes after those already in it, creating it if it does
+     * not exist. A chunk left incomplete by a writer which was not closed is discarded.
+     * @param filename Filename.
+     * @return Writer which appends to the store.
+     * @throws IOToolsException Thrown if the file is not an annotation store or cannot be opened.
+     */
+    public static AnnotationWriter append(String filename) throws IOToolsException {
+        try {
+            if(!Files.exists(Paths.get(filename))) return new AnnotationWriter(filename);
+            long length;
+            int count;
+            try(AnnotationReader reader = AnnotationReader.open(filename)) {
+                length = reader.length();
+                count = reader.size();
+            }
+            try(FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.WRITE)) {
+                if(channel.size() > length) {
+                    logger.log(Level.WARNING, "Discarding " + (channel.size() - length) + " bytes of an incomplete chunk.");
+                    channel.truncate(length);
+                }
+            }
+            return new AnnotationWriter(new FileOutputStream(filename, true), DEFAULT_CHUNK_SIZE, count);
+        } catch(IOException ioException) {
+            logger.log(Level.SEVERE, "Could not open annotation store for appending.", ioException);
+            throw new IOToolsException();
+        }
+    }
+
+    private void writeGraph(AugmentedSemanticGraph graph) throws IOException {
+        Map<TaggedWord, Integer> positions = new HashMap<>();
+        VarInts.write(chunkOutput, graph.size());
+        for(TaggedWord token : graph.vertexSet()) {
+            positions.put(token, positions.size());
+            encoder.writeWord(token);
+        }
+
+        VarInts.write(chunkOutput, graph.edgeSet().size());
+        for(GrammaticalRelation relation : graph.edgeSet()) {
+            VarInts.write(chunkOutput, positions.get(graph.getEdgeSource(relation)));
+            VarInts.write(chunkOutput, positions.get(graph.getEdgeTarget(relation)));
+            encoder.writeString(relation.getLanguage().name());
+            encoder.writeString(relation.toString());
+        }
+    }
+
+    /**
+     * Appends the sentence graphs of a recipe.
+     * @param graphs Graphs of the sentences of the recipe, in order.
+     * @throws IOException Thrown if the recipe cannot be written.
+     */
+    public void write(List<AugmentedSemanticGraph> graphs) throws IOException {
+        VarInts.write(chunkOutput, graphs.size());
+        for(AugmentedSemanticGraph graph : graphs) writeGraph(graph);
+        chunkCount++;
+        count++;
+        if(chunkCount == chunkSize) flush();
+    }
+
+    /**
+     * Appends a recipe annotated by a pipeline including the {@link EntityAnnotator}.
+     * @param annotation Annotation of the recipe.
+     * @throws IOException Thrown if the recipe cannot be written.
+     */
+    public void write(Annotation annotation) throws IOException {
+        List<AugmentedSemanticGraph> graphs = new ArrayList<>();
+        for(CoreMap sentence : annotation.get(CoreAnnotations.SentencesAnnotation.class)) {
+            graphs.add(sentence.get(EntityAnnotations.class));
+        }
+        write(graphs);
+    }
+
+    /**
+     * Number of recipes in the store, including those written before it was opened.
+     * @return Number of recipes.
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Ends the current chunk, if it holds any recipes, and writes it to the file.
+     * @throws IOException Thrown if the chunk cannot be written.
+     */
+    public void flush() throws IOException {
+        if(chunkCount > 0) {
+            ByteArrayOutputStream header = new ByteArrayOutputStream(5);
+            VarInts.write(new DataOutputStream(header), chunkCount);
+            output.writeInt(header.size() + chunk.size());
+            header.writeTo(output);
+            chunk.writeTo(output);
+            chunk.reset();
+            encoder.clear();
+            chunkCount = 0;
+        }
+        output.flush();
+    }
+
+    /**
+     * Writes the last chunk and closes the file.
+     * @throws IOException Thrown if the last chunk cannot be written.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            output.close();
+        }
+    }
+}
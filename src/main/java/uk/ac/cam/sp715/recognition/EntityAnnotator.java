@@ -1,8 +1,6 @@
 package uk.ac.cam.sp715.recognition;
 
 import edu.mit.jwi.item.IIndexWord;
-import edu.mit.jwi.item.ISynset;
-import edu.mit.jwi.item.IWord;
 import edu.mit.jwi.item.IWordID;
 import edu.stanford.nlp.ling.CoreAnnotation;
 import edu.stanford.nlp.ling.CoreAnnotations;
@@ -17,20 +15,24 @@ import edu.stanford.nlp.semgraph.SemanticGraphEdge;
 import edu.stanford.nlp.trees.GrammaticalRelation;
 import edu.stanford.nlp.util.CoreMap;
 import org.jgrapht.graph.DefaultDirectedGraph;
+import uk.ac.cam.sp715.caching.ConcurrentMemoryCache;
 import uk.ac.cam.sp715.recipes.Ingredient;
 import uk.ac.cam.sp715.recipes.Recipe;
 import uk.ac.cam.sp715.util.Pipeline;
 import uk.ac.cam.sp715.wordnet.Explorer;
-import uk.ac.cam.sp715.wordnet.Taxonomy;
+import uk.ac.cam.sp715.wordnet.TaxonomyDictionary;
 import uk.ac.cam.sp715.wordnet.Taxonomy.TaxonomyType;
 
 import java.io.Serializable;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 /**
- * Dictionary based entity recognizer which uses WordNet taxonomies
- * to produce lemmatized dictionaries for each {@link TaxonomyType}.
+ * Dictionary based entity recognizer which uses the lemmatized dictionaries for each {@link TaxonomyType},
+ * precompiled from the WordNet taxonomies by {@link TaxonomyDictionary}.
  * The class implements the CoreNLP {@link Annotator} and so can be added to a pipeline
  * using {@link EntityAnnotations} as the annotation key, and {@link AugmentedSemanticGraph}
  * as the value type.
@@ -38,8 +40,14 @@ import java.util.stream.Collectors;
  */
 public class EntityAnnotator implements Annotator {
     private static final Explorer explorer = new Explorer();
-    private static final StanfordCoreNLP pipeline = Pipeline.getLemmaPipeline();
-    private static final Map<TaxonomyType, Set<String>> dictionaries = initializeDictionaries(Taxonomy.getTaxonomies());
+    private static final StanfordCoreNLP pipeline = Pipeline.getIngredientPipeline();
+    private static final Pattern ALPHABETIC = Pattern.compile("[a-zA-Z]+");
+    private static final ConcurrentMemoryCache<String, List<String>> ingredientNouns = new ConcurrentMemoryCache<>(10000);
+    private static final Set<String> augmentedNouns = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    private static final EntityMatcher matcher = new EntityMatcher(TaxonomyDictionary.load());
+    private static final Set<String> ingredientNames = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    private static final AtomicLong ingredientGeneration = new AtomicLong();
+    private static final ConcurrentMemoryCache<String, TypedNoun> types = new ConcurrentMemoryCache<>(100000);
     /**
      * Pipeline annotator name.
      */
@@ -55,77 +63,427 @@ public class EntityAnnotator implements Annotator {
         explorer.open();
     }
 
-    private static Map<TaxonomyType, Set<String>> initializeDictionaries(Map<TaxonomyType, Taxonomy> taxonomies) {
-        Map<TaxonomyType, Set<String>> dictionaries = new HashMap<>();
-        for(TaxonomyType type : taxonomies.keySet()) dictionaries.put(type, new HashSet<>());
+    /**
+     * Represents a directed graph holding dependency relations given by the CoreNLP dependency parser, however
+     * the tokens ({@link TaggedWord}) have been annotated as to whether they are recognized entities or not.
+     * <p>
+     * Sentence graphs are small, so rather than a JGraphT graph this stores tokens and edges in arrays,
+     * with the relation objects as edges. The graph behaves as a {@link DefaultDirectedGraph} would: each relation
+     * object (as compared by equality) is at most one edge, there is at most one edge between two tokens and loops are allowed.
+     * Once built, edges are indexed by the position of their tokens in the sentence, in compressed sparse row form,
+     * so incoming and outgoing edges can be looked up by position. The index is rebuilt if the graph is modified,
+     * so tokens should not be modified after they have been added to the graph.
+     */
+    public static class AugmentedSemanticGraph implements Serializable {
+        private static final long serialVersionUID = -3197514296474309426L;
+        private static final Comparator<TaggedWord> ORDER = (o1, o2) -> {
+            if(o1.beginPosition() < o2.beginPosition()) return -1;
+            else if(o1.beginPosition() > o2.beginPosition()) return 1;
+            else {
+                if(o1.endPosition() < o2.endPosition()) return -1;
+                else if(o1.beginPosition() > o2.endPosition()) return 1;
+                else return 0;
+            }
+        };
+
+        //Tokens and relations in the order they were added, edges are identified by their index in relations.
+        private final List<TaggedWord> vertices = new ArrayList<>();
+        private final Map<TaggedWord, Integer> vertexIds = new HashMap<>();
+        private final List<GrammaticalRelation> relations = new ArrayList<>();
+        private final Map<GrammaticalRelation, Integer> edgeIds = new HashMap<>();
+        private int[] sources = new int[16];
+        private int[] targets = new int[16];
+
+        private transient volatile Index index;
+
+        /**
+         * Position indexed form of the graph. Edges of each token are stored in insertion order.
+         */
+        private static final class Index {
+            private final List<TaggedWord> tokens;
+            private final int[] positions;
+            private final int[] outOffsets;
+            private final int[] outEdges;
+            private final int[] inOffsets;
+            private final int[] inEdges;
 
-        for(TaxonomyType type : taxonomies.keySet()) {
-            for(ISynset synset : taxonomies.get(type).vertexSet()) {
-                for(IWord word : synset.getWords()) {
-                    dictionaries.get(type).add(word.getLemma());
+            private Index(AugmentedSemanticGraph graph) {
+                int size = graph.vertices.size();
+                int edges = graph.relations.size();
+                List<TaggedWord> sorted = new ArrayList<>(graph.vertices);
+                sorted.sort(ORDER);
+                tokens = Collections.unmodifiableList(sorted);
+                positions = new int[size];
+                for(int position = 0; position < size; position++) positions[graph.vertexIds.get(sorted.get(position))] = position;
+
+                outOffsets = new int[size + 1];
+                inOffsets = new int[size + 1];
+                for(int edge = 0; edge < edges; edge++) {
+                    outOffsets[positions[graph.sources[edge]] + 1]++;
+                    inOffsets[positions[graph.targets[edge]] + 1]++;
+                }
+                for(int position = 0; position < size; position++) {
+                    outOffsets[position + 1] += outOffsets[position];
+                    inOffsets[position + 1] += inOffsets[position];
+                }
+                outEdges = new int[edges];
+                inEdges = new int[edges];
+                int[] outFill = Arrays.copyOf(outOffsets, size);
+                int[] inFill = Arrays.copyOf(inOffsets, size);
+                for(int edge = 0; edge < edges; edge++) {
+                    outEdges[outFill[positions[graph.sources[edge]]]++] = edge;
+                    inEdges[inFill[positions[graph.targets[edge]]]++] = edge;
                 }
             }
         }
-        return dictionaries;
-    }
 
-    /**
-     * Represents a directed graph holding dependency relations given by the CoreNLP dependency parser, however
-     * the tokens ({@link TaggedWord}) have been annotated as to whether they are recognized entities or not.
-     */
-    public static class AugmentedSemanticGraph extends DefaultDirectedGraph<TaggedWord, GrammaticalRelation> implements Serializable {
-        public AugmentedSemanticGraph() {
-            super(GrammaticalRelation.class);
+        /**
+         * Unmodifiable view of the edges between two offsets of a compressed row.
+         */
+        private final class EdgeSet extends AbstractSet<GrammaticalRelation> {
+            private final int[] edges;
+            private final int start;
+            private final int end;
+            private EdgeSet(int[] edges, int start, int end) {
+                this.edges = edges;
+                this.start = start;
+                this.end = end;
+            }
+            @Override
+            public Iterator<GrammaticalRelation> iterator() {
+                return new Iterator<GrammaticalRelation>() {
+                    private int next = start;
+                    @Override
+                    public boolean hasNext() {
+                        return next < end;
+                    }
+                    @Override
+                    public GrammaticalRelation next() {
+                        if(next >= end) throw new NoSuchElementException();
+                        return relations.get(edges[next++]);
+                    }
+                };
+            }
+            @Override
+            public int size() {
+                return end - start;
+            }
         }
-        public List<TaggedWord> orderedTokens() {
-            return this.vertexSet().parallelStream().sorted((o1, o2) -> {
-                if(o1.beginPosition() < o2.beginPosition()) return -1;
-                else if(o1.beginPosition() > o2.beginPosition()) return 1;
-                else {
-                    if(o1.endPosition() < o2.endPosition()) return -1;
-                    else if(o1.beginPosition() > o2.endPosition()) return 1;
-                    else return 0;
+
+        private Index index() {
+            Index current = index;
+            if(current == null) {
+                current = new Index(this);
+                index = current;
+            }
+            return current;
+        }
+
+        private int idOf(TaggedWord token) {
+            Integer id = vertexIds.get(Objects.requireNonNull(token));
+            if(id == null) throw new IllegalArgumentException("no such vertex in graph: " + token);
+            return id;
+        }
+
+        private int edgeIdOf(GrammaticalRelation relation) {
+            Integer id = edgeIds.get(relation);
+            if(id == null) throw new IllegalArgumentException("no such edge in graph: " + relation);
+            return id;
+        }
+
+        public boolean addVertex(TaggedWord token) {
+            if(vertexIds.containsKey(Objects.requireNonNull(token))) return false;
+            vertexIds.put(token, vertices.size());
+            vertices.add(token);
+            index = null;
+            return true;
+        }
+
+        /**
+         * Adds a relation from the source to the target token, unless this relation is already in the graph
+         * or the tokens are already related.
+         * @param source Governor token.
+         * @param target Dependent token.
+         * @param relation Relation to be added as an edge.
+         * @return True if the edge was added.
+         */
+        public boolean addEdge(TaggedWord source, TaggedWord target, GrammaticalRelation relation) {
+            if(edgeIds.containsKey(Objects.requireNonNull(relation))) return false;
+            int sourceId = idOf(source);
+            int targetId = idOf(target);
+            for(int edge = 0; edge < relations.size(); edge++) {
+                if(sources[edge] == sourceId && targets[edge] == targetId) return false;
+            }
+            int edge = relations.size();
+            if(edge == sources.length) {
+                sources = Arrays.copyOf(sources, 2 * edge);
+                targets = Arrays.copyOf(targets, 2 * edge);
+            }
+            sources[edge] = sourceId;
+            targets[edge] = targetId;
+            relations.add(relation);
+            edgeIds.put(relation, edge);
+            index = null;
+            return true;
+        }
+
+        public boolean containsVertex(TaggedWord token) {
+            return vertexIds.containsKey(token);
+        }
+
+        public boolean containsEdge(GrammaticalRelation relation) {
+            return edgeIds.containsKey(relation);
+        }
+
+        /**
+         * @return {@link Set}<{@link TaggedWord}> - Unmodifiable view of the tokens, in the order they were added.
+         */
+        public Set<TaggedWord> vertexSet() {
+            return new AbstractSet<TaggedWord>() {
+                @Override
+                public Iterator<TaggedWord> iterator() {
+                    return Collections.unmodifiableList(vertices).iterator();
+                }
+                @Override
+                public boolean contains(Object token) {
+                    return vertexIds.containsKey(token);
                 }
-            }).collect(Collectors.toList());
+                @Override
+                public int size() {
+                    return vertices.size();
+                }
+            };
+        }
+
+        /**
+         * @return {@link Set}<{@link GrammaticalRelation}> - Unmodifiable view of the edges, in the order they were added.
+         */
+        public Set<GrammaticalRelation> edgeSet() {
+            return new AbstractSet<GrammaticalRelation>() {
+                @Override
+                public Iterator<GrammaticalRelation> iterator() {
+                    return Collections.unmodifiableList(relations).iterator();
+                }
+                @Override
+                public boolean contains(Object relation) {
+                    return edgeIds.containsKey(relation);
+                }
+                @Override
+                public int size() {
+                    return relations.size();
+                }
+            };
+        }
+
+        public TaggedWord getEdgeSource(GrammaticalRelation relation) {
+            return vertices.get(sources[edgeIdOf(relation)]);
+        }
+
+        public TaggedWord getEdgeTarget(GrammaticalRelation relation) {
+            return vertices.get(targets[edgeIdOf(relation)]);
+        }
+
+        /**
+         * @param token Token in this graph.
+         * @return {@link Set}<{@link GrammaticalRelation}> - Unmodifiable view of the relations governed by this token.
+         */
+        public Set<GrammaticalRelation> outgoingEdgesOf(TaggedWord token) {
+            Index current = index();
+            int position = current.positions[idOf(token)];
+            return new EdgeSet(current.outEdges, current.outOffsets[position], current.outOffsets[position + 1]);
+        }
+
+        /**
+         * @param token Token in this graph.
+         * @return {@link Set}<{@link GrammaticalRelation}> - Unmodifiable view of the relations of which this token is the dependent.
+         */
+        public Set<GrammaticalRelation> incomingEdgesOf(TaggedWord token) {
+            Index current = index();
+            int position = current.positions[idOf(token)];
+            return new EdgeSet(current.inEdges, current.inOffsets[position], current.inOffsets[position + 1]);
+        }
+
+        /**
+         * Returns the tokens in the order they appear in the sentence.
+         * @return {@link List}<{@link TaggedWord}> - Unmodifiable view of the ordered tokens.
+         */
+        public List<TaggedWord> orderedTokens() {
+            return index().tokens;
         }
+
+        /**
+         * Returns the token at the given position in the sentence.
+         * @param position Position of the token.
+         * @return {@link TaggedWord} - The token at this position.
+         */
+        public TaggedWord tokenAt(int position) {
+            return index().tokens.get(position);
+        }
+
+        /**
+         * Returns the position of a token in the sentence.
+         * @param token Token in this graph.
+         * @return Position of the token, or -1 if it is not in the graph.
+         */
+        public int positionOf(TaggedWord token) {
+            Integer id = vertexIds.get(token);
+            return id != null ? index().positions[id] : -1;
+        }
+
+        /**
+         * Returns the number of tokens in the sentence.
+         * @return Number of tokens.
+         */
+        public int size() {
+            return vertices.size();
+        }
+
+        /**
+         * @param position Position of a token.
+         * @return Number of relations governed by the token at this position.
+         */
+        public int outDegreeAt(int position) {
+            Index current = index();
+            return current.outOffsets[position + 1] - current.outOffsets[position];
+        }
+
+        /**
+         * @param position Position of a token.
+         * @param i Index of the relation, less than {@link #outDegreeAt(int)}.
+         * @return {@link GrammaticalRelation} - The i-th relation governed by the token at this position.
+         */
+        public GrammaticalRelation outgoingRelationAt(int position, int i) {
+            Index current = index();
+            return relations.get(current.outEdges[current.outOffsets[position] + i]);
+        }
+
+        /**
+         * @param position Position of a token.
+         * @param i Index of the relation, less than {@link #outDegreeAt(int)}.
+         * @return Position of the dependent of the i-th relation governed by the token at this position.
+         */
+        public int outgoingTargetAt(int position, int i) {
+            Index current = index();
+            return current.positions[targets[current.outEdges[current.outOffsets[position] + i]]];
+        }
+
+        /**
+         * @param position Position of a token.
+         * @return Number of relations of which the token at this position is the dependent.
+         */
+        public int inDegreeAt(int position) {
+            Index current = index();
+            return current.inOffsets[position + 1] - current.inOffsets[position];
+        }
+
+        /**
+         * @param position Position of a token.
+         * @param i Index of the relation, less than {@link #inDegreeAt(int)}.
+         * @return {@link GrammaticalRelation} - The i-th relation of which the token at this position is the dependent.
+         */
+        public GrammaticalRelation incomingRelationAt(int position, int i) {
+            Index current = index();
+            return relations.get(current.inEdges[current.inOffsets[position] + i]);
+        }
+
+        /**
+         * @param position Position of a token.
+         * @param i Index of the relation, less than {@link #inDegreeAt(int)}.
+         * @return Position of the governor of the i-th relation of which the token at this position is the dependent.
+         */
+        public int incomingSourceAt(int position, int i) {
+            Index current = index();
+            return current.positions[sources[current.inEdges[current.inOffsets[position] + i]]];
+        }
+
+        /**
+         * Copies this graph into a JGraphT graph, for use with JGraphT algorithms.
+         * @return {@link DefaultDirectedGraph}<{@link TaggedWord}, {@link GrammaticalRelation}> - A copy of this graph.
+         */
+        public DefaultDirectedGraph<TaggedWord, GrammaticalRelation> toDirectedGraph() {
+            DefaultDirectedGraph<TaggedWord, GrammaticalRelation> graph = new DefaultDirectedGraph<>(GrammaticalRelation.class);
+            vertices.forEach(graph::addVertex);
+            for(int edge = 0; edge < relations.size(); edge++) {
+                graph.addEdge(vertices.get(sources[edge]), vertices.get(targets[edge]), relations.get(edge));
+            }
+            return graph;
+        }
+    }
+
+    //Nouns are matched by lemma so that plurals are recognized, modifiers (e.g. "baking") by their surface form.
+    private static String matchKey(IndexedWord token) {
+        if(token.tag().startsWith("N") && token.lemma() != null) return token.lemma();
+        else return token.word();
     }
 
     /**
      * Annotates a given text with entities using a
-     * dictionary based method. The WordNet taxonomy is used to
-     * check whether lemmatised inputs are members of the different classes.
+     * dictionary based method. Multi-word entities are found with a single pass of the
+     * {@link EntityMatcher} over the lemmas of each sentence, and the remaining nouns are
+     * checked against the lemmatised dictionaries taken from the WordNet taxonomies.
      */
     public void annotate(Annotation annotation) {
         for(CoreMap sentence : annotation.get(CoreAnnotations.SentencesAnnotation.class)) {
             SemanticGraph dependencies = sentence.get(SemanticGraphCoreAnnotations.CollapsedCCProcessedDependenciesAnnotation.class);
             List<IndexedWord> originalSentence = dependencies.vertexListSorted();
             Stack<TaggedWord> modifiedTokens = new Stack<>();
+            //Original tokens making up each of the modified tokens, used to map the dependencies across.
+            Stack<List<IndexedWord>> constituents = new Stack<>();
             AugmentedSemanticGraph newDependencies = new AugmentedSemanticGraph();
             Map<IndexedWord, TaggedWord> updateMap = new HashMap<>();
-            for (IndexedWord token : originalSentence) {
-                String word = token.word();
-                String pos = token.tag();
-                TaxonomyType tag = pos.startsWith("N") ? getType(word) : TaxonomyType.OTHER;
-                TaggedWord taggedToken = new TaggedWord(token, tag);
+
+            //Multi-word entities, indexed by their starting position, which end with a noun.
+            Map<Integer, EntityMatcher.Match> entities = new HashMap<>();
+            List<String> lemmas = originalSentence
+                    .stream()
+                    .map(EntityAnnotator::matchKey)
+                    .collect(Collectors.toList());
+            for(EntityMatcher.Match match : matcher.match(lemmas)) {
+                if(match.length() > 1 && originalSentence.get(match.end() - 1).tag().startsWith("N")) entities.put(match.start(), match);
+            }
+
+            for (int i = 0; i < originalSentence.size(); i++) {
+                IndexedWord token = originalSentence.get(i);
+                TaggedWord taggedToken;
+                List<IndexedWord> tokens;
+                if(entities.containsKey(i)) {
+                    EntityMatcher.Match match = entities.get(i);
+                    taggedToken = new TaggedWord(originalSentence.get(match.end() - 1), match.type());
+                    taggedToken.addAll(originalSentence.subList(match.start(), match.end() - 1));
+                    tokens = new ArrayList<>(originalSentence.subList(match.start(), match.end()));
+                    i = match.end() - 1;
+                } else {
+                    String pos = token.tag();
+                    TaxonomyType tag = pos.startsWith("N") ? getType(token.word()) : TaxonomyType.OTHER;
+                    taggedToken = new TaggedWord(token, tag);
+                    tokens = new ArrayList<>();
+                    tokens.add(token);
+                }
 
                 if(!modifiedTokens.empty()) {
                     TaggedWord top = modifiedTokens.peek();
                     if(top.isTypedEntity() || taggedToken.isTypedEntity()) {
                         if(top.isNoun() && taggedToken.isNoun()) {
-                            if(top.isTypedEntity()) top.addToken(token);
-                            else {
-                                modifiedTokens.pop();
-                                taggedToken.addAll(top.getTokens());
-                                modifiedTokens.push(taggedToken);
+                            if(top.isTypedEntity()) {
+                                top.addAll(taggedToken);
+                                constituents.peek().addAll(tokens);
+                                continue;
                             }
-                        } else modifiedTokens.push(taggedToken);
-                    } else modifiedTokens.push(taggedToken);
-                } else modifiedTokens.push(taggedToken);
-
-                modifiedTokens.peek().getTokens().forEach((key) -> updateMap.put(key, modifiedTokens.peek()));
+                            modifiedTokens.pop();
+                            taggedToken.addAll(top);
+                            tokens.addAll(constituents.pop());
+                        }
+                    }
+                }
+                modifiedTokens.push(taggedToken);
+                constituents.push(tokens);
             }
 
-            while(!modifiedTokens.empty()) newDependencies.addVertex(modifiedTokens.pop());
+            while(!modifiedTokens.empty()) {
+                TaggedWord taggedToken = modifiedTokens.pop();
+                for(IndexedWord token : constituents.pop()) updateMap.put(token, taggedToken);
+                newDependencies.addVertex(taggedToken);
+            }
             for(SemanticGraphEdge relation : dependencies.edgeIterable()) {
                 newDependencies.addEdge(updateMap.get(relation.getSource()), updateMap.get(relation.getTarget()), relation.getRelation());
             }
@@ -146,60 +504,145 @@ public class EntityAnnotator implements Annotator {
     }
 
     /**
-     * @param ingredient Ingredient details, from which the candidate strings are extracted.
-     * @return {@link List}<{@link String}> - The candidate strings which have been tagged as nouns.
+     * Finds the candidate ingredient names in each ingredient, annotating all of the ingredients which
+     * have not been seen before together, separated by blank lines. The candidates for each ingredient string are cached.
+     * @param ingredients Ingredient details, from which the candidate strings are extracted.
+     * @return {@link Map}<{@link String}, {@link List}<{@link String}>> - The candidate strings which have been tagged as nouns,
+     * for each ingredient string.
      */
-    private static List<String> possibleIngredientNames(Ingredient ingredient) {
-        String ingredientString = ingredient.getName();
-        Annotation annotation = new Annotation(ingredientString);
+    private static Map<String, List<String>> possibleIngredientNames(List<Ingredient> ingredients) {
+        Map<String, List<String>> possibleIngredientNames = new HashMap<>();
+        List<String> unseen = new ArrayList<>();
+        for(Ingredient ingredient : ingredients) {
+            String ingredientString = ingredient.getName();
+            if(possibleIngredientNames.containsKey(ingredientString)) continue;
+            List<String> cached = ingredientNouns.get(ingredientString);
+            if(cached != null) possibleIngredientNames.put(ingredientString, cached);
+            else {
+                possibleIngredientNames.put(ingredientString, new LinkedList<>());
+                unseen.add(ingredientString);
+            }
+        }
+        if(unseen.isEmpty()) return possibleIngredientNames;
+
+        StringBuilder text = new StringBuilder();
+        int[] starts = new int[unseen.size()];
+        for(int i = 0; i < unseen.size(); i++) {
+            if(i > 0) text.append("\n\n");
+            starts[i] = text.length();
+            text.append(unseen.get(i));
+        }
+        Annotation annotation = new Annotation(text.toString());
         pipeline.annotate(annotation);
         List<CoreMap> sentences = annotation.get(
                 CoreAnnotations.SentencesAnnotation.class);
-        List<String> possibleIngredientNames = new LinkedList<>();
 
         for(CoreMap sentence : sentences) {
+            //Finds the ingredient containing this sentence from its character offset.
+            int index = Arrays.binarySearch(starts, sentence.get(CoreAnnotations.CharacterOffsetBeginAnnotation.class));
+            if(index < 0) index = -index - 2;
+            List<String> nouns = possibleIngredientNames.get(unseen.get(index));
             for (CoreLabel token : sentence.get(CoreAnnotations.TokensAnnotation.class)) {
                 String word = token.word();
                 String pos = token.tag();
                 //Add only nouns.
-                if(pos.startsWith("N") && !word.equals("oz") && word.matches("[a-zA-Z]+")) {
-                    possibleIngredientNames.add(word);
+                if(pos.startsWith("N") && !word.equals("oz") && ALPHABETIC.matcher(word).matches()) {
+                    nouns.add(word);
                 }
             }
         }
+        for(String ingredientString : unseen) ingredientNouns.add(ingredientString, possibleIngredientNames.get(ingredientString));
         return possibleIngredientNames;
     }
 
     public static void augmentIngredientDictionary(Recipe recipe) {
-        for(Ingredient ingredient : recipe.getIngredients()) {
-            for(String noun : possibleIngredientNames(ingredient)) {
+        boolean added = false;
+        for(List<String> nouns : possibleIngredientNames(recipe.getIngredients()).values()) {
+            for(String noun : nouns) {
+                //Ingredient names are never removed, so each noun only needs to be looked up once.
+                if(augmentedNouns.contains(noun)) continue;
                 IIndexWord indexWord = explorer.getIndexNoun(noun);
                 if(indexWord != null) {
                     for (IWordID wordID : indexWord.getWordIDs()) {
                         String lemma = explorer.getWord(wordID).getLemma();
-                        dictionaries.get(TaxonomyType.INGREDIENTS).add(lemma);
+                        added |= ingredientNames.add(EntityMatcher.normalize(lemma));
                     }
-                } else dictionaries.get(TaxonomyType.INGREDIENTS).add(noun);
+                } else added |= ingredientNames.add(EntityMatcher.normalize(noun));
+                augmentedNouns.add(noun);
             }
         }
+        //Invalidates cached types which could change with the new ingredient names.
+        if(added) ingredientGeneration.incrementAndGet();
     }
 
     /**
-     * Recognizing whether a given noun is a certain type of entity.
+     * Cached type of a noun. Types found for the noun itself never change as ingredient names are only ever added,
+     * however types found after stripping plural endings (or not found at all) are only valid until the
+     * ingredient names change.
+     */
+    private static final class TypedNoun {
+        private static final long STABLE = -1;
+        private final TaxonomyType type;
+        private final long generation;
+        private TypedNoun(TaxonomyType type, long generation) {
+            this.type = type;
+            this.generation = generation;
+        }
+        private boolean isValid(long currentGeneration) {
+            return generation == STABLE || generation == currentGeneration;
+        }
+    }
+
+    private static TypedNoun computeType(String noun, long generation) {
+        long validity = TypedNoun.STABLE;
+        while(true) {
+            TaxonomyType type = matcher.typeOf(noun);
+            if(type != TaxonomyType.OTHER) return new TypedNoun(type, validity);
+            else if(ingredientNames.contains(EntityMatcher.normalize(noun))) return new TypedNoun(TaxonomyType.INGREDIENTS, validity);
+            validity = generation;
+            if(noun.endsWith("s")) noun = noun.substring(0, noun.length() - 1);
+            else return new TypedNoun(TaxonomyType.OTHER, validity);
+        }
+    }
+
+    /**
+     * Recognizing whether a given noun is a certain type of entity. This is a lookup in the
+     * precomputed lemma dictionaries and the ingredient names of the recipes seen so far,
+     * stripping plural endings if no entity is found. Results are memoized.
      * @param noun Noun to be recognized.
      * @return {@link TaxonomyType} - the type of this entity.
      */
     public TaxonomyType getType(String noun) {
-        IIndexWord indexWord = explorer.getIndexNoun(noun);
-        if(indexWord != null) {
-            for (IWordID wordID : indexWord.getWordIDs()) {
-                String lemma = explorer.getWord(wordID).getLemma();
-                for (TaxonomyType type : dictionaries.keySet()) if (dictionaries.get(type).contains(lemma)) return type;
-            }
-        } else for (TaxonomyType type : dictionaries.keySet()) if (dictionaries.get(type).contains(noun)) return type;
+        long generation = ingredientGeneration.get();
+        TypedNoun typed = types.get(noun);
+        if(typed != null && typed.isValid(generation)) return typed.type;
+        else if(typed != null) types.recordMiss();
+        typed = computeType(noun, generation);
+        types.add(noun, typed);
+        return typed.type;
+    }
+
+    /**
+     * Returns the proportion of {@link #getType(String)} calls answered from the cache.
+     * @return Cache hit rate.
+     */
+    public static double getTypeCacheHitRate() {
+        return types.getHitRate();
+    }
 
-        if(noun.endsWith("s")) {
-            return getType(noun.substring(0, noun.length() - 1));
-        } else return TaxonomyType.OTHER;
+    /**
+     * Returns the number of {@link #getType(String)} calls answered from the cache.
+     * @return Cache hits.
+     */
+    public static long getTypeCacheHits() {
+        return types.getHits();
+    }
+
+    /**
+     * Returns the number of {@link #getType(String)} calls which were not answered from the cache.
+     * @return Cache misses.
+     */
+    public static long getTypeCacheMisses() {
+        return types.getMisses();
     }
 }
@@ -0,0 +1,199 @@
+package uk.ac.cam.sp715.recognition;
+
+import uk.ac.cam.sp715.wordnet.Taxonomy.TaxonomyType;
+import uk.ac.cam.sp715.wordnet.TaxonomyDictionary;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Aho-Corasick automaton over lemma sequences, compiled once from the multi-word entities of the
+ * dictionaries (e.g. "baking tray", stored by WordNet as {@code baking_tray}), which are recognized in
+ * one linear pass over a sentence. Single lemmas are not part of the automaton and are typed with a
+ * lookup, in the mapped {@link TaxonomyDictionary} when the matcher is built from one, so that no
+ * WordNet access is needed while annotating.
+ * If a lemma appears in more than one dictionary, the type declared first in {@link TaxonomyType} is used.
+ * @author Srijan Parmeshwar <sp715@cam.ac.uk>
+ */
+public class EntityMatcher {
+    private static final int ROOT = 0;
+
+    private final List<Map<String, Integer>> transitions;
+    private final int[] failure;
+    private final int[] outputLink;
+    private final TaxonomyType[] types;
+    private final int[] lengths;
+    private final Function<String, TaxonomyType> lemmaTypes;
+
+    /**
+     * Represents a recognized entity, covering the tokens from start (inclusive) to end (exclusive).
+     */
+    public static class Match {
+        private final int start;
+        private final int end;
+        private final TaxonomyType type;
+        private Match(int start, int end, TaxonomyType type) {
+            this.start = start;
+            this.end = end;
+            this.type = type;
+        }
+        public int start() {return start;}
+        public int end() {return end;}
+        public int length() {return end - start;}
+        public TaxonomyType type() {return type;}
+        @Override
+        public String toString() {
+            return "[" + start + ", " + end + ", " + type + "]";
+        }
+    }
+
+    /**
+     * Compiles the automaton from the given lemma dictionaries, typing single lemmas with a hash lookup.
+     * @param dictionaries Lemmas for each entity type, multi-word lemmas separated by spaces or underscores.
+     */
+    public EntityMatcher(Map<TaxonomyType, ? extends Collection<String>> dictionaries) {
+        this(dictionaries, singleLemmaTypes(dictionaries));
+    }
+
+    /**
+     * Compiles the automaton from the multi-word lemmas of a precompiled dictionary, typing single
+     * lemmas with its binary search over the mapped table.
+     * @param dictionary Precompiled lemma dictionary.
+     */
+    public EntityMatcher(TaxonomyDictionary dictionary) {
+        this(dictionary.getMultiWordDictionaries(), dictionary::typeOf);
+    }
+
+    private static Function<String, TaxonomyType> singleLemmaTypes(Map<TaxonomyType, ? extends Collection<String>> dictionaries) {
+        Map<String, TaxonomyType> lemmas = new HashMap<>();
+        for(TaxonomyType type : TaxonomyType.values()) {
+            if(!dictionaries.containsKey(type)) continue;
+            for(String lemma : dictionaries.get(type)) {
+                String[] sequence = split(lemma);
+                if(sequence.length == 1) lemmas.putIfAbsent(sequence[0], type);
+            }
+        }
+        return lemma -> lemmas.getOrDefault(lemma, TaxonomyType.OTHER);
+    }
+
+    private EntityMatcher(Map<TaxonomyType, ? extends Collection<String>> dictionaries, Function<String, TaxonomyType> lemmaTypes) {
+        List<Map<String, Integer>> transitions = new ArrayList<>();
+        List<TaxonomyType> types = new ArrayList<>();
+        List<Integer> lengths = new ArrayList<>();
+        transitions.add(new HashMap<>());
+        types.add(null);
+        lengths.add(0);
+
+        this.lemmaTypes = lemmaTypes;
+        for(TaxonomyType type : TaxonomyType.values()) {
+            if(!dictionaries.containsKey(type)) continue;
+            for(String lemma : dictionaries.get(type)) {
+                String[] sequence = split(lemma);
+                if(sequence.length < 2) continue;
+
+                int state = ROOT;
+                for(String word : sequence) {
+                    Integer next = transitions.get(state).get(word);
+                    if(next == null) {
+                        next = transitions.size();
+                        transitions.add(new HashMap<>());
+                        types.add(null);
+                        lengths.add(0);
+                        transitions.get(state).put(word, next);
+                    }
+                    state = next;
+                }
+                if(types.get(state) == null) {
+                    types.set(state, type);
+                    lengths.set(state, sequence.length);
+                }
+            }
+        }
+
+        this.transitions = transitions;
+        this.types = types.toArray(new TaxonomyType[types.size()]);
+        this.lengths = lengths.stream().mapToInt(Integer::intValue).toArray();
+        this.failure = new int[transitions.size()];
+        this.outputLink = new int[transitions.size()];
+        computeFailureLinks();
+    }
+
+    //Breadth first construction of failure links, and of links to the longest proper suffix which is an entity.
+    private void computeFailureLinks() {
+        Queue<Integer> queue = new ArrayDeque<>();
+        outputLink[ROOT] = -1;
+        for(int child : transitions.get(ROOT).values()) {
+            failure[child] = ROOT;
+            outputLink[child] = -1;
+            queue.add(child);
+        }
+        while(!queue.isEmpty()) {
+            int state = queue.poll();
+            for(Map.Entry<String, Integer> transition : transitions.get(state).entrySet()) {
+                int child = transition.getValue();
+                int fallback = failure[state];
+                while(fallback != ROOT && !transitions.get(fallback).containsKey(transition.getKey())) fallback = failure[fallback];
+                Integer target = transitions.get(fallback).get(transition.getKey());
+                failure[child] = target != null ? target : ROOT;
+                outputLink[child] = types[failure[child]] != null ? failure[child] : outputLink[failure[child]];
+                queue.add(child);
+            }
+        }
+    }
+
+    private static String[] split(String lemma) {
+        String normalized = normalize(lemma).trim();
+        if(normalized.isEmpty()) return new String[0];
+        return normalized.split("[ _]+");
+    }
+
+    /**
+     * Normalizes a word or lemma to the form used as a dictionary key.
+     * @param word Word to be normalized.
+     * @return Lower case form of the word.
+     */
+    public static String normalize(String word) {
+        return word.toLowerCase(Locale.ENGLISH);
+    }
+
+    /**
+     * Looks up the type of a single lemma.
+     * @param lemma Lemma to be typed.
+     * @return {@link TaxonomyType} - the type of this lemma, or {@link TaxonomyType#OTHER} if it is not in any dictionary.
+     */
+    public TaxonomyType typeOf(String lemma) {
+        return lemmaTypes.apply(normalize(lemma));
+    }
+
+    /**
+     * Finds the multi-word entities in a sequence of lemmas. Overlapping matches are resolved by
+     * taking the leftmost, and then the longest, match.
+     * @param sequence Lemmas of the tokens in a sentence.
+     * @return {@link List}<{@link Match}> - Non-overlapping matches ordered by position.
+     */
+    public List<Match> match(List<String> sequence) {
+        List<Match> candidates = new ArrayList<>();
+        int state = ROOT;
+        int position = 0;
+        for(String lemma : sequence) {
+            String word = normalize(lemma);
+            while(state != ROOT && !transitions.get(state).containsKey(word)) state = failure[state];
+            state = transitions.get(state).getOrDefault(word, ROOT);
+            for(int output = types[state] != null ? state : outputLink[state]; output > ROOT; output = outputLink[output]) {
+                candidates.add(new Match(position + 1 - lengths[output], position + 1, types[output]));
+            }
+            position++;
+        }
+
+        candidates.sort((a, b) -> a.start != b.start ? Integer.compare(a.start, b.start) : Integer.compare(b.end, a.end));
+        List<Match> matches = new ArrayList<>();
+        int covered = 0;
+        for(Match candidate : candidates) {
+            if(candidate.start >= covered) {
+                matches.add(candidate);
+                covered = candidate.end;
+            }
+        }
+        return matches;
+    }
+}
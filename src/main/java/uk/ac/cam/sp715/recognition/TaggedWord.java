@@ -3,54 +3,207 @@ package uk.ac.cam.sp715.recognition;
 import edu.stanford.nlp.ling.IndexedWord;
 import uk.ac.cam.sp715.wordnet.Taxonomy.TaxonomyType;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.LinkedList;
 import java.util.List;
 
-public class TaggedWord extends IndexedWord implements Serializable {
-    private final List<IndexedWord> tokens;
-    private final TaxonomyType tag;
-    public TaggedWord(TaxonomyType tag) {
-        super();
-        this.tokens = new LinkedList<>();
+/**
+ * A span of one or more tokens from a sentence, tagged with the entity type it was recognized as.
+ * The word is identified by its head token, whose part of speech it takes, and stores only the
+ * character offsets, token indices, words and lemmas of its constituent tokens rather than
+ * copies of their {@link IndexedWord} labels. Constituents are kept in sentence order and
+ * strings are interned, so that the many words held by a {@link uk.ac.cam.sp715.flows.Flow}
+ * are cheap to keep in memory and to serialize.
+ * @author Srijan Parmeshwar <sp715@cam.ac.uk>
+ */
+public class TaggedWord implements Serializable {
+    private static final long serialVersionUID = 7028451339897177220L;
+    private static final int[] NO_INDICES = new int[0];
+    private static final String[] NO_STRINGS = new String[0];
+
+    private int sentIndex;
+    private int index;
+    private String partOfSpeech;
+    private TaxonomyType tag;
+    private int begin;
+    private int end;
+    private int[] indices = NO_INDICES;
+    private String[] words = NO_STRINGS;
+    private String[] lemmas = NO_STRINGS;
+
+    private transient String text;
+    private transient String lemma;
+    private transient String lowerCase;
+
+    /**
+     * Creates a tagged word headed by the given token.
+     * @param head Head token, which identifies the word.
+     * @param tag Entity type of the word.
+     */
+    public TaggedWord(IndexedWord head, TaxonomyType tag) {
+        this.sentIndex = head.sentIndex();
+        this.index = head.index();
+        this.partOfSpeech = intern(head.tag());
         this.tag = tag;
+        this.begin = head.beginPosition();
+        this.end = head.endPosition();
+        addToken(head);
     }
-    public TaggedWord(IndexedWord label, TaxonomyType tag) {
-        super(label);
-        tokens = new LinkedList<>();
-        tokens.add(label);
+
+    /**
+     * Recreates a tagged word from its stored fields, as read back from a binary flow file.
+     * @param sentIndex Sentence index of the head token.
+     * @param index Index of the head token.
+     * @param partOfSpeech Part of speech of the head token.
+     * @param tag Entity type of the word.
+     * @param begin Character offset of the start of the word.
+     * @param end Character offset of the end of the word.
+     * @param indices Indices of the constituent tokens in sentence order.
+     * @param words Words of the constituent tokens.
+     * @param lemmas Lemmas of the constituent tokens.
+     */
+    public TaggedWord(int sentIndex, int index, String partOfSpeech, TaxonomyType tag, int begin, int end,
+                      int[] indices, String[] words, String[] lemmas) {
+        if(words.length != indices.length || lemmas.length != indices.length) {
+            throw new IllegalArgumentException("Token indices, words and lemmas must have the same length.");
+        }
+        this.sentIndex = sentIndex;
+        this.index = index;
+        this.partOfSpeech = intern(partOfSpeech);
         this.tag = tag;
-        this.setBeginPosition(label.beginPosition());
-        this.setEndPosition(label.endPosition());
+        this.begin = begin;
+        this.end = end;
+        this.indices = indices.clone();
+        this.words = new String[words.length];
+        this.lemmas = new String[lemmas.length];
+        for(int i = 0; i < words.length; i++) {
+            this.words[i] = intern(words[i]);
+            this.lemmas[i] = intern(lemmas[i]);
+        }
+    }
+
+    private static String intern(String string) {
+        return string == null ? null : string.intern();
     }
+
+    //Inserts a constituent after any with the same index, keeping them in sentence order.
+    private void insert(int tokenIndex, String word, String lemma, int tokenBegin, int tokenEnd) {
+        int size = indices.length;
+        int position = size;
+        while(position > 0 && indices[position - 1] > tokenIndex) position--;
+
+        int[] newIndices = new int[size + 1];
+        String[] newWords = new String[size + 1];
+        String[] newLemmas = new String[size + 1];
+        System.arraycopy(indices, 0, newIndices, 0, position);
+        System.arraycopy(words, 0, newWords, 0, position);
+        System.arraycopy(lemmas, 0, newLemmas, 0, position);
+        newIndices[position] = tokenIndex;
+        newWords[position] = word;
+        newLemmas[position] = lemma;
+        System.arraycopy(indices, position, newIndices, position + 1, size - position);
+        System.arraycopy(words, position, newWords, position + 1, size - position);
+        System.arraycopy(lemmas, position, newLemmas, position + 1, size - position);
+        indices = newIndices;
+        words = newWords;
+        lemmas = newLemmas;
+
+        if(tokenBegin < begin) begin = tokenBegin;
+        if(tokenEnd > end) end = tokenEnd;
+        text = null;
+        this.lemma = null;
+        lowerCase = null;
+    }
+
+    /**
+     * Adds a constituent token to this word.
+     * @param token Token to be added.
+     */
     public void addToken(IndexedWord token) {
-        tokens.add(token);
+        insert(token.index(), intern(token.word()), intern(token.lemma()), token.beginPosition(), token.endPosition());
     }
+
+    /**
+     * Adds several constituent tokens to this word.
+     * @param tokens Tokens to be added.
+     */
     public void addAll(List<IndexedWord> tokens) {
-        this.tokens.addAll(tokens);
-        this.tokens.forEach((token) -> {
-            if(token.beginPosition()<this.beginPosition()) this.setBeginPosition(token.beginPosition());
-            if(token.endPosition()>this.endPosition()) this.setEndPosition(token.endPosition());
-        });
+        tokens.forEach(this::addToken);
     }
-    public List<IndexedWord> getTokens() {
-        return tokens;
+
+    /**
+     * Adds the constituent tokens of another word to this word.
+     * @param word Word whose tokens will be added.
+     */
+    public void addAll(TaggedWord word) {
+        for(int i = 0; i < word.indices.length; i++) {
+            insert(word.indices[i], word.words[i], word.lemmas[i], word.begin, word.end);
+        }
     }
-    @Override
-    public String toString() {
+
+    /**
+     * Number of constituent tokens.
+     * @return Number of tokens.
+     */
+    public int size() {
+        return indices.length;
+    }
+
+    /**
+     * Lemmas of the constituent tokens in sentence order.
+     * @return {@link List}<{@link String}> - Unmodifiable view of the lemmas.
+     */
+    public List<String> getLemmas() {
+        return Collections.unmodifiableList(Arrays.asList(lemmas));
+    }
+
+    /**
+     * Words of the constituent tokens in sentence order.
+     * @return {@link List}<{@link String}> - Unmodifiable view of the words.
+     */
+    public List<String> getWords() {
+        return Collections.unmodifiableList(Arrays.asList(words));
+    }
+
+    /**
+     * Sentence indices of the constituent tokens in sentence order.
+     * @return Copy of the token indices.
+     */
+    public int[] getTokenIndices() {
+        return indices.clone();
+    }
+
+    private static String join(String[] strings) {
+        if(strings.length == 1) return strings[0];
         StringBuilder builder = new StringBuilder();
-        boolean firstToken = true;
-        Collections.sort(tokens);
-        for (IndexedWord token : tokens) {
-            if (firstToken) firstToken = false;
-            else {
-                builder.append(" ");
-            }
-            builder.append(token.word());
+        for(int i = 0; i < strings.length; i++) {
+            if(i > 0) builder.append(" ");
+            builder.append(strings[i]);
         }
         return builder.toString();
     }
+
+    @Override
+    public String toString() {
+        if(text == null) text = join(words);
+        return text;
+    }
+
+    /**
+     * Lower case form of {@link #toString()}, which is used as a feature.
+     * @return Lower case words.
+     */
+    public String toLowerCase() {
+        if(lowerCase == null) lowerCase = toString().toLowerCase();
+        return lowerCase;
+    }
+    public String getLemma() {
+        if(lemma == null) lemma = join(lemmas);
+        return lemma;
+    }
     public boolean isTypedEntity() {
         return tag != TaxonomyType.OTHER;
     }
@@ -60,30 +213,80 @@ public class TaggedWord extends IndexedWord implements Serializable {
     public TaxonomyType entity() {
         return tag;
     }
-    public String getLemma() {
-        StringBuilder builder = new StringBuilder();
-        boolean firstToken = true;
-        for (IndexedWord token : tokens) {
-            if (firstToken) firstToken = false;
-            else {
-                builder.append(" ");
-            }
-            builder.append(token.lemma());
-        }
-        return builder.toString();
+    public String tag() {
+        return partOfSpeech;
+    }
+    public int sentIndex() {
+        return sentIndex;
+    }
+    public int index() {
+        return index;
+    }
+    public int beginPosition() {
+        return begin;
+    }
+    public int endPosition() {
+        return end;
     }
     public int start() {
-        int min = Integer.MAX_VALUE;
-        for(IndexedWord token : getTokens()) {
-            if(token.beginPosition()<min) min = token.beginPosition();
-        }
-        return min;
+        return begin;
     }
     public int end() {
-        int max = Integer.MIN_VALUE;
-        for(IndexedWord token : getTokens()) {
-            if(token.endPosition()>max) max = token.endPosition();
+        return end;
+    }
+
+    /**
+     * Words are equal when they have the same head token.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if(this == o) return true;
+        if(!(o instanceof TaggedWord)) return false;
+        TaggedWord other = (TaggedWord) o;
+        return sentIndex == other.sentIndex && index == other.index;
+    }
+    @Override
+    public int hashCode() {
+        return 29 * sentIndex + index;
+    }
+
+    //Words written before the slimmer representation extended IndexedWord and held a list of token labels.
+    //The head label cannot be read back, so the first noun (or first token) is used as the head.
+    private void readObject(ObjectInputStream stream) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = stream.readFields();
+        tag = (TaxonomyType) fields.get("tag", null);
+        if(fields.getObjectStreamClass().getField("tokens") == null) {
+            sentIndex = fields.get("sentIndex", 0);
+            index = fields.get("index", 0);
+            partOfSpeech = intern((String) fields.get("partOfSpeech", null));
+            begin = fields.get("begin", 0);
+            end = fields.get("end", 0);
+            indices = (int[]) fields.get("indices", NO_INDICES);
+            words = (String[]) fields.get("words", NO_STRINGS);
+            lemmas = (String[]) fields.get("lemmas", NO_STRINGS);
+            for(int i = 0; i < words.length; i++) {
+                words[i] = intern(words[i]);
+                lemmas[i] = intern(lemmas[i]);
+            }
+        } else {
+            @SuppressWarnings("unchecked")
+            List<IndexedWord> tokens = (List<IndexedWord>) fields.get("tokens", null);
+            IndexedWord head = tokens.get(0);
+            for(IndexedWord token : tokens) {
+                if(token.tag() != null && token.tag().startsWith("N")) {
+                    head = token;
+                    break;
+                }
+            }
+            sentIndex = head.sentIndex();
+            index = head.index();
+            partOfSpeech = intern(head.tag());
+            begin = head.beginPosition();
+            end = head.endPosition();
+            indices = NO_INDICES;
+            words = NO_STRINGS;
+            lemmas = NO_STRINGS;
+            addAll(tokens);
         }
-        return max;
     }
 }
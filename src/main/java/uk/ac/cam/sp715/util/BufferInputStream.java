@@ -0,0 +1,36 @@
+package uk.ac.cam.sp715.util;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Input stream over the remaining bytes of a {@link ByteBuffer}, such as a slice of a memory mapped
+ * file, which reads from the buffer without copying it. Reading advances the buffer's position.
+ * @author Srijan Parmeshwar <sp715@cam.ac.uk>
+ */
+public class BufferInputStream extends InputStream {
+    private final ByteBuffer buffer;
+
+    public BufferInputStream(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    @Override
+    public int read() {
+        return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) {
+        if(length == 0) return 0;
+        if(!buffer.hasRemaining()) return -1;
+        int count = Math.min(length, buffer.remaining());
+        buffer.get(bytes, offset, count);
+        return count;
+    }
+
+    @Override
+    public int available() {
+        return buffer.remaining();
+    }
+}
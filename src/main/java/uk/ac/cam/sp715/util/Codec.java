@@ -0,0 +1,29 @@
+package uk.ac.cam.sp715.util;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Binary encoding of values of one type, used by {@link IOTools} in place of Java serialization.
+ * A codec writes only the fields it needs, in a fixed order, and reads them back in the same order.
+ * @param <T> Type of value encoded.
+ * @author Srijan Parmeshwar <sp715@cam.ac.uk>
+ */
+public interface Codec<T> {
+    /**
+     * Writes a value.
+     * @param value Value to be written.
+     * @param output Output to write to.
+     * @throws IOException Thrown if the value cannot be written.
+     */
+    void write(T value, DataOutputStream output) throws IOException;
+
+    /**
+     * Reads a value written by {@link #write(Object, DataOutputStream)}.
+     * @param input Input to read from.
+     * @return Value read.
+     * @throws IOException Thrown if the input ends early or is malformed.
+     */
+    T read(DataInputStream input) throws IOException;
+}
@@ -0,0 +1,377 @@
+package uk.ac.cam.sp715.util;
+
+import edu.stanford.nlp.classify.Dataset;
+import edu.stanford.nlp.classify.GeneralDataset;
+import edu.stanford.nlp.classify.LinearClassifier;
+import edu.stanford.nlp.classify.LogisticClassifier;
+import edu.stanford.nlp.stats.Counter;
+import edu.stanford.nlp.util.HashIndex;
+import edu.stanford.nlp.util.Index;
+import uk.ac.cam.sp715.flows.Flow;
+import uk.ac.cam.sp715.flows.FlowReader;
+import uk.ac.cam.sp715.flows.FlowWriter;
+import uk.ac.cam.sp715.flows.Role;
+import uk.ac.cam.sp715.recipes.Ingredient;
+import uk.ac.cam.sp715.recipes.Recipe;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Codecs for the types the project stores: strings, lists and maps of them, recipes, flows,
+ * classifier datasets and trained classifiers, as well as a fallback which uses Java serialization.
+ * @author Srijan Parmeshwar <sp715@cam.ac.uk>
+ */
+public class Codecs {
+
+    /**
+     * Strings as UTF-8 bytes preceded by their length, allowing null.
+     */
+    public static final Codec<String> STRING = new Codec<String>() {
+        @Override
+        public void write(String value, DataOutputStream output) throws IOException {
+            if(value == null) VarInts.write(output, 0);
+            else {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                VarInts.write(output, bytes.length + 1);
+                output.write(bytes);
+            }
+        }
+
+        @Override
+        public String read(DataInputStream input) throws IOException {
+            int length = VarInts.read(input);
+            if(length == 0) return null;
+            byte[] bytes = new byte[length - 1];
+            input.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    };
+
+    public static final Codec<Boolean> BOOLEAN = new Codec<Boolean>() {
+        @Override
+        public void write(Boolean value, DataOutputStream output) throws IOException {
+            output.writeByte(value == null ? 0 : value ? 2 : 1);
+        }
+
+        @Override
+        public Boolean read(DataInputStream input) throws IOException {
+            int value = input.readByte();
+            if(value < 0 || value > 2) throw new IOException("Unknown boolean " + value + ".");
+            return value == 0 ? null : value == 2;
+        }
+    };
+
+    public static final Codec<Ingredient> INGREDIENT = new Codec<Ingredient>() {
+        @Override
+        public void write(Ingredient value, DataOutputStream output) throws IOException {
+            STRING.write(value.getName(), output);
+        }
+
+        @Override
+        public Ingredient read(DataInputStream input) throws IOException {
+            return new Ingredient(STRING.read(input));
+        }
+    };
+
+    public static final Codec<Recipe> RECIPE = new Codec<Recipe>() {
+        private final Codec<List<Ingredient>> ingredients = list(INGREDIENT);
+        private final Codec<List<String>> instructions = list(STRING);
+
+        @Override
+        public void write(Recipe value, DataOutputStream output) throws IOException {
+            STRING.write(value.getTitle(), output);
+            STRING.write(value.getSummary(), output);
+            ingredients.write(value.getIngredients(), output);
+            instructions.write(value.getInstructions(), output);
+        }
+
+        @Override
+        public Recipe read(DataInputStream input) throws IOException {
+            String title = STRING.read(input);
+            String summary = STRING.read(input);
+            return new Recipe(title, summary, ingredients.read(input), instructions.read(input));
+        }
+    };
+
+    public static final Codec<List<Recipe>> RECIPES = list(RECIPE);
+
+    /**
+     * Lists of flows in the format of {@link FlowWriter}.
+     */
+    public static final Codec<List<Flow>> FLOWS = new Codec<List<Flow>>() {
+        @Override
+        public void write(List<Flow> value, DataOutputStream output) throws IOException {
+            FlowWriter writer = new FlowWriter(output);
+            for(Flow flow : value) writer.write(flow);
+            writer.finish();
+        }
+
+        @Override
+        public List<Flow> read(DataInputStream input) throws IOException {
+            FlowReader reader = new FlowReader(input);
+            List<Flow> flows = new ArrayList<>();
+            for(Flow flow = reader.read(); flow != null; flow = reader.read()) flows.add(flow);
+            return flows;
+        }
+    };
+
+    /**
+     * Datasets for the semantic role labeller.
+     */
+    public static final Codec<GeneralDataset<Role, String>> ROLE_DATASET = dataset(enumeration(Role.class), STRING);
+
+    /**
+     * Trained semantic role classifiers.
+     */
+    public static final Codec<LinearClassifier<Role, String>> ROLE_CLASSIFIER = linearClassifier(enumeration(Role.class), STRING);
+
+    /**
+     * Trained classifiers for dependencies between actions.
+     */
+    public static final Codec<LogisticClassifier<Boolean, String>> DEPENDENCY_CLASSIFIER = logisticClassifier(BOOLEAN, STRING);
+
+    /**
+     * Codec for lists of values.
+     * @param codec Codec for the elements.
+     * @param <T> Element type.
+     * @return Codec which writes the size followed by each element.
+     */
+    public static <T> Codec<List<T>> list(Codec<T> codec) {
+        return new Codec<List<T>>() {
+            @Override
+            public void write(List<T> value, DataOutputStream output) throws IOException {
+                VarInts.write(output, value.size());
+                for(T element : value) codec.write(element, output);
+            }
+
+            @Override
+            public List<T> read(DataInputStream input) throws IOException {
+                int size = VarInts.read(input);
+                List<T> list = new ArrayList<>(Math.min(size, 1 << 16));
+                for(int i = 0; i < size; i++) list.add(codec.read(input));
+                return list;
+            }
+        };
+    }
+
+    /**
+     * Codec for maps, which are read back as {@link LinkedHashMap}s in the order they were written.
+     * @param keys Codec for the keys.
+     * @param values Codec for the values.
+     * @param <K> Key type.
+     * @param <V> Value type.
+     * @return Codec which writes the size followed by each key and value.
+     */
+    public static <K, V> Codec<Map<K, V>> map(Codec<K> keys, Codec<V> values) {
+        return new Codec<Map<K, V>>() {
+            @Override
+            public void write(Map<K, V> value, DataOutputStream output) throws IOException {
+                VarInts.write(output, value.size());
+                for(Map.Entry<K, V> entry : value.entrySet()) {
+                    keys.write(entry.getKey(), output);
+                    values.write(entry.getValue(), output);
+                }
+            }
+
+            @Override
+            public Map<K, V> read(DataInputStream input) throws IOException {
+                int size = VarInts.read(input);
+                Map<K, V> map = new LinkedHashMap<>();
+                for(int i = 0; i < size; i++) {
+                    K key = keys.read(input);
+                    map.put(key, values.read(input));
+                }
+                return map;
+            }
+        };
+    }
+
+    /**
+     * Codec for enum constants, which are written by name so that reordering the constants does
+     * not change their meaning.
+     * @param type Enum class.
+     * @param <E> Enum type.
+     * @return Codec for the constants.
+     */
+    public static <E extends Enum<E>> Codec<E> enumeration(Class<E> type) {
+        return new Codec<E>() {
+            @Override
+            public void write(E value, DataOutputStream output) throws IOException {
+                STRING.write(value == null ? null : value.name(), output);
+            }
+
+            @Override
+            public E read(DataInputStream input) throws IOException {
+                String name = STRING.read(input);
+                if(name == null) return null;
+                try {
+                    return Enum.valueOf(type, name);
+                } catch(IllegalArgumentException iae) {
+                    throw new IOException("Unknown constant " + name + " of " + type.getSimpleName() + ".");
+                }
+            }
+        };
+    }
+
+    private static <T> void writeIndex(Index<T> index, Codec<T> codec, DataOutputStream output) throws IOException {
+        VarInts.write(output, index.size());
+        for(T element : index.objectsList()) codec.write(element, output);
+    }
+
+    private static <T> Index<T> readIndex(Codec<T> codec, DataInputStream input) throws IOException {
+        int size = VarInts.read(input);
+        Index<T> index = new HashIndex<>();
+        for(int i = 0; i < size; i++) index.add(codec.read(input));
+        if(index.size() != size) throw new IOException("Index contains duplicate entries.");
+        return index;
+    }
+
+    /**
+     * Codec for datasets of binary features. The label and feature indices are written once, and
+     * each datum as its label and feature ids.
+     * @param labels Codec for the labels.
+     * @param features Codec for the features.
+     * @param <L> Label type.
+     * @param <F> Feature type.
+     * @return Codec for the datasets, which are read back as {@link Dataset}s.
+     */
+    public static <L, F> Codec<GeneralDataset<L, F>> dataset(Codec<L> labels, Codec<F> features) {
+        return new Codec<GeneralDataset<L, F>>() {
+            @Override
+            public void write(GeneralDataset<L, F> value, DataOutputStream output) throws IOException {
+                int size = value.size();
+                int[] labelIds = value.getLabelsArray();
+                int[][] data = value.getDataArray();
+                writeIndex(value.labelIndex(), labels, output);
+                writeIndex(value.featureIndex(), features, output);
+                VarInts.write(output, size);
+                for(int i = 0; i < size; i++) {
+                    VarInts.write(output, labelIds[i]);
+                    VarInts.write(output, data[i].length);
+                    for(int feature : data[i]) VarInts.write(output, feature);
+                }
+            }
+
+            @Override
+            public GeneralDataset<L, F> read(DataInputStream input) throws IOException {
+                Index<L> labelIndex = readIndex(labels, input);
+                Index<F> featureIndex = readIndex(features, input);
+                int size = VarInts.read(input);
+                int[] labelIds = new int[size];
+                int[][] data = new int[size][];
+                for(int i = 0; i < size; i++) {
+                    labelIds[i] = VarInts.read(input);
+                    if(labelIds[i] >= labelIndex.size()) throw new IOException("Unknown label id " + labelIds[i] + ".");
+                    data[i] = new int[VarInts.read(input)];
+                    for(int j = 0; j < data[i].length; j++) {
+                        data[i][j] = VarInts.read(input);
+                        if(data[i][j] >= featureIndex.size()) throw new IOException("Unknown feature id " + data[i][j] + ".");
+                    }
+                }
+                return new Dataset<>(labelIndex, labelIds, featureIndex, data, size);
+            }
+        };
+    }
+
+    /**
+     * Codec for trained linear classifiers. The label and feature indices are written once, followed
+     * by the weights of each feature for each label, so the classifier read back gives exactly the same
+     * scores. Classifiers are read back without thresholds, as trained by {@link
+     * edu.stanford.nlp.classify.LinearClassifierFactory}, so those with thresholds cannot be written.
+     * @param labels Codec for the labels.
+     * @param features Codec for the features.
+     * @param <L> Label type.
+     * @param <F> Feature type.
+     * @return Codec for the classifiers.
+     */
+    public static <L, F> Codec<LinearClassifier<L, F>> linearClassifier(Codec<L> labels, Codec<F> features) {
+        return new Codec<LinearClassifier<L, F>>() {
+            @Override
+            public void write(LinearClassifier<L, F> value, DataOutputStream output) throws IOException {
+                Index<L> labelIndex = value.labelIndex();
+                //The score of an example with no features is the threshold of each label.
+                Counter<L> thresholds = value.scoresOf(new int[0]);
+                for(L label : labelIndex.objectsList()) {
+                    if(thresholds.getCount(label) != 0) throw new IOException("Classifiers with thresholds cannot be written.");
+                }
+
+                double[][] weights = value.weights();
+                writeIndex(labelIndex, labels, output);
+                writeIndex(value.featureIndex(), features, output);
+                for(double[] row : weights) {
+                    for(int label = 0; label < labelIndex.size(); label++) output.writeDouble(row[label]);
+                }
+            }
+
+            @Override
+            public LinearClassifier<L, F> read(DataInputStream input) throws IOException {
+                Index<L> labelIndex = readIndex(labels, input);
+                Index<F> featureIndex = readIndex(features, input);
+                double[][] weights = new double[featureIndex.size()][labelIndex.size()];
+                for(double[] row : weights) {
+                    for(int label = 0; label < row.length; label++) row[label] = input.readDouble();
+                }
+                return new LinearClassifier<>(weights, featureIndex, labelIndex);
+            }
+        };
+    }
+
+    /**
+     * Codec for trained binary logistic classifiers, written as their negative and positive labels,
+     * feature index and weights.
+     * @param labels Codec for the labels.
+     * @param features Codec for the features.
+     * @param <L> Label type.
+     * @param <F> Feature type.
+     * @return Codec for the classifiers.
+     */
+    public static <L, F> Codec<LogisticClassifier<L, F>> logisticClassifier(Codec<L> labels, Codec<F> features) {
+        return new Codec<LogisticClassifier<L, F>>() {
+            @Override
+            public void write(LogisticClassifier<L, F> value, DataOutputStream output) throws IOException {
+                labels.write(value.getLabelForInternalNegativeClass(), output);
+                labels.write(value.getLabelForInternalPositiveClass(), output);
+                writeIndex(value.getFeatureIndex(), features, output);
+                for(double weight : value.getWeights()) output.writeDouble(weight);
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public LogisticClassifier<L, F> read(DataInputStream input) throws IOException {
+                L[] classes = (L[]) new Object[] {labels.read(input), labels.read(input)};
+                Index<F> featureIndex = readIndex(features, input);
+                double[] weights = new double[featureIndex.size()];
+                for(int feature = 0; feature < weights.length; feature++) weights[feature] = input.readDouble();
+                return new LogisticClassifier<>(weights, featureIndex, classes);
+            }
+        };
+    }
+
+    /**
+     * Codec which falls back to Java serialization, for types without a codec of their own.
+     * @param <T> Serializable type.
+     * @return Codec using {@link ObjectOutputStream}.
+     */
+    public static <T extends Serializable> Codec<T> serialized() {
+        return new Codec<T>() {
+            @Override
+            public void write(T value, DataOutputStream output) throws IOException {
+                ObjectOutputStream objects = new ObjectOutputStream(output);
+                objects.writeObject(value);
+                objects.flush();
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public T read(DataInputStream input) throws IOException {
+                try {
+                    return (T) new ObjectInputStream(input).readObject();
+                } catch(ClassNotFoundException | ClassCastException exception) {
+                    throw new IOException("Could not deserialize object.", exception);
+                }
+            }
+        };
+    }
+}
@@ -25,8 +25,8 @@ public class HTMLParser {
 
     private static Cache<RecipeKey, Recipe> initializeCache() {
         try {
-            if(!PersistentCache.exists("cache")) return new PersistentCache<>(100);
-            else return PersistentCache.read("cache");
+            if(!PersistentCache.exists("cache")) return new PersistentCache<Recipe>(100).withCodec(Codecs.RECIPE);
+            else return PersistentCache.<Recipe>read("cache").withCodec(Codecs.RECIPE);
         } catch (IOToolsException iote) {
             logger.log(Level.SEVERE, "Could not read recipe cache. Creating in memory cache instead.", iote);
             return new MemoryCache<>(50);
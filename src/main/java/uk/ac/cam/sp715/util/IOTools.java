@@ -8,14 +8,32 @@ import java.util.Collection;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
 
 /**
  * Set of utility functions to handle common IO operations e.g. serializing
  * and deserializing objects.
+ * <p>
+ * Besides Java serialization, values can be saved with a {@link Codec}, optionally compressed.
+ * Such files start with a magic number, a format version and the compression used, followed by
+ * the encoded value. Reading with a codec also accepts files written by Java serialization, so
+ * loaders can switch to a codec before their files are migrated.
  * @author Srijan Parmeshwar <sp715@cam.ac.uk>
  */
 public class IOTools {
     private static final Logger logger = Logging.getLogger(IOTools.class);
+    private static final int MAGIC = 0x52564346;
+    private static final int VERSION = 1;
+    //First two bytes of a Java serialization stream.
+    private static final int SERIALIZED_MAGIC = 0xACED;
+
+    /**
+     * Compression applied to values saved with a codec.
+     */
+    public enum Compression {
+        NONE, DEFLATE
+    }
 
     /**
      * Takes a collection and filepath and saves the collection to a file at
@@ -78,6 +96,84 @@ public class IOTools {
         }
     }
 
+    /**
+     * Saves a value to the given filename with a codec, without compression.
+     * @param value Value to be saved.
+     * @param codec Codec for the value.
+     * @param filename Filename.
+     * @param <T> Type of value.
+     * @throws IOToolsException - Thrown when IO errors occur.
+     */
+    public static <T> void save(T value, Codec<T> codec, String filename) throws IOToolsException {
+        save(value, codec, Compression.NONE, filename);
+    }
+
+    /**
+     * Saves a value to the given filename with a codec.
+     * @param value Value to be saved.
+     * @param codec Codec for the value.
+     * @param compression Compression applied to the encoded value.
+     * @param filename Filename.
+     * @param <T> Type of value.
+     * @throws IOToolsException - Thrown when IO errors occur.
+     */
+    public static <T> void save(T value, Codec<T> codec, Compression compression, String filename) throws IOToolsException {
+        try(FileOutputStream file = new FileOutputStream(filename);
+            BufferedOutputStream buffer = new BufferedOutputStream(file);
+            DataOutputStream header = new DataOutputStream(buffer)) {
+            header.writeInt(MAGIC);
+            VarInts.write(header, VERSION);
+            VarInts.write(header, compression.ordinal());
+            if(compression == Compression.DEFLATE) {
+                DeflaterOutputStream deflater = new DeflaterOutputStream(buffer, true);
+                DataOutputStream output = new DataOutputStream(new BufferedOutputStream(deflater));
+                codec.write(value, output);
+                output.flush();
+                deflater.finish();
+            } else codec.write(value, header);
+            header.flush();
+        } catch(IOException ioException) {
+            logger.log(Level.SEVERE, "Could not write value to file.", ioException);
+            throw new IOToolsException();
+        }
+    }
+
+    /**
+     * Reads a value saved with a codec, or an object saved by Java serialization.
+     * @param codec Codec for the value.
+     * @param filename File to be read.
+     * @param <T> Type of value.
+     * @return The value read.
+     * @throws IOToolsException - Thrown when IO errors occur or the file is malformed.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T read(Codec<T> codec, String filename) throws IOToolsException {
+        try(FileInputStream file = new FileInputStream(filename);
+            BufferedInputStream buffer = new BufferedInputStream(file);
+            DataInputStream header = new DataInputStream(buffer)) {
+            buffer.mark(4);
+            int magic = header.readInt();
+            if(magic >>> 16 == SERIALIZED_MAGIC) {
+                buffer.reset();
+                return (T) new ObjectInputStream(buffer).readObject();
+            } else if(magic != MAGIC) throw new IOException("Unknown file format.");
+
+            int version = VarInts.read(header);
+            if(version > VERSION) throw new IOException("Unsupported file version " + version + ".");
+            int compression = VarInts.read(header);
+            if(compression == Compression.NONE.ordinal()) return codec.read(header);
+            else if(compression == Compression.DEFLATE.ordinal()) {
+                return codec.read(new DataInputStream(new BufferedInputStream(new InflaterInputStream(buffer))));
+            } else throw new IOException("Unknown compression " + compression + ".");
+        } catch(IOException ioException) {
+            logger.log(Level.SEVERE, "Could not read value from file.", ioException);
+            throw new IOToolsException();
+        } catch (ClassNotFoundException cnfe) {
+            logger.log(Level.SEVERE, "Could not find class.", cnfe);
+            throw new IOToolsException();
+        }
+    }
+
     /**
      * Checks whether a file at the given location exists.
      * @param filename Filename.
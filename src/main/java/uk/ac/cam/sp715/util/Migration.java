@@ -0,0 +1,75 @@
+package uk.ac.cam.sp715.util;
+
+import java.io.File;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Converts files saved by Java serialization to the codec format of {@link IOTools}. Each file is
+ * written next to the original with a {@code .bin} extension and read back to check that it decodes,
+ * and the original is kept. Run with no arguments to convert all of the project's data files, or
+ * with some of their names to convert only those.
+ * @author Srijan Parmeshwar <sp715@cam.ac.uk>
+ */
+public class Migration {
+    private static final Logger logger = Logging.getLogger(Migration.class);
+
+    private static class Entry<T> {
+        private final String filename;
+        private final Codec<T> codec;
+        private Entry(String filename, Codec<T> codec) {
+            this.filename = filename;
+            this.codec = codec;
+        }
+    }
+
+    private static final List<Entry<?>> entries = new ArrayList<>();
+    static {
+        entries.add(new Entry<>("data/recipes.ser", Codecs.RECIPES));
+        entries.add(new Entry<>("data/srl-train-en.ser", Codecs.ROLE_DATASET));
+        entries.add(new Entry<>("flowcharts/testrecipes.ser", Codecs.map(Codecs.STRING, Codecs.RECIPE)));
+    }
+
+    /**
+     * Name of the migrated file for a serialized file.
+     * @param filename Serialized file.
+     * @return Filename with the {@code .ser} extension replaced by {@code .bin}.
+     */
+    public static String migratedName(String filename) {
+        return (filename.endsWith(".ser") ? filename.substring(0, filename.length() - 4) : filename) + ".bin";
+    }
+
+    /**
+     * Converts a serialized file.
+     * @param filename Serialized file.
+     * @param codec Codec for its contents.
+     * @param compression Compression for the new file.
+     * @param <T> Type of the contents.
+     * @throws IOToolsException Thrown if the file cannot be read or written.
+     */
+    public static <T> void migrate(String filename, Codec<T> codec, IOTools.Compression compression) throws IOToolsException {
+        String destination = migratedName(filename);
+        Serializable value = IOTools.read(filename);
+        @SuppressWarnings("unchecked")
+        T contents = (T) value;
+        IOTools.save(contents, codec, compression, destination);
+        IOTools.read(codec, destination);
+        logger.log(Level.INFO, "Migrated " + filename + " (" + new File(filename).length() + " bytes) to "
+                + destination + " (" + new File(destination).length() + " bytes).");
+    }
+
+    private static <T> void migrate(Entry<T> entry) throws IOToolsException {
+        migrate(entry.filename, entry.codec, IOTools.Compression.DEFLATE);
+    }
+
+    public static void main(String[] args) throws IOToolsException {
+        for(Entry<?> entry : entries) {
+            if(args.length > 0 && !Arrays.asList(args).contains(entry.filename)) continue;
+            if(IOTools.exists(entry.filename)) migrate(entry);
+        }
+    }
+}
@@ -30,7 +30,19 @@ public class Pipeline extends StanfordCoreNLP {
      * @return {@link Pipeline} Custom pipeline.
      */
     public static Pipeline getPipeline(String annotators) {
+        return getPipeline(annotators, new Properties());
+    }
+
+    /**
+     * Custom pipeline including annotators as specified in
+     * properties input, with additional annotator properties.
+     * @param annotators Annotators to include.
+     * @param properties Additional properties, e.g. annotator options.
+     * @return {@link Pipeline} Custom pipeline.
+     */
+    public static Pipeline getPipeline(String annotators, Properties properties) {
         Properties props = new Properties();
+        props.putAll(properties);
         props.setProperty("customAnnotatorClass.lowercase", "uk.ac.cam.sp715.recognition.LowerCaseAnnotator");
         props.setProperty("customAnnotatorClass.entities", "uk.ac.cam.sp715.recognition.EntityAnnotator");
         props.setProperty("annotators", annotators);
@@ -66,6 +78,18 @@ public class Pipeline extends StanfordCoreNLP {
         return getPipeline("tokenize, ssplit, lowercase, pos, lemma");
     }
 
+    /**
+     * Ingredient pipeline, the same as the lemma pipeline except that two consecutive
+     * newlines always end a sentence, so that a list of ingredients can be annotated in one
+     * pass with each ingredient on its own lines.
+     * @return {@link Pipeline} Ingredient pipeline.
+     */
+    public static Pipeline getIngredientPipeline() {
+        Properties props = new Properties();
+        props.setProperty("ssplit.newlineIsSentenceBreak", "two");
+        return getPipeline("tokenize, ssplit, lowercase, pos, lemma", props);
+    }
+
     /**
      * Run the pipeline on an input annotation. The annotation is modified in place.
      * @param recipe Recipe to be annotated.
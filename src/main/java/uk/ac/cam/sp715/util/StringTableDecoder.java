@@ -0,0 +1,80 @@
+package uk.ac.cam.sp715.util;
+
+import uk.ac.cam.sp715.recognition.TaggedWord;
+import uk.ac.cam.sp715.wordnet.Taxonomy.TaxonomyType;
+
+import java.io.DataInput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static uk.ac.cam.sp715.util.StringTableEncoder.*;
+
+/**
+ * Reads strings and {@link TaggedWord}s written by {@link StringTableEncoder}, building up the same
+ * string table. Strings read from the table are interned.
+ * @author Srijan Parmeshwar <sp715@cam.ac.uk>
+ */
+public class StringTableDecoder {
+    private static final TaxonomyType[] TAGS = TaxonomyType.values();
+
+    private final DataInput input;
+    private final List<String> strings;
+
+    /**
+     * Starts an empty string table.
+     * @param input Input to read from.
+     */
+    public StringTableDecoder(DataInput input) {
+        this.input = input;
+        this.strings = new ArrayList<>();
+    }
+
+    /**
+     * Reads a string.
+     * @return String, which may be null.
+     * @throws IOException Thrown if the input ends or refers to a string not yet in the table.
+     */
+    public String readString() throws IOException {
+        int reference = VarInts.read(input);
+        if(reference == NULL_STRING) return null;
+        else if(reference == NEW_STRING) {
+            byte[] bytes = new byte[VarInts.read(input)];
+            input.readFully(bytes);
+            String string = new String(bytes, StandardCharsets.UTF_8).intern();
+            strings.add(string);
+            return string;
+        } else {
+            int position = reference - FIRST_STRING;
+            if(position >= strings.size()) throw new IOException("Unknown string reference " + position + ".");
+            return strings.get(position);
+        }
+    }
+
+    /**
+     * Reads a tagged word.
+     * @return Word.
+     * @throws IOException Thrown if the input ends or the word is malformed.
+     */
+    public TaggedWord readWord() throws IOException {
+        int sentIndex = VarInts.readSigned(input);
+        int index = VarInts.readSigned(input);
+        String partOfSpeech = readString();
+        int tag = VarInts.read(input);
+        if(tag > TAGS.length) throw new IOException("Unknown entity type " + tag + ".");
+        int begin = VarInts.readSigned(input);
+        int end = begin + VarInts.readSigned(input);
+
+        int size = VarInts.read(input);
+        int[] indices = new int[size];
+        String[] words = new String[size];
+        String[] lemmas = new String[size];
+        for(int i = 0; i < size; i++) {
+            indices[i] = VarInts.readSigned(input);
+            words[i] = readString();
+            lemmas[i] = readString();
+        }
+        return new TaggedWord(sentIndex, index, partOfSpeech, tag == 0 ? null : TAGS[tag - 1], begin, end, indices, words, lemmas);
+    }
+}
@@ -0,0 +1,88 @@
+package uk.ac.cam.sp715.util;
+
+import uk.ac.cam.sp715.recognition.TaggedWord;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes strings and {@link TaggedWord}s with a string table, for the binary formats which store many
+ * tokens, read back by {@link StringTableDecoder}. The first time a string is written its bytes follow
+ * a marker, and later it is referred to by its position in the table. A {@link TaggedWord} is written
+ * as its head token, tag, character span and constituent tokens, with integers in {@link VarInts}.
+ * @author Srijan Parmeshwar <sp715@cam.ac.uk>
+ */
+public class StringTableEncoder {
+    //String references. Later strings in the table are referred to by their position plus FIRST_STRING.
+    static final int NULL_STRING = 0;
+    static final int NEW_STRING = 1;
+    static final int FIRST_STRING = 2;
+
+    private final DataOutput output;
+    private final Map<String, Integer> strings;
+
+    /**
+     * Starts an empty string table.
+     * @param output Output to write to.
+     */
+    public StringTableEncoder(DataOutput output) {
+        this.output = output;
+        this.strings = new HashMap<>();
+    }
+
+    /**
+     * Writes a string, adding it to the table if it has not been written before.
+     * @param string String, which may be null.
+     * @throws IOException Thrown if the string cannot be written.
+     */
+    public void writeString(String string) throws IOException {
+        if(string == null) {
+            VarInts.write(output, NULL_STRING);
+            return;
+        }
+        Integer position = strings.get(string);
+        if(position != null) VarInts.write(output, position + FIRST_STRING);
+        else {
+            strings.put(string, strings.size());
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            VarInts.write(output, NEW_STRING);
+            VarInts.write(output, bytes.length);
+            output.write(bytes);
+        }
+    }
+
+    /**
+     * Writes a tagged word.
+     * @param word Word.
+     * @throws IOException Thrown if the word cannot be written.
+     */
+    public void writeWord(TaggedWord word) throws IOException {
+        VarInts.writeSigned(output, word.sentIndex());
+        VarInts.writeSigned(output, word.index());
+        writeString(word.tag());
+        VarInts.write(output, word.entity() == null ? 0 : word.entity().ordinal() + 1);
+        VarInts.writeSigned(output, word.beginPosition());
+        VarInts.writeSigned(output, word.endPosition() - word.beginPosition());
+
+        int[] indices = word.getTokenIndices();
+        List<String> words = word.getWords();
+        List<String> lemmas = word.getLemmas();
+        VarInts.write(output, indices.length);
+        for(int i = 0; i < indices.length; i++) {
+            VarInts.writeSigned(output, indices[i]);
+            writeString(words.get(i));
+            writeString(lemmas.get(i));
+        }
+    }
+
+    /**
+     * Empties the string table, so that following strings are written out again.
+     */
+    public void clear() {
+        strings.clear();
+    }
+}
@@ -0,0 +1,64 @@
+package uk.ac.cam.sp715.util;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Variable length encoding of integers for compact binary files. Each byte holds seven bits of the
+ * value, lowest first, with the top bit set if more bytes follow, so small values take one byte.
+ * Signed values are zig-zag encoded first so that small negative values are also short.
+ * @author Srijan Parmeshwar <sp715@cam.ac.uk>
+ */
+public class VarInts {
+    /**
+     * Writes a non-negative integer.
+     * @param output Output to write to.
+     * @param value Value, which is treated as unsigned.
+     * @throws IOException Thrown if the value cannot be written.
+     */
+    public static void write(DataOutput output, int value) throws IOException {
+        while((value & ~0x7F) != 0) {
+            output.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        output.writeByte(value);
+    }
+
+    /**
+     * Writes an integer which may be negative.
+     * @param output Output to write to.
+     * @param value Value.
+     * @throws IOException Thrown if the value cannot be written.
+     */
+    public static void writeSigned(DataOutput output, int value) throws IOException {
+        write(output, (value << 1) ^ (value >> 31));
+    }
+
+    /**
+     * Reads an integer written by {@link #write(DataOutput, int)}.
+     * @param input Input to read from.
+     * @return Value.
+     * @throws IOException Thrown if the input ends or the encoding is too long.
+     */
+    public static int read(DataInput input) throws IOException {
+        int value = 0;
+        for(int shift = 0; shift < 35; shift += 7) {
+            int b = input.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Variable length integer is too long.");
+    }
+
+    /**
+     * Reads an integer written by {@link #writeSigned(DataOutput, int)}.
+     * @param input Input to read from.
+     * @return Value.
+     * @throws IOException Thrown if the input ends or the encoding is too long.
+     */
+    public static int readSigned(DataInput input) throws IOException {
+        int value = read(input);
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
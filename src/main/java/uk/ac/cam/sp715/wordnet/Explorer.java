@@ -2,9 +2,9 @@ package uk.ac.cam.sp715.wordnet;
 
 import edu.mit.jwi.Dictionary;
 import edu.mit.jwi.IDictionary;
+import edu.mit.jwi.RAMDictionary;
+import edu.mit.jwi.data.ILoadPolicy;
 import edu.mit.jwi.item.*;
-import org.jgrapht.Graphs;
-import org.jgrapht.graph.DefaultEdge;
 import uk.ac.cam.sp715.util.Logging;
 
 import java.io.File;
@@ -12,24 +12,59 @@ import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * Provides exploration algorithms for WordNet.
+ * <p>
+ * The expansion of a synset to a given depth does not depend on the rest of the taxonomy, so expansions
+ * are computed once with an explicit stack, without copying graphs, and memoized. Expansions which reach
+ * every descendant are shared between calls, so exploring overlapping roots (possibly from several threads)
+ * only reads each part of WordNet once. Synsets are cached in front of the dictionary.
  * @author Srijan Parmeshwar <sp715@cam.ac.uk>
  */
 public class Explorer implements AutoCloseable {
     private final IDictionary dictionary;
+    private final Map<ISynsetID, ISynset> synsets = new ConcurrentHashMap<>();
+    private final Relation hyponyms = new Relation(synset -> synset.getRelatedSynsets(Pointer.HYPONYM), true);
+    private final Relation meronyms = new Relation(synset -> {
+        Set<ISynsetID> meronymSets = new HashSet<>();
+        meronymSets.addAll(synset.getRelatedSynsets(Pointer.MERONYM_MEMBER));
+        meronymSets.addAll(synset.getRelatedSynsets(Pointer.MERONYM_PART));
+        meronymSets.addAll(synset.getRelatedSynsets(Pointer.MERONYM_SUBSTANCE));
+        return meronymSets;
+    }, false);
 
     private static final Logger logger = Logging.getLogger(Explorer.class);
 
+    /**
+     * System property which, if set to true, makes {@link #Explorer()} load WordNet into memory.
+     */
+    public static final String IN_MEMORY_PROPERTY = "wordnet.inMemory";
+
+    /**
+     * Constructs an explorer for the WordNet installation at WNHOME, which is loaded into memory
+     * if the {@link #IN_MEMORY_PROPERTY} system property is true.
+     */
     public Explorer() {
+        this(Boolean.getBoolean(IN_MEMORY_PROPERTY));
+    }
+
+    /**
+     * Constructs an explorer for the WordNet installation at WNHOME.
+     * @param inMemory If true, the whole dictionary is loaded into memory when the explorer is opened, so
+     *                 lookups do not read the WordNet files.
+     */
+    public Explorer(boolean inMemory) {
         try {
             String wnhome = System.getenv("WNHOME");
             String path = wnhome + File.separator + "dict";
             URL url = new URL("file", null, path);
-            dictionary = new Dictionary(url);
+            if(inMemory) dictionary = new RAMDictionary(url, ILoadPolicy.IMMEDIATE_LOAD);
+            else dictionary = new Dictionary(url);
         } catch (MalformedURLException e) {
             logger.log(Level.SEVERE, "Error finding path to WordNet. Please check WNHOME environment variable and WordNet installation.", e);
             throw new WordNetException();
@@ -38,7 +73,9 @@ public class Explorer implements AutoCloseable {
 
     public void open() {
         try {
-            dictionary.open();
+            synchronized(dictionary) {
+                dictionary.open();
+            }
             if(!dictionary.isOpen()) {
                 logger.log(Level.SEVERE, "Error opening dictionary.");
                 throw new WordNetException();
@@ -51,12 +88,210 @@ public class Explorer implements AutoCloseable {
 
     @Override
     public void close() {
-        dictionary.close();
+        synchronized(dictionary) {
+            dictionary.close();
+        }
+    }
+
+    /**
+     * A WordNet relation to be explored, along with cached related synsets and memoized expansions.
+     */
+    private final class Relation {
+        private final Function<ISynset, Collection<ISynsetID>> pointers;
+        private final boolean connect;
+        private final Map<ISynset, List<ISynset>> related = new ConcurrentHashMap<>();
+        private final Map<ISynset, Expansion> complete = new ConcurrentHashMap<>();
+
+        /**
+         * @param pointers Related synsets of a synset, in the order they are explored.
+         * @param connect Whether a synset is connected to the related synsets whose expansions it adds.
+         */
+        private Relation(Function<ISynset, Collection<ISynsetID>> pointers, boolean connect) {
+            this.pointers = pointers;
+            this.connect = connect;
+        }
+
+        private List<ISynset> relatedTo(ISynset synset) {
+            List<ISynset> synsets = related.get(synset);
+            if(synsets == null) {
+                synsets = new ArrayList<>();
+                for(ISynsetID synsetID : pointers.apply(synset)) synsets.add(getSynset(synsetID));
+                related.putIfAbsent(synset, synsets);
+            }
+            return synsets;
+        }
+    }
+
+    /**
+     * Taxonomy reached from a single synset. The vertices and edges are kept in the order
+     * they were added. An expansion is complete if no synset was cut off by the depth limit,
+     * in which case it is the same for any depth limit of at least its height.
+     */
+    private static final class Expansion {
+        private final List<ISynset> vertices;
+        private final List<ISynset> sources;
+        private final List<ISynset> targets;
+        private final int height;
+        private final boolean complete;
+
+        private Expansion(List<ISynset> vertices, List<ISynset> sources, List<ISynset> targets, int height, boolean complete) {
+            this.vertices = vertices;
+            this.sources = sources;
+            this.targets = targets;
+            this.height = height;
+            this.complete = complete;
+        }
+    }
+
+    /**
+     * Partially computed expansion on the exploration stack.
+     */
+    private static final class Frame {
+        private final ISynset synset;
+        private final int depth;
+        private final List<ISynset> related;
+        private final Set<ISynset> vertices = new LinkedHashSet<>();
+        private final Map<ISynset, Set<ISynset>> edges = new LinkedHashMap<>();
+        private int next = 0;
+        private int height = 0;
+        private boolean complete = true;
+
+        private Frame(ISynset synset, int depth, List<ISynset> related) {
+            this.synset = synset;
+            this.depth = depth;
+            this.related = related;
+            vertices.add(synset);
+        }
+
+        private boolean contains(Expansion expansion) {
+            if(!vertices.containsAll(expansion.vertices)) return false;
+            for(int i = 0; i < expansion.sources.size(); i++) {
+                Set<ISynset> targets = edges.get(expansion.sources.get(i));
+                if(targets == null || !targets.contains(expansion.targets.get(i))) return false;
+            }
+            return true;
+        }
+
+        private void addEdge(ISynset source, ISynset target) {
+            edges.computeIfAbsent(source, key -> new LinkedHashSet<>()).add(target);
+        }
+
+        //Adds the expansion of a related synset unless it is already included, as Graphs.addGraph would.
+        private void include(ISynset target, Expansion expansion, boolean connect) {
+            height = Math.max(height, expansion.height + 1);
+            complete &= expansion.complete;
+            if(!contains(expansion)) {
+                vertices.addAll(expansion.vertices);
+                for(int i = 0; i < expansion.sources.size(); i++) addEdge(expansion.sources.get(i), expansion.targets.get(i));
+                if(connect) addEdge(synset, target);
+            }
+        }
+
+        private Expansion finish() {
+            List<ISynset> sources = new ArrayList<>();
+            List<ISynset> targets = new ArrayList<>();
+            for(Map.Entry<ISynset, Set<ISynset>> entry : edges.entrySet()) {
+                for(ISynset target : entry.getValue()) {
+                    sources.add(entry.getKey());
+                    targets.add(target);
+                }
+            }
+            boolean reachedLeaves = depth > 0 || related.isEmpty();
+            return new Expansion(new ArrayList<>(vertices), sources, targets, height, complete && reachedLeaves);
+        }
+    }
+
+    private static Expansion lookup(Relation relation, Map<ISynset, Map<Integer, Expansion>> partial, ISynset synset, int depth) {
+        Expansion expansion = relation.complete.get(synset);
+        if(expansion != null && expansion.height <= depth) return expansion;
+        Map<Integer, Expansion> expansions = partial.get(synset);
+        return expansions != null ? expansions.get(depth) : null;
+    }
+
+    /**
+     * Expands a single synset to the given depth, equivalent to recursively exploring the related synsets
+     * of a singleton taxonomy. Synsets which would be revisited on the current path are skipped,
+     * so cycles are cut rather than explored until the depth limit.
+     * @param relation Relation to be explored.
+     * @param root Synset to be expanded.
+     * @param depth Depth limit.
+     * @param maxSize Size budget, the exploration is abandoned if an expansion has more vertices than this.
+     * @return {@link Expansion} - The expansion, or null if it is over budget.
+     */
+    private Expansion expand(Relation relation, ISynset root, int depth, int maxSize) {
+        Map<ISynset, Map<Integer, Expansion>> partial = new HashMap<>();
+        Expansion cached = lookup(relation, partial, root, depth);
+        if(cached != null) return cached;
+
+        Deque<Frame> stack = new ArrayDeque<>();
+        Set<ISynset> path = new HashSet<>();
+        stack.push(new Frame(root, depth, relation.relatedTo(root)));
+        path.add(root);
+        while(true) {
+            Frame frame = stack.peek();
+            if(frame.depth > 0 && frame.next < frame.related.size()) {
+                ISynset target = frame.related.get(frame.next);
+                if(path.contains(target)) {
+                    frame.complete = false;
+                    frame.next++;
+                    continue;
+                }
+                Expansion expansion = lookup(relation, partial, target, frame.depth - 1);
+                if(expansion == null) {
+                    stack.push(new Frame(target, frame.depth - 1, relation.relatedTo(target)));
+                    path.add(target);
+                } else {
+                    frame.include(target, expansion, relation.connect);
+                    if(frame.vertices.size() > maxSize) return null;
+                    frame.next++;
+                }
+            } else {
+                Expansion expansion = frame.finish();
+                stack.pop();
+                path.remove(frame.synset);
+                if(expansion.complete) relation.complete.putIfAbsent(frame.synset, expansion);
+                else partial.computeIfAbsent(frame.synset, key -> new HashMap<>()).put(frame.depth, expansion);
+                if(stack.isEmpty()) return expansion;
+            }
+        }
+    }
+
+    //Adds an expansion to the taxonomy, returning true if it was modified as Graphs.addGraph would.
+    private static boolean merge(Taxonomy taxonomy, Expansion expansion) {
+        boolean modified = false;
+        for(ISynset vertex : expansion.vertices) modified |= taxonomy.addVertex(vertex);
+        for(int i = 0; i < expansion.sources.size(); i++) {
+            modified |= taxonomy.addEdge(expansion.sources.get(i), expansion.targets.get(i)) != null;
+        }
+        return modified;
+    }
+
+    private static boolean fits(Taxonomy taxonomy, Expansion expansion, int maxSize) {
+        if(expansion == null) return false;
+        else if(maxSize == Integer.MAX_VALUE) return true;
+        long added = expansion.vertices.stream().filter(vertex -> !taxonomy.containsVertex(vertex)).count();
+        return taxonomy.vertexSet().size() + added <= maxSize;
+    }
+
+    /**
+     * Looks up a synset, caching the result.
+     * @param synsetID Synset ID.
+     * @return {@link ISynset} - The synset.
+     */
+    public ISynset getSynset(ISynsetID synsetID) {
+        ISynset synset = synsets.get(synsetID);
+        if(synset == null) {
+            synchronized(dictionary) {
+                synset = dictionary.getSynset(synsetID);
+            }
+            synsets.putIfAbsent(synsetID, synset);
+        }
+        return synset;
     }
 
     /**
      * Explores WordNet hyponym (is-a/subtype) relations for a given input graph.
-     * It will recursively find hyponym synsets up to the given depth limit for each source vertex
+     * It will find hyponym synsets up to the given depth limit for each source vertex
      * i.e. the leaves of the input taxonomy. This method makes a copy of the input and works with this
      * so the original graph is not modified.
      * @param graph Taxonomy to be explored further via hyponym relations.
@@ -64,17 +299,27 @@ public class Explorer implements AutoCloseable {
      * @return {@link Taxonomy} - The expanded taxonomy, including hyponym synsets up to the depth limit.
      */
     public Taxonomy exploreHyponyms(Taxonomy graph, int depth) {
+        return exploreHyponyms(graph, depth, Integer.MAX_VALUE);
+    }
+
+    /**
+     * This is the same as {@link #exploreHyponyms(Taxonomy, int)} with a size budget. Exploration stops
+     * before the first hyponym whose expansion would take the taxonomy past the given number of vertices.
+     * @param graph Taxonomy to be explored further via hyponym relations.
+     * @param depth Maximum depth of taxonomy relative to the input leaves.
+     * @param maxSize Maximum number of vertices in the expanded taxonomy.
+     * @return {@link Taxonomy} - The expanded taxonomy, including hyponym synsets up to the depth and size limits.
+     */
+    public Taxonomy exploreHyponyms(Taxonomy graph, int depth, int maxSize) {
         Taxonomy result = new Taxonomy(graph);
         if(depth>0) {
             Set<ISynset> leaves = result.getLeaves();
             for(ISynset synset : leaves) {
-                List<ISynsetID> hyponymSets = synset.getRelatedSynsets(Pointer.HYPONYM);
-                for (ISynsetID synsetID : hyponymSets) {
-                    ISynset newSynset = dictionary.getSynset(synsetID);
-                    Taxonomy newTaxonomy = new Taxonomy(newSynset);
-                    Taxonomy newGraph = exploreHyponyms(newTaxonomy, depth - 1);
+                for(ISynset newSynset : hyponyms.relatedTo(synset)) {
+                    Expansion expansion = expand(hyponyms, newSynset, depth - 1, maxSize);
+                    if(!fits(result, expansion, maxSize)) return result;
                     //If destination graph (result) is modified connect the synset vertices.
-                    if(Graphs.addGraph(result, newGraph)) result.addEdge(synset, newSynset);
+                    if(merge(result, expansion)) result.addEdge(synset, newSynset);
                 }
             }
         }
@@ -83,7 +328,7 @@ public class Explorer implements AutoCloseable {
 
     /**
      * Explores WordNet meronym (part-of) relations for a given input graph.
-     * It will recursively find meronym synsets up to the given depth limit for each source vertex
+     * It will find meronym synsets up to the given depth limit for each source vertex
      * i.e. the whole vertex set. This method makes a copy of the input and works with this
      * so the original graph is not modified.
      * @param graph Taxonomy to be explored further via meronym relations.
@@ -91,23 +336,31 @@ public class Explorer implements AutoCloseable {
      * @return {@link Taxonomy} - The expanded taxonomy, including meronym synsets up to the depth limit.
      */
     public Taxonomy exploreMeronyms(Taxonomy graph, int depth) {
+        return exploreMeronyms(graph, depth, Integer.MAX_VALUE);
+    }
+
+    /**
+     * This is the same as {@link #exploreMeronyms(Taxonomy, int)} with a size budget. Exploration stops
+     * before the first meronym whose expansion would take the taxonomy past the given number of vertices.
+     * @param graph Taxonomy to be explored further via meronym relations.
+     * @param depth Maximum depth of meronymy relationships.
+     * @param maxSize Maximum number of vertices in the expanded taxonomy.
+     * @return {@link Taxonomy} - The expanded taxonomy, including meronym synsets up to the depth and size limits.
+     */
+    public Taxonomy exploreMeronyms(Taxonomy graph, int depth, int maxSize) {
         Taxonomy result = new Taxonomy(graph);
         if(depth>0) {
             for(ISynset synset : graph.vertexSet()) {
-                Set<ISynsetID> meronymSets = new HashSet<>();
-                meronymSets.addAll(synset.getRelatedSynsets(Pointer.MERONYM_MEMBER));
-                meronymSets.addAll(synset.getRelatedSynsets(Pointer.MERONYM_PART));
-                meronymSets.addAll(synset.getRelatedSynsets(Pointer.MERONYM_SUBSTANCE));
-
-                for(ISynsetID synsetID : meronymSets) {
-                    ISynset newSynset = dictionary.getSynset(synsetID);
-                    Taxonomy newTaxonomy = new Taxonomy(newSynset);
-                    Taxonomy newGraph = exploreMeronyms(newTaxonomy, depth - 1);
-                    //If destination graph (result) is modified connect the synset vertices.
-                    if(Graphs.addGraph(result, newGraph)) {
-                        for(DefaultEdge edge : result.incomingEdgesOf(synset)) {
-                            for(ISynset target : newGraph.vertexSet()) {
-                                result.addEdge(graph.getEdgeSource(edge), target);
+                for(ISynset newSynset : meronyms.relatedTo(synset)) {
+                    Expansion expansion = expand(meronyms, newSynset, depth - 1, maxSize);
+                    if(!fits(result, expansion, maxSize)) return result;
+                    //If destination graph (result) is modified connect the parents of the synset to the new vertices.
+                    if(merge(result, expansion)) {
+                        List<ISynset> parents = new ArrayList<>();
+                        result.incomingEdgesOf(synset).forEach(edge -> parents.add(result.getEdgeSource(edge)));
+                        for(ISynset parent : parents) {
+                            for(ISynset target : expansion.vertices) {
+                                result.addEdge(parent, target);
                             }
                         }
                     }
@@ -118,11 +371,15 @@ public class Explorer implements AutoCloseable {
     }
 
     public IIndexWord getIndexNoun(String noun) {
-        return dictionary.getIndexWord(noun, POS.NOUN);
+        synchronized(dictionary) {
+            return dictionary.getIndexWord(noun, POS.NOUN);
+        }
     }
 
     public IWord getWord(IWordID wordID) {
-        return dictionary.getWord(wordID);
+        synchronized(dictionary) {
+            return dictionary.getWord(wordID);
+        }
     }
 
     /**
@@ -9,6 +9,7 @@ import org.jgrapht.graph.DefaultEdge;
 import java.io.Serializable;
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * Class to represent the hypernym/hyponym taxonomy from  WordNet. This allows simpler
@@ -99,10 +100,9 @@ public class Taxonomy extends DefaultDirectedGraph<ISynset, DefaultEdge> {
         APPLIANCES, UTENSILS, INGREDIENTS, OTHER
     }
 
-    private static Map<TaxonomyType, Taxonomy> TAXONOMIES = initializeTaxonomies();
-
-    private static Taxonomy getNounTaxonomy(Explorer explorer, String noun) {
-        return getNounTaxonomy(explorer, noun, 0);
+    //Holder class so that WordNet is only explored when the taxonomies are first requested.
+    private static class Taxonomies {
+        private static final Map<TaxonomyType, Taxonomy> TAXONOMIES = initializeTaxonomies();
     }
 
     private static Taxonomy getNounTaxonomy(Explorer explorer, String noun, int index) {
@@ -118,23 +118,31 @@ public class Taxonomy extends DefaultDirectedGraph<ISynset, DefaultEdge> {
     /**
      * Loads the collections for each type from the seeds.
      * Ingredients - food, solid food, fat.
-     * Utensils - kitchen utensil, tableware.
+     * Utensils - kitchen utensil, tableware, container, paper.
      * Appliances - appliance.
+     * The seeds are explored in parallel, sharing the expansions of common synsets.
      */
     private static Map<TaxonomyType, Taxonomy> initializeTaxonomies() {
         Explorer explorer = new Explorer();
         explorer.open();
+        String[] seeds = {"food", "solid food", "fat", "kitchen utensil", "tableware", "container", "paper", "appliance"};
+        int[] senses = {0, 0, 0, 0, 0, 0, 0, 1};
+        List<Taxonomy> taxonomies = IntStream.range(0, seeds.length)
+                .parallel()
+                .mapToObj(index -> getNounTaxonomy(explorer, seeds[index], senses[index]))
+                .collect(Collectors.toList());
+
         Map<TaxonomyType, Taxonomy> TAXONOMIES = new HashMap<>();
-        Taxonomy ingredients = getNounTaxonomy(explorer, "food");
-        Graphs.addGraph(ingredients, getNounTaxonomy(explorer, "solid food"));
-        Graphs.addGraph(ingredients, getNounTaxonomy(explorer, "fat"));
+        Taxonomy ingredients = taxonomies.get(0);
+        Graphs.addGraph(ingredients, taxonomies.get(1));
+        Graphs.addGraph(ingredients, taxonomies.get(2));
 
-        Taxonomy utensils = getNounTaxonomy(explorer, "kitchen utensil");
-        Graphs.addGraph(utensils, getNounTaxonomy(explorer, "tableware"));
-        Graphs.addGraph(utensils, getNounTaxonomy(explorer, "container"));
-        Graphs.addGraph(utensils, getNounTaxonomy(explorer, "paper"));
+        Taxonomy utensils = taxonomies.get(3);
+        Graphs.addGraph(utensils, taxonomies.get(4));
+        Graphs.addGraph(utensils, taxonomies.get(5));
+        Graphs.addGraph(utensils, taxonomies.get(6));
 
-        TAXONOMIES.put(TaxonomyType.APPLIANCES, getNounTaxonomy(explorer, "appliance", 1));
+        TAXONOMIES.put(TaxonomyType.APPLIANCES, taxonomies.get(7));
         TAXONOMIES.put(TaxonomyType.UTENSILS, utensils);
         TAXONOMIES.put(TaxonomyType.INGREDIENTS, ingredients);
         explorer.close();
@@ -142,10 +150,11 @@ public class Taxonomy extends DefaultDirectedGraph<ISynset, DefaultEdge> {
     }
 
     /**
-     * Retrieves the entity type collections.
+     * Retrieves the entity type collections, exploring WordNet on the first call.
+     * Lemma lookups should use the precompiled {@link TaxonomyDictionary} instead.
      * @return Collections for each entity type enumerated by {@link TaxonomyType}.
      */
     public static Map<TaxonomyType, Taxonomy> getTaxonomies() {
-        return TAXONOMIES;
+        return Taxonomies.TAXONOMIES;
     }
 }
\ No newline at end of file
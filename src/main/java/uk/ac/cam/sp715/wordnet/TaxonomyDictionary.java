@@ -0,0 +1,296 @@
+package uk.ac.cam.sp715.wordnet;
+
+import edu.mit.jwi.item.ISynset;
+import edu.mit.jwi.item.IWord;
+import uk.ac.cam.sp715.util.Logging;
+import uk.ac.cam.sp715.wordnet.Taxonomy.TaxonomyType;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Precompiled lemma to {@link TaxonomyType} dictionary, stored as a sorted string table which is
+ * memory mapped when loaded. Building the {@link Taxonomy} collections requires exploring WordNet
+ * and takes several seconds, so the dictionary is generated once from them and saved to
+ * {@link #DEFAULT_PATH}. Running {@link #main(String[])} regenerates the file.
+ * <p>
+ * File layout (big endian): magic number, format version, entry count, size of string data,
+ * {@code count + 1} string offsets, {@code count} type ordinals, then the UTF-8 lemmas sorted by their bytes.
+ * Lemmas are lower case with words separated by underscores, as in WordNet. If a lemma is in more than one
+ * taxonomy, the type declared first in {@link TaxonomyType} is kept.
+ * @author Srijan Parmeshwar <sp715@cam.ac.uk>
+ */
+public class TaxonomyDictionary {
+    /**
+     * Default location of the dictionary file.
+     */
+    public static final String DEFAULT_PATH = "data/taxonomy.dict";
+
+    private static final int MAGIC = 0x54415844;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 4 * Integer.BYTES;
+
+    private static final Logger logger = Logging.getLogger(TaxonomyDictionary.class);
+
+    private final ByteBuffer buffer;
+    private final int size;
+    private final int offsetsStart;
+    private final int typesStart;
+    private final int stringsStart;
+
+    private TaxonomyDictionary(ByteBuffer buffer) {
+        if(buffer.remaining() < HEADER_SIZE
+                || buffer.getInt(0) != MAGIC
+                || buffer.getInt(Integer.BYTES) != VERSION) throw new IllegalArgumentException("Not a taxonomy dictionary of version " + VERSION + ".");
+        this.buffer = buffer;
+        this.size = buffer.getInt(2 * Integer.BYTES);
+        int stringBytes = buffer.getInt(3 * Integer.BYTES);
+        this.offsetsStart = HEADER_SIZE;
+        this.typesStart = offsetsStart + (size + 1) * Integer.BYTES;
+        this.stringsStart = typesStart + size;
+        if(size < 0 || stringBytes < 0 || (long) stringsStart + stringBytes != buffer.limit()) {
+            throw new IllegalArgumentException("Taxonomy dictionary is truncated.");
+        }
+    }
+
+    /**
+     * Loads the dictionary from {@link #DEFAULT_PATH}, generating it from WordNet if the file does not exist
+     * or was written by a different version.
+     * @return {@link TaxonomyDictionary} - The memory mapped dictionary.
+     */
+    public static TaxonomyDictionary load() {
+        return load(Paths.get(DEFAULT_PATH));
+    }
+
+    /**
+     * Loads the dictionary from the given file, generating it from WordNet if the file does not exist
+     * or was written by a different version.
+     * @param path Location of dictionary file.
+     * @return {@link TaxonomyDictionary} - The memory mapped dictionary.
+     */
+    public static TaxonomyDictionary load(Path path) {
+        return load(path, () -> collect(Taxonomy.getTaxonomies()));
+    }
+
+    //Loads the dictionary, generating it from the given entries if the file is missing or invalid.
+    static TaxonomyDictionary load(Path path, Supplier<SortedMap<String, TaxonomyType>> entries) {
+        if(Files.exists(path)) {
+            try {
+                return map(path);
+            } catch(IllegalArgumentException invalid) {
+                logger.log(Level.WARNING, "Regenerating taxonomy dictionary.", invalid);
+            }
+        }
+        generate(path, entries.get());
+        return map(path);
+    }
+
+    /**
+     * Builds the dictionary from the WordNet taxonomies and writes it to the given file.
+     * @param path Location of dictionary file.
+     */
+    public static void generate(Path path) {
+        generate(path, collect(Taxonomy.getTaxonomies()));
+    }
+
+    private static void generate(Path path, SortedMap<String, TaxonomyType> entries) {
+        try {
+            Files.createDirectories(path.toAbsolutePath().getParent());
+            Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+            try(OutputStream file = Files.newOutputStream(temporary)) {
+                write(entries, file);
+            }
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+        } catch(IOException ioException) {
+            logger.log(Level.SEVERE, "Could not write taxonomy dictionary.", ioException);
+            throw new WordNetException();
+        }
+    }
+
+    static TaxonomyDictionary map(Path path) {
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new TaxonomyDictionary(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch(IOException ioException) {
+            logger.log(Level.SEVERE, "Could not read taxonomy dictionary.", ioException);
+            throw new WordNetException();
+        }
+    }
+
+    private static SortedMap<String, TaxonomyType> collect(Map<TaxonomyType, Taxonomy> taxonomies) {
+        Map<TaxonomyType, List<String>> lemmas = new EnumMap<>(TaxonomyType.class);
+        for(Map.Entry<TaxonomyType, Taxonomy> taxonomy : taxonomies.entrySet()) {
+            List<String> typeLemmas = new ArrayList<>();
+            for(ISynset synset : taxonomy.getValue().vertexSet()) {
+                for(IWord word : synset.getWords()) typeLemmas.add(word.getLemma());
+            }
+            lemmas.put(taxonomy.getKey(), typeLemmas);
+        }
+        return entries(lemmas);
+    }
+
+    //Sorts the normalized lemmas by their bytes, keeping the first type of each in TaxonomyType order.
+    static SortedMap<String, TaxonomyType> entries(Map<TaxonomyType, ? extends Collection<String>> lemmas) {
+        Comparator<String> byBytes = (a, b) -> compare(encode(a), encode(b));
+        SortedMap<String, TaxonomyType> entries = new TreeMap<>(byBytes);
+        for(TaxonomyType type : TaxonomyType.values()) {
+            if(!lemmas.containsKey(type)) continue;
+            for(String lemma : lemmas.get(type)) entries.putIfAbsent(normalize(lemma), type);
+        }
+        return entries;
+    }
+
+    private static void write(SortedMap<String, TaxonomyType> entries, OutputStream stream) throws IOException {
+        List<byte[]> lemmas = new ArrayList<>(entries.size());
+        int stringBytes = 0;
+        for(String lemma : entries.keySet()) {
+            byte[] bytes = encode(lemma);
+            lemmas.add(bytes);
+            stringBytes += bytes.length;
+        }
+
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(stream));
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+        output.writeInt(lemmas.size());
+        output.writeInt(stringBytes);
+        int offset = 0;
+        output.writeInt(offset);
+        for(byte[] lemma : lemmas) {
+            offset += lemma.length;
+            output.writeInt(offset);
+        }
+        for(TaxonomyType type : entries.values()) output.writeByte(type.ordinal());
+        for(byte[] lemma : lemmas) output.write(lemma);
+        output.flush();
+    }
+
+    private static String normalize(String lemma) {
+        String normalized = lemma.trim().toLowerCase(Locale.ENGLISH);
+        if(normalized.indexOf(' ') < 0 && normalized.indexOf("__") < 0) return normalized;
+        return normalized.replaceAll("[ _]+", "_");
+    }
+
+    private static byte[] encode(String lemma) {
+        return lemma.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int compare(byte[] a, byte[] b) {
+        int length = Math.min(a.length, b.length);
+        for(int i = 0; i < length; i++) {
+            int difference = (a[i] & 0xff) - (b[i] & 0xff);
+            if(difference != 0) return difference;
+        }
+        return a.length - b.length;
+    }
+
+    //Compares the stored lemma at the given index with the key, as unsigned bytes.
+    private int compareAt(int index, byte[] key) {
+        int start = stringsStart + buffer.getInt(offsetsStart + index * Integer.BYTES);
+        int end = stringsStart + buffer.getInt(offsetsStart + (index + 1) * Integer.BYTES);
+        int length = Math.min(end - start, key.length);
+        for(int i = 0; i < length; i++) {
+            int difference = (buffer.get(start + i) & 0xff) - (key[i] & 0xff);
+            if(difference != 0) return difference;
+        }
+        return (end - start) - key.length;
+    }
+
+    private String lemmaAt(int index) {
+        int start = stringsStart + buffer.getInt(offsetsStart + index * Integer.BYTES);
+        int end = stringsStart + buffer.getInt(offsetsStart + (index + 1) * Integer.BYTES);
+        byte[] bytes = new byte[end - start];
+        for(int i = 0; i < bytes.length; i++) bytes[i] = buffer.get(start + i);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    //Whether the stored lemma at the given index is made of several words.
+    private boolean isMultiWordAt(int index) {
+        int start = stringsStart + buffer.getInt(offsetsStart + index * Integer.BYTES);
+        int end = stringsStart + buffer.getInt(offsetsStart + (index + 1) * Integer.BYTES);
+        for(int i = start; i < end; i++) {
+            if(buffer.get(i) == '_') return true;
+        }
+        return false;
+    }
+
+    private TaxonomyType typeAt(int index) {
+        return TaxonomyType.values()[buffer.get(typesStart + index)];
+    }
+
+    /**
+     * Number of lemmas in the dictionary.
+     * @return Dictionary size.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Looks up the type of a lemma with a binary search over the mapped table. This is how single
+     * lemmas are typed while annotating, so only the multi-word lemmas are ever decoded.
+     * @param lemma Lemma to be typed, multi-word lemmas separated by spaces or underscores.
+     * @return {@link TaxonomyType} - The type of the lemma, or {@link TaxonomyType#OTHER} if it is not in the dictionary.
+     */
+    public TaxonomyType typeOf(String lemma) {
+        byte[] key = encode(normalize(lemma));
+        int low = 0;
+        int high = size - 1;
+        while(low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = compareAt(middle, key);
+            if(comparison < 0) low = middle + 1;
+            else if(comparison > 0) high = middle - 1;
+            else return typeAt(middle);
+        }
+        return TaxonomyType.OTHER;
+    }
+
+    /**
+     * Decodes the lemmas for each entity type, in sorted order.
+     * @return {@link Map}<{@link TaxonomyType}, {@link List}<{@link String}>> - Lemmas of each type.
+     */
+    public Map<TaxonomyType, List<String>> getDictionaries() {
+        Map<TaxonomyType, List<String>> dictionaries = new EnumMap<>(TaxonomyType.class);
+        for(int index = 0; index < size; index++) {
+            dictionaries.computeIfAbsent(typeAt(index), type -> new ArrayList<>()).add(lemmaAt(index));
+        }
+        return dictionaries;
+    }
+
+    /**
+     * Decodes only the lemmas made of several words, for each entity type, in sorted order. These
+     * are the lemmas which have to be matched across tokens, as single lemmas can be typed with {@link #typeOf(String)}.
+     * @return {@link Map}<{@link TaxonomyType}, {@link List}<{@link String}>> - Multi-word lemmas of each type, words separated by underscores.
+     */
+    public Map<TaxonomyType, List<String>> getMultiWordDictionaries() {
+        Map<TaxonomyType, List<String>> dictionaries = new EnumMap<>(TaxonomyType.class);
+        for(int index = 0; index < size; index++) {
+            if(isMultiWordAt(index)) dictionaries.computeIfAbsent(typeAt(index), type -> new ArrayList<>()).add(lemmaAt(index));
+        }
+        return dictionaries;
+    }
+
+    /**
+     * Regenerates the dictionary file from WordNet.
+     * @param args Optional path of the dictionary file, defaults to {@link #DEFAULT_PATH}.
+     */
+    public static void main(String[] args) {
+        Path path = Paths.get(args.length > 0 ? args[0] : DEFAULT_PATH);
+        generate(path);
+        System.out.println("Wrote " + map(path).size() + " lemmas to " + path + ".");
+    }
+}
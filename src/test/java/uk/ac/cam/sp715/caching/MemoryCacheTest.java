@@ -35,4 +35,24 @@ public class MemoryCacheTest {
             fail(e.getMessage());
         }
     }
+
+    @Test
+    public void concurrentMemoryCacheTest() {
+        ConcurrentMemoryCache<String, Integer> cache = new ConcurrentMemoryCache<>(2);
+        cache.add("a", 0);
+        cache.add("b", 1);
+        cache.add("a", 2);
+        assertEquals(2, cache.size());
+        assertEquals(new Integer(2), cache.get("a"));
+
+        cache.add("c", 3);
+        assertEquals(2, cache.size());
+        assertEquals(new Integer(3), cache.get("c"));
+        assertNull(cache.get("d"));
+
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        cache.recordMiss();
+        assertEquals(1.0 / 3, cache.getHitRate(), 1E-9);
+    }
 }
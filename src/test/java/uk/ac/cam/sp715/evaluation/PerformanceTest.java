@@ -6,6 +6,7 @@ import org.junit.Test;
 import uk.ac.cam.sp715.flows.CoreNLPVisualiser;
 import uk.ac.cam.sp715.flows.HybridVisualiser;
 import uk.ac.cam.sp715.flows.Visualiser;
+import uk.ac.cam.sp715.recipes.CorpusReader;
 import uk.ac.cam.sp715.recipes.Recipe;
 import uk.ac.cam.sp715.util.Pipeline;
 
@@ -16,9 +17,9 @@ import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 import static java.nio.file.Paths.get;
-import static uk.ac.cam.sp715.util.IOTools.read;
 
 /**
  * Created by Srijan on 08/04/2016.
@@ -31,7 +32,9 @@ public class PerformanceTest {
 
     @BeforeClass
     public static void setUp() throws Exception {
-        recipes = read(get("data", "recipes.ser").toString());
+        try(CorpusReader corpus = CorpusReader.open(get("data", "recipes.corpus").toString())) {
+            recipes = corpus.stream().collect(Collectors.toList());
+        }
         System.out.println(recipes.size());
     }
 
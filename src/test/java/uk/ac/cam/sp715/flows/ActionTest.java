@@ -0,0 +1,51 @@
+package uk.ac.cam.sp715.flows;
+
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.ling.IndexedWord;
+import org.junit.Test;
+import uk.ac.cam.sp715.recognition.TaggedWord;
+import uk.ac.cam.sp715.wordnet.Taxonomy.TaxonomyType;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the lemma sets of an {@link Action} follow changes to its objects.
+ * @author Srijan Parmeshwar <sp715@cam.ac.uk>
+ */
+public class ActionTest {
+
+    private static TaggedWord word(String word, String lemma, String tag, int index) {
+        CoreLabel label = new CoreLabel();
+        label.setWord(word);
+        label.setLemma(lemma);
+        label.setTag(tag);
+        label.setIndex(index);
+        label.setSentIndex(0);
+        label.setBeginPosition(10 * index);
+        label.setEndPosition(10 * index + word.length());
+        return new TaggedWord(new IndexedWord(label), TaxonomyType.INGREDIENTS);
+    }
+
+    @Test
+    public void lemmaSetTest() {
+        TaggedWord eggs = word("eggs", "egg", "NNS", 2);
+        TaggedWord bowl = word("bowl", "bowl", "NN", 5);
+        TaggedWord moreEggs = word("egg", "egg", "NN", 7);
+        Action beat = new Action(1, word("beat", "beat", "VB", 1), new LinkedList<>(Arrays.asList(eggs)), new LinkedList<>(Arrays.asList(bowl)));
+
+        assertEquals(Collections.singleton("egg"), beat.getDObjectLemmas());
+        assertEquals(Collections.singleton("bowl"), beat.getIObjectLemmas());
+        assertEquals(Arrays.asList("egg", "bowl"), new ArrayList<>(beat.getObjectLemmas()));
+
+        beat.addObject(moreEggs, Role.DOBJECT);
+        assertEquals(Collections.singleton("egg"), beat.getDObjectLemmas());
+        beat.remove(bowl, Role.IOBJECT);
+        assertTrue(beat.getIObjectLemmas().isEmpty());
+        assertEquals(Collections.singleton("egg"), beat.getObjectLemmas());
+
+        assertTrue(Action.matches(beat.getDObjectLemmas(), new HashSet<>(Arrays.asList("bowl", "egg"))));
+        assertFalse(Action.matches(beat.getDObjectLemmas(), beat.getIObjectLemmas()));
+    }
+}
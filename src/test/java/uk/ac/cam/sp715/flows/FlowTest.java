@@ -0,0 +1,386 @@
+package uk.ac.cam.sp715.flows;
+
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.ling.IndexedWord;
+import org.jgrapht.Graphs;
+import org.jgrapht.graph.DefaultDirectedGraph;
+import org.jgrapht.graph.DefaultEdge;
+import org.junit.Test;
+import uk.ac.cam.sp715.recognition.TaggedWord;
+import uk.ac.cam.sp715.util.IOTools;
+import uk.ac.cam.sp715.util.IOToolsException;
+import uk.ac.cam.sp715.wordnet.Taxonomy.TaxonomyType;
+
+import java.io.*;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the reachability index of {@link Flow} gives the same edges and paths as
+ * searching the graph on every query, over random sequences of edge insertions and removals,
+ * and that adding edges in bulk leaves the transitive reduction whatever order they are added in.
+ * Merging is checked against comparing the token lemmas of every pair of actions over the stored
+ * heuristic flows.
+ * @author Srijan Parmeshwar <sp715@cam.ac.uk>
+ */
+public class FlowTest {
+
+    /**
+     * Flow which searches the graph for every reachability query, as flows used to.
+     */
+    private static class SearchFlow extends DefaultDirectedGraph<Action, DefaultEdge> {
+        public SearchFlow() {
+            super(DefaultEdge.class);
+        }
+
+        public boolean pathExists(Action source, Action target) {
+            if(this.containsEdge(source, target)) return true;
+            else {
+                for (Action action : this.outgoingEdgesOf(source)
+                        .stream()
+                        .map(this::getEdgeTarget)
+                        .collect(Collectors.toSet())) {
+                    if(pathExists(action, target)) return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public DefaultEdge addEdge(Action source, Action target) {
+            this.incomingEdgesOf(target)
+                    .stream()
+                    .map(this::getEdgeSource)
+                    .collect(Collectors.toSet())
+                    .stream()
+                    .filter(action -> pathExists(action, source))
+                    .forEach(action -> this.removeEdge(action, target));
+            if(!pathExists(source, target)) return super.addEdge(source, target);
+            else return null;
+        }
+    }
+
+    private static Action action(int id) {
+        CoreLabel label = new CoreLabel();
+        label.setWord("stir");
+        label.setLemma("stir");
+        label.setTag("VB");
+        label.setIndex(id + 1);
+        label.setSentIndex(0);
+        TaggedWord description = new TaggedWord(new IndexedWord(label), TaxonomyType.OTHER);
+        return new Action(id, description, new LinkedList<>(), new LinkedList<>());
+    }
+
+    private static Set<String> edges(DefaultDirectedGraph<Action, DefaultEdge> graph) {
+        Set<String> edges = new TreeSet<>();
+        for(DefaultEdge edge : graph.edgeSet()) edges.add(graph.getEdgeSource(edge).getID() + "->" + graph.getEdgeTarget(edge).getID());
+        return edges;
+    }
+
+    private static void assertSame(SearchFlow expected, Flow actual, List<Action> actions) {
+        assertEquals(edges(expected), edges(actual));
+        for(Action source : actions) {
+            if(!expected.containsVertex(source)) continue;
+            for(Action target : actions) {
+                assertEquals(expected.pathExists(source, target), actual.pathExists(source, target));
+            }
+        }
+    }
+
+    @Test
+    public void randomEdgesTest() {
+        Random random = new Random(715);
+        for(int trial = 0; trial < 300; trial++) {
+            int size = 2 + random.nextInt(30);
+            List<Action> actions = new ArrayList<>();
+            SearchFlow expected = new SearchFlow();
+            Flow actual = new Flow();
+            for(int i = 0; i < size; i++) actions.add(action(i));
+
+            //Actions are added as they are found, interleaved with edges between those already found.
+            int added = 0;
+            for(int step = 0; step < 4 * size; step++) {
+                if(added < size && (added < 2 || random.nextInt(3) == 0)) {
+                    expected.addVertex(actions.get(added));
+                    actual.addVertex(actions.get(added));
+                    added++;
+                } else if(random.nextInt(10) == 0 && !expected.edgeSet().isEmpty()) {
+                    List<DefaultEdge> edges = new ArrayList<>(expected.edgeSet());
+                    DefaultEdge edge = edges.get(random.nextInt(edges.size()));
+                    Action source = expected.getEdgeSource(edge);
+                    Action target = expected.getEdgeTarget(edge);
+                    expected.removeEdge(source, target);
+                    actual.removeEdge(source, target);
+                } else {
+                    int first = random.nextInt(added);
+                    int second = random.nextInt(added);
+                    if(first == second) continue;
+                    Action source = actions.get(Math.min(first, second));
+                    Action target = actions.get(Math.max(first, second));
+                    assertEquals(expected.addEdge(source, target) == null, actual.addEdge(source, target) == null);
+                }
+                assertSame(expected, actual, actions.subList(0, added));
+            }
+
+            Action removed = actions.get(random.nextInt(size));
+            expected.removeVertex(removed);
+            actual.removeVertex(removed);
+            actions.remove(removed);
+            assertSame(expected, actual, actions);
+        }
+    }
+
+    /**
+     * Brute force transitive reduction: an edge is kept if its target cannot be reached another way.
+     */
+    private static Set<String> reduction(DefaultDirectedGraph<Action, DefaultEdge> graph) {
+        Set<String> edges = new TreeSet<>();
+        for(DefaultEdge edge : graph.edgeSet()) {
+            Action source = graph.getEdgeSource(edge);
+            Action target = graph.getEdgeTarget(edge);
+            boolean implied = false;
+            for(DefaultEdge other : graph.outgoingEdgesOf(source)) {
+                Action middle = graph.getEdgeTarget(other);
+                if(middle != target && reaches(graph, middle, target)) implied = true;
+            }
+            if(!implied) edges.add(source.getID() + "->" + target.getID());
+        }
+        return edges;
+    }
+
+    private static boolean reaches(DefaultDirectedGraph<Action, DefaultEdge> graph, Action source, Action target) {
+        if(source == target) return false;
+        for(DefaultEdge edge : graph.outgoingEdgesOf(source)) {
+            Action child = graph.getEdgeTarget(edge);
+            if(child == target || reaches(graph, child, target)) return true;
+        }
+        return false;
+    }
+
+    private static List<int[]> randomEdges(Random random, int size, int count) {
+        List<int[]> edges = new ArrayList<>();
+        for(int i = 0; i < count; i++) {
+            int first = random.nextInt(size);
+            int second = random.nextInt(size);
+            if(first != second) edges.add(new int[] {Math.min(first, second), Math.max(first, second)});
+        }
+        return edges;
+    }
+
+    @Test
+    public void bulkTest() {
+        Random random = new Random(715);
+        for(int trial = 0; trial < 300; trial++) {
+            int size = 2 + random.nextInt(30);
+            List<Action> actions = new ArrayList<>();
+            for(int i = 0; i < size; i++) actions.add(action(i));
+            List<int[]> edges = randomEdges(random, size, random.nextInt(4 * size));
+
+            DefaultDirectedGraph<Action, DefaultEdge> graph = new DefaultDirectedGraph<>(DefaultEdge.class);
+            Flow bulk = new Flow();
+            Flow shuffled = new Flow();
+            for(Action action : actions) {
+                graph.addVertex(action);
+                bulk.addVertex(action);
+                shuffled.addVertex(action);
+            }
+            bulk.beginBulk();
+            for(int[] edge : edges) {
+                graph.addEdge(actions.get(edge[0]), actions.get(edge[1]));
+                bulk.addEdge(actions.get(edge[0]), actions.get(edge[1]));
+            }
+            assertTrue(bulk.isBulk());
+            bulk.endBulk();
+
+            //The result must not depend on the order edges were added in.
+            Collections.shuffle(edges, random);
+            shuffled.beginBulk();
+            for(int[] edge : edges) shuffled.addEdge(actions.get(edge[0]), actions.get(edge[1]));
+            shuffled.endBulk();
+
+            assertEquals(reduction(graph), edges(bulk));
+            assertEquals(edges(bulk), edges(shuffled));
+            for(Action source : actions) {
+                for(Action target : actions) {
+                    assertEquals(reaches(graph, source, target), bulk.pathExists(source, target));
+                }
+            }
+        }
+    }
+
+    /**
+     * Compares adding the edges of synthetic 200 action recipes one at a time against adding them
+     * in bulk and reducing once.
+     */
+    @Test
+    public void bulkPerformanceTest() {
+        int size = 200;
+        int recipes = 20;
+        Random random = new Random(715);
+        List<List<int[]>> recipeEdges = new ArrayList<>();
+        for(int recipe = 0; recipe < recipes; recipe++) {
+            //Mostly local edges, as between consecutive steps, with some links to earlier steps.
+            List<int[]> edges = new ArrayList<>();
+            for(int i = 1; i < size; i++) {
+                edges.add(new int[] {i - 1, i});
+                for(int k = 0; k < 3; k++) {
+                    int earlier = random.nextInt(i);
+                    edges.add(new int[] {earlier, i});
+                }
+            }
+            Collections.shuffle(edges, random);
+            recipeEdges.add(edges);
+        }
+
+        long incrementalTime = 0;
+        long bulkTime = 0;
+        for(List<int[]> edges : recipeEdges) {
+            List<Action> actions = new ArrayList<>();
+            for(int i = 0; i < size; i++) actions.add(action(i));
+
+            Flow incremental = new Flow();
+            for(Action action : actions) incremental.addVertex(action);
+            long start = System.nanoTime();
+            for(int[] edge : edges) incremental.addEdge(actions.get(edge[0]), actions.get(edge[1]));
+            incrementalTime += System.nanoTime() - start;
+
+            Flow bulk = new Flow();
+            for(Action action : actions) bulk.addVertex(action);
+            start = System.nanoTime();
+            bulk.beginBulk();
+            for(int[] edge : edges) bulk.addEdge(actions.get(edge[0]), actions.get(edge[1]));
+            bulk.endBulk();
+            bulkTime += System.nanoTime() - start;
+
+            //Every recipe here contains a chain through all actions, which is its transitive reduction.
+            //Reducing on insertion only removes edges into the new target, so it can keep more.
+            assertEquals(size - 1, bulk.edgeSet().size());
+            assertTrue(incremental.edgeSet().size() >= bulk.edgeSet().size());
+            for(int i = 1; i < size; i++) assertTrue(bulk.containsEdge(actions.get(i - 1), actions.get(i)));
+        }
+        System.out.println("Incremental reduction: " + incrementalTime / (1000000 * recipes) + " ms per recipe.");
+        System.out.println("Bulk reduction: " + bulkTime / (1000000 * recipes) + " ms per recipe.");
+    }
+
+    /**
+     * Merges flows by comparing the token lemmas of each leaf's objects against those of every later
+     * action, as mergeFlows used to. Edges are added as found and the flow is reduced once at the end,
+     * as mergeFlows does now, so that the result does not depend on the order edges are added in.
+     */
+    private static void referenceMerge(Flow flow, Flow other) {
+        for(Action endNode : flow.getLeaves()) {
+            for(DefaultEdge edge : other.outgoingEdgesOf(endNode)) {
+                Action target = other.getEdgeTarget(edge);
+                if(flow.containsVertex(target)) flow.addUnreducedEdge(endNode, target);
+            }
+        }
+        for(Action endNode : flow.getLeaves()) {
+            List<Action> targets = new ArrayList<>();
+            for(Action node : flow.vertexSet()) {
+                if(node.getID() <= endNode.getID()) continue;
+                search:
+                for(TaggedWord srcWord : endNode.getObjects()) {
+                    for(String srcLemma : srcWord.getLemmas()) {
+                        for(TaggedWord dstWord : node.getObjects()) {
+                            for(String dstLemma : dstWord.getLemmas()) {
+                                if(srcLemma.equals(dstLemma)) {
+                                    targets.add(node);
+                                    break search;
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+            for(Action target : targets) flow.addUnreducedEdge(endNode, target);
+        }
+        flow.reduce();
+    }
+
+    @Test
+    public void mergeTest() throws IOToolsException {
+        List<Flow> flows = IOTools.read(Paths.get("data", "heuristic-flows.ser").toString());
+        Random random = new Random(715);
+        for(Flow heuristic : flows) {
+            //Without heuristic edges to follow, every action without edges is a leaf matched on its lemmas.
+            Flow unconnected = new Flow();
+            for(Action action : heuristic.vertexSet()) unconnected.addVertex(action);
+            for(Flow other : Arrays.asList(heuristic, unconnected)) {
+                //Flows with some of the heuristic edges, as the classifier in HybridVisualiser might give.
+                Flow expected = new Flow();
+                Flow actual = new Flow();
+                for(Action action : heuristic.vertexSet()) {
+                    expected.addVertex(action);
+                    actual.addVertex(action);
+                }
+                for(DefaultEdge edge : heuristic.edgeSet()) {
+                    if(random.nextBoolean()) {
+                        expected.addEdge(heuristic.getEdgeSource(edge), heuristic.getEdgeTarget(edge));
+                        actual.addEdge(heuristic.getEdgeSource(edge), heuristic.getEdgeTarget(edge));
+                    }
+                }
+                referenceMerge(expected, other);
+                actual.mergeFlows(other);
+                assertEquals(edges(expected), edges(actual));
+            }
+        }
+    }
+
+    @Test
+    public void copyTest() throws IOException, ClassNotFoundException {
+        Flow flow = new Flow();
+        List<Action> actions = new ArrayList<>();
+        for(int i = 0; i < 6; i++) {
+            actions.add(action(i));
+            flow.addVertex(actions.get(i));
+        }
+        flow.addEdge(actions.get(0), actions.get(1));
+        flow.addEdge(actions.get(1), actions.get(2));
+        assertTrue(flow.pathExists(actions.get(0), actions.get(2)));
+
+        Flow copy = (Flow) flow.clone();
+        copy.addEdge(actions.get(2), actions.get(3));
+        assertTrue(copy.pathExists(actions.get(0), actions.get(3)));
+        assertFalse(flow.pathExists(actions.get(0), actions.get(3)));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try(ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+            output.writeObject(flow);
+        }
+        Flow read;
+        try(ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            read = (Flow) input.readObject();
+        }
+        List<Action> readActions = new ArrayList<>(read.vertexSet());
+        Collections.sort(readActions, (o1, o2) -> Integer.compare(o1.getID(), o2.getID()));
+        assertTrue(read.pathExists(readActions.get(0), readActions.get(2)));
+        assertFalse(read.pathExists(readActions.get(2), readActions.get(0)));
+        read.addEdge(readActions.get(2), readActions.get(4));
+        assertTrue(read.pathExists(readActions.get(0), readActions.get(4)));
+    }
+
+    @Test
+    public void addGraphTest() {
+        Flow flow = new Flow();
+        List<Action> actions = new ArrayList<>();
+        for(int i = 0; i < 4; i++) {
+            actions.add(action(i));
+            flow.addVertex(actions.get(i));
+        }
+        flow.addEdge(actions.get(0), actions.get(1));
+        assertFalse(flow.pathExists(actions.get(0), actions.get(3)));
+
+        //Graphs.addGraph adds each edge object through addEdge(source, target, edge).
+        DefaultDirectedGraph<Action, DefaultEdge> other = new DefaultDirectedGraph<>(DefaultEdge.class);
+        for(Action action : actions) other.addVertex(action);
+        other.addEdge(actions.get(1), actions.get(2));
+        other.addEdge(actions.get(2), actions.get(3));
+        Graphs.addGraph(flow, other);
+        assertTrue(flow.pathExists(actions.get(0), actions.get(3)));
+        assertTrue(flow.pathExists(actions.get(1), actions.get(3)));
+        assertFalse(flow.pathExists(actions.get(3), actions.get(0)));
+    }
+}
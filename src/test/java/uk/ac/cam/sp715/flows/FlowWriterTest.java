@@ -0,0 +1,114 @@
+package uk.ac.cam.sp715.flows;
+
+import org.jgrapht.graph.DefaultEdge;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import uk.ac.cam.sp715.recognition.TaggedWord;
+import uk.ac.cam.sp715.util.IOTools;
+import uk.ac.cam.sp715.util.IOToolsException;
+
+import java.io.*;
+import java.nio.file.Paths;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that flows written by {@link FlowWriter} are read back by {@link FlowReader} with the same
+ * actions, words and edges, and compares the size and load time against Java serialization.
+ * @author Srijan Parmeshwar <sp715@cam.ac.uk>
+ */
+public class FlowWriterTest {
+
+    private static List<Flow> flows;
+
+    @BeforeClass
+    public static void setUp() throws IOToolsException {
+        flows = IOTools.read(Paths.get("data", "heuristic-flows.ser").toString());
+    }
+
+    private static byte[] write(List<Flow> flows) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try(FlowWriter writer = new FlowWriter(bytes)) {
+            for(Flow flow : flows) writer.write(flow);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static List<Flow> read(byte[] bytes) throws IOException {
+        List<Flow> flows = new ArrayList<>();
+        try(FlowReader reader = new FlowReader(new ByteArrayInputStream(bytes))) {
+            for(Flow flow = reader.read(); flow != null; flow = reader.read()) flows.add(flow);
+            assertNull(reader.read());
+        }
+        return flows;
+    }
+
+    private static String describe(TaggedWord word) {
+        return word.sentIndex() + ":" + word.index() + " " + word.tag() + " " + word.entity() + " "
+                + word.beginPosition() + "-" + word.endPosition() + " " + Arrays.toString(word.getTokenIndices())
+                + " " + word.getWords() + " " + word.getLemmas();
+    }
+
+    private static List<String> describe(Flow flow) {
+        List<Action> actions = new ArrayList<>(flow.vertexSet());
+        Collections.sort(actions, (o1, o2) -> Integer.compare(o1.getID(), o2.getID()));
+        List<String> lines = new ArrayList<>();
+        for(Action action : actions) {
+            StringBuilder builder = new StringBuilder();
+            builder.append(action.getID()).append(" ").append(describe(action.getDescription()));
+            for(TaggedWord word : action.getDObjects()) builder.append(" | d ").append(describe(word));
+            for(TaggedWord word : action.getIObjects()) builder.append(" | i ").append(describe(word));
+            lines.add(builder.toString());
+        }
+        Set<String> edges = new TreeSet<>();
+        for(DefaultEdge edge : flow.edgeSet()) edges.add(flow.getEdgeSource(edge).getID() + "->" + flow.getEdgeTarget(edge).getID());
+        lines.addAll(edges);
+        return lines;
+    }
+
+    @Test
+    public void roundTripTest() throws IOException {
+        byte[] bytes = write(flows);
+        List<Flow> read = read(bytes);
+        assertEquals(flows.size(), read.size());
+        for(int i = 0; i < flows.size(); i++) {
+            assertEquals(describe(flows.get(i)), describe(read.get(i)));
+            assertEquals(flows.get(i).toDOT(), read.get(i).toDOT());
+        }
+        assertArrayEquals(bytes, write(read));
+        assertEquals(0, read(write(Collections.emptyList())).size());
+    }
+
+    @Test(expected = IOException.class)
+    public void truncatedTest() throws IOException {
+        byte[] bytes = write(flows.subList(0, 2));
+        read(Arrays.copyOf(bytes, bytes.length / 2));
+    }
+
+    @Test
+    public void sizeTest() throws IOException, ClassNotFoundException {
+        ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+        try(ObjectOutputStream output = new ObjectOutputStream(serialized)) {
+            output.writeObject(new LinkedList<>(flows));
+        }
+        byte[] binary = write(flows);
+
+        //Loading is repeated so that the times are not dominated by class loading.
+        long serializedTime = 0;
+        long binaryTime = 0;
+        for(int round = 0; round < 5; round++) {
+            long start = System.nanoTime();
+            try(ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(serialized.toByteArray()))) {
+                input.readObject();
+            }
+            serializedTime = System.nanoTime() - start;
+            start = System.nanoTime();
+            read(binary);
+            binaryTime = System.nanoTime() - start;
+        }
+        System.out.println("Serialized flows: " + serialized.size() + " bytes, loaded in " + serializedTime / 1000000 + " ms.");
+        System.out.println("Binary flows: " + binary.length + " bytes, loaded in " + binaryTime / 1000000 + " ms.");
+        assertTrue(binary.length < serialized.size());
+    }
+}
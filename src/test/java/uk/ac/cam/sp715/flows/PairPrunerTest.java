@@ -0,0 +1,64 @@
+package uk.ac.cam.sp715.flows;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import uk.ac.cam.sp715.util.IOTools;
+import uk.ac.cam.sp715.util.IOToolsException;
+
+import java.nio.file.Paths;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that {@link PairPruner} keeps exactly the pairs of actions which are close together,
+ * share an object lemma or are linked in the heuristic flow, in the order they are classified.
+ * @author Srijan Parmeshwar <sp715@cam.ac.uk>
+ */
+public class PairPrunerTest {
+
+    private static List<Flow> flows;
+
+    @BeforeClass
+    public static void setUp() throws IOToolsException {
+        flows = IOTools.read(Paths.get("data", "heuristic-flows.ser").toString());
+    }
+
+    private static List<Action> sortedActions(Flow flow) {
+        List<Action> actions = new ArrayList<>(flow.vertexSet());
+        Collections.sort(actions, (o1, o2) -> Integer.compare(o1.getID(), o2.getID()));
+        return actions;
+    }
+
+    private static List<String> pairs(List<Action> actions, ActionPairs pairs) {
+        List<String> result = new ArrayList<>();
+        for(int pair = 0; pair < pairs.size(); pair++) {
+            result.add(actions.get(pairs.source(pair)).getID() + "->" + actions.get(pairs.destination(pair)).getID());
+        }
+        return result;
+    }
+
+    @Test
+    public void candidatesTest() {
+        int actionWindow = 2;
+        int sentenceWindow = 0;
+        PairPruner pruner = new PairPruner(actionWindow, sentenceWindow);
+        for(Flow flow : flows) {
+            List<Action> actions = sortedActions(flow);
+            List<String> expected = new ArrayList<>();
+            for(Action src : actions) {
+                for(Action dst : actions) {
+                    if(src.getID() < dst.getID()
+                            && (dst.getID() - src.getID() <= actionWindow
+                            || dst.sentIndex() - src.sentIndex() <= sentenceWindow
+                            || Action.matches(src.getObjectLemmas(), dst.getObjectLemmas())
+                            || flow.containsEdge(src, dst))) {
+                        expected.add(src.getID() + "->" + dst.getID());
+                    }
+                }
+            }
+            assertEquals(expected, pairs(actions, pruner.candidates(actions, flow)));
+            assertEquals(pairs(actions, ActionPairs.all(actions)), pairs(actions, PairPruner.NONE.candidates(actions, flow)));
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package uk.ac.cam.sp715.flows;
+
+import edu.stanford.nlp.classify.Classifier;
+import edu.stanford.nlp.ling.BasicDatum;
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.ling.IndexedWord;
+import edu.stanford.nlp.trees.EnglishGrammaticalRelations;
+import edu.stanford.nlp.trees.GrammaticalRelation;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import uk.ac.cam.sp715.ml.SRLDataHandler;
+import uk.ac.cam.sp715.recognition.EntityAnnotator.AugmentedSemanticGraph;
+import uk.ac.cam.sp715.recognition.TaggedWord;
+import uk.ac.cam.sp715.util.IOToolsException;
+import uk.ac.cam.sp715.wordnet.Taxonomy.TaxonomyType;
+
+import java.lang.management.ManagementFactory;
+import java.util.*;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Checks that {@link RoleLabeller} labels tokens as the classifier does from string features, and
+ * compares the allocation and throughput of the two.
+ * @author Srijan Parmeshwar <sp715@cam.ac.uk>
+ */
+public class RoleLabellerTest {
+
+    private static final String[] WORDS = {"preheat", "oven", "sugar", "flour", "mix", "the", "in", "a", "bowl", "stir", "butter", "and", "bake"};
+    private static final String[] TAGS = {"VB", "NN", "NNS", "DT", "IN", "JJ", "CC", "RB"};
+    private static final List<GrammaticalRelation> RELATIONS = Arrays.asList(
+            EnglishGrammaticalRelations.DIRECT_OBJECT,
+            EnglishGrammaticalRelations.INDIRECT_OBJECT,
+            EnglishGrammaticalRelations.DETERMINER,
+            EnglishGrammaticalRelations.ADJECTIVAL_MODIFIER,
+            EnglishGrammaticalRelations.CONJUNCT,
+            EnglishGrammaticalRelations.getPrep("into"));
+
+    private static Classifier<Role, String> classifier;
+    private static List<AugmentedSemanticGraph> sentences;
+
+    @BeforeClass
+    public static void setUp() throws IOToolsException {
+        classifier = SRLDataHandler.getClassifier();
+        Random random = new Random(715);
+        sentences = new ArrayList<>();
+        for(int i = 0; i < 200; i++) sentences.add(sentence(random));
+    }
+
+    private static AugmentedSemanticGraph sentence(Random random) {
+        AugmentedSemanticGraph graph = new AugmentedSemanticGraph();
+        List<TaggedWord> tokens = new ArrayList<>();
+        int size = 1 + random.nextInt(20);
+        for(int i = 0; i < size; i++) {
+            CoreLabel label = new CoreLabel();
+            String word = WORDS[random.nextInt(WORDS.length)];
+            label.setWord(word);
+            label.setLemma(word);
+            label.setTag(TAGS[random.nextInt(TAGS.length)]);
+            label.setIndex(i + 1);
+            label.setSentIndex(0);
+            label.setBeginPosition(10 * i);
+            label.setEndPosition(10 * i + word.length());
+            TaggedWord token = new TaggedWord(new IndexedWord(label), TaxonomyType.values()[random.nextInt(TaxonomyType.values().length)]);
+            tokens.add(token);
+            graph.addVertex(token);
+        }
+        for(int i = 0; i < size; i++) {
+            graph.addEdge(tokens.get(random.nextInt(size)), tokens.get(random.nextInt(size)), RELATIONS.get(random.nextInt(RELATIONS.size())));
+        }
+        return graph;
+    }
+
+    private static Role stringRole(AugmentedSemanticGraph dependencies, int position) {
+        List<TaggedWord> tokens = dependencies.orderedTokens();
+        return classifier.classOf(new BasicDatum<>(FeatureVectors.getFeatures(tokens.get(position), position, dependencies, tokens)));
+    }
+
+    @Test
+    public void sameRolesTest() {
+        RoleLabeller labeller = new RoleLabeller(classifier);
+        for(AugmentedSemanticGraph sentence : sentences) {
+            for(int position = 0; position < sentence.size(); position++) {
+                assertEquals(stringRole(sentence, position), labeller.roleOf(sentence, position));
+            }
+        }
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static int labelAll(RoleLabeller labeller) {
+        int count = 0;
+        for(AugmentedSemanticGraph sentence : sentences) {
+            for(int position = 0; position < sentence.size(); position++) count += labeller.roleOf(sentence, position).ordinal();
+        }
+        return count;
+    }
+
+    private static int labelAllFromStrings() {
+        int count = 0;
+        for(AugmentedSemanticGraph sentence : sentences) {
+            for(int position = 0; position < sentence.size(); position++) count += stringRole(sentence, position).ordinal();
+        }
+        return count;
+    }
+
+    @Test
+    public void allocationTest() {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        RoleLabeller labeller = new RoleLabeller(classifier);
+        int tokens = sentences.stream().mapToInt(AugmentedSemanticGraph::size).sum();
+        int rounds = 50;
+        for(int i = 0; i < rounds; i++) assertEquals(labelAllFromStrings(), labelAll(labeller));
+
+        long start = System.nanoTime();
+        long before = allocatedBytes();
+        for(int i = 0; i < rounds; i++) labelAllFromStrings();
+        long stringBytes = allocatedBytes() - before;
+        long stringTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        before = allocatedBytes();
+        for(int i = 0; i < rounds; i++) labelAll(labeller);
+        long labellerBytes = allocatedBytes() - before;
+        long labellerTime = System.nanoTime() - start;
+
+        double labelled = (double) tokens * rounds;
+        System.out.println("String features: " + stringBytes / labelled + " bytes and " + stringTime / labelled + "ns per token, "
+                + "role labeller: " + labellerBytes / labelled + " bytes and " + labellerTime / labelled + "ns per token");
+        assertTrue(labellerBytes / labelled < 1);
+    }
+}
@@ -0,0 +1,61 @@
+package uk.ac.cam.sp715.ml;
+
+import edu.stanford.nlp.classify.GeneralDataset;
+import edu.stanford.nlp.classify.LinearClassifier;
+import edu.stanford.nlp.util.Pair;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import uk.ac.cam.sp715.flows.Role;
+import uk.ac.cam.sp715.util.IOToolsException;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the {@link CrossValidator} gives the same accuracies as training on the folds of
+ * {@link GeneralDataset#splitOutFold(int, int)}, whether or not folds are run in parallel.
+ * @author Srijan Parmeshwar <sp715@cam.ac.uk>
+ */
+public class CrossValidatorTest {
+    private static final int FOLDS = 3;
+    private static GeneralDataset<Role, String> dataset;
+    private static CrossValidator<Role> validator;
+
+    @BeforeClass
+    public static void setup() throws IOToolsException {
+        dataset = SRLDataHandler.loadTrainingData(4);
+        validator = new CrossValidator<>(Collections.singletonMap("original", dataset), FOLDS, CrossValidator.linear());
+    }
+
+    @Test
+    public void foldTest() {
+        List<CrossValidator<Role>.Result> results = validator.evaluate(CrossValidator.grid(validator.featureSets(), 1), false);
+        double[] accuracies = results.get(0).getFoldAccuracies();
+        for(int fold = 0; fold < FOLDS; fold++) {
+            Pair<GeneralDataset<Role, String>, GeneralDataset<Role, String>> split = dataset.splitOutFold(fold, FOLDS);
+            LinearClassifier<Role, String> classifier = ClassifierTrainer.train(split.first());
+            assertEquals(classifier.evaluateAccuracy(split.second()), accuracies[fold], 1e-12);
+        }
+    }
+
+    @Test
+    public void parallelTest() {
+        List<CrossValidator.Configuration> configurations = CrossValidator.grid(validator.featureSets(), 0.5, 2);
+        List<String> sequential = validator.table(validator.evaluate(configurations, false));
+        List<String> parallel = validator.table(validator.evaluate(configurations, true));
+        assertEquals(configurations.size() + 1, sequential.size());
+        assertEquals(sequential, parallel);
+    }
+
+    @Test
+    public void randomTest() {
+        List<CrossValidator.Configuration> configurations = CrossValidator.random(Arrays.asList("a", "b"), 0.1, 10, 50, 715);
+        assertEquals(50, configurations.size());
+        for(CrossValidator.Configuration configuration : configurations) {
+            assertTrue(configuration.getSigma() >= 0.1 && configuration.getSigma() <= 10);
+            assertTrue(configuration.getFeatures().equals("a") || configuration.getFeatures().equals("b"));
+        }
+        assertEquals(configurations.toString(), CrossValidator.random(Arrays.asList("a", "b"), 0.1, 10, 50, 715).toString());
+    }
+}
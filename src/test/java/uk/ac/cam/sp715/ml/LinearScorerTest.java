@@ -0,0 +1,191 @@
+package uk.ac.cam.sp715.ml;
+
+import edu.stanford.nlp.classify.Dataset;
+import edu.stanford.nlp.classify.GeneralDataset;
+import edu.stanford.nlp.classify.LinearClassifier;
+import edu.stanford.nlp.classify.LogisticClassifier;
+import edu.stanford.nlp.classify.LogisticClassifierFactory;
+import edu.stanford.nlp.ling.BasicDatum;
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.ling.Datum;
+import edu.stanford.nlp.ling.IndexedWord;
+import edu.stanford.nlp.stats.Counter;
+import edu.stanford.nlp.trees.EnglishGrammaticalRelations;
+import edu.stanford.nlp.trees.GrammaticalRelation;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import uk.ac.cam.sp715.flows.Action;
+import uk.ac.cam.sp715.flows.FeatureVectors;
+import uk.ac.cam.sp715.flows.Flow;
+import uk.ac.cam.sp715.flows.Role;
+import uk.ac.cam.sp715.recognition.EntityAnnotator.AugmentedSemanticGraph;
+import uk.ac.cam.sp715.recognition.TaggedWord;
+import uk.ac.cam.sp715.util.IOTools;
+import uk.ac.cam.sp715.util.IOToolsException;
+import uk.ac.cam.sp715.wordnet.Taxonomy.TaxonomyType;
+
+import java.nio.file.Paths;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that scoring feature ids with {@link LinearScorer} gives the same predictions as
+ * classifying string features with the trained {@link LinearClassifier} or {@link LogisticClassifier}.
+ * @author Srijan Parmeshwar <sp715@cam.ac.uk>
+ */
+public class LinearScorerTest {
+
+    private static GeneralDataset<Role, String> dataset;
+    private static LinearClassifier<Role, String> classifier;
+    private static LinearScorer<Role> scorer;
+
+    @BeforeClass
+    public static void setUp() throws IOToolsException {
+        dataset = SRLDataHandler.loadTrainingData(4);
+        classifier = (LinearClassifier<Role, String>) ClassifierTrainer.train(dataset);
+        scorer = new LinearScorer<>(classifier, FeatureVectors.TOKEN_FEATURE_TEMPLATES);
+    }
+
+    private static FeatureBuffer ids(Collection<String> features) {
+        FeatureBuffer buffer = new FeatureBuffer(1);
+        for(String feature : features) buffer.add(scorer.getFeatureIndex().indexOf(feature));
+        return buffer;
+    }
+
+    @Test
+    public void trainingDataTest() {
+        double[] scores = new double[scorer.labels().size()];
+        for(int i = 0; i < dataset.size(); i++) {
+            Datum<Role, String> datum = dataset.getDatum(i);
+            FeatureBuffer buffer = ids(datum.asFeatures());
+            Counter<Role> expected = classifier.scoresOf(datum);
+            scorer.scoresOf(buffer, scores);
+            for(int label = 0; label < scores.length; label++) {
+                assertEquals(expected.getCount(scorer.labels().get(label)), scores[label], 0);
+            }
+            assertEquals(classifier.classOf(datum), scorer.classOf(buffer));
+        }
+    }
+
+    @Test
+    public void templateLookupTest() {
+        FeatureIndex index = scorer.getFeatureIndex();
+        for(int id = 0; id < index.size(); id++) {
+            String feature = index.get(id);
+            assertEquals(id, index.indexOf(feature));
+            String template = "";
+            for(String prefix : FeatureVectors.TOKEN_FEATURE_TEMPLATES) {
+                if(feature.startsWith(prefix) && prefix.length() > template.length()) template = prefix;
+            }
+            if(!template.isEmpty()) assertEquals(id, index.indexOf(template, feature.substring(template.length())));
+        }
+        assertEquals(-1, index.indexOf("word=", "not a feature"));
+    }
+
+    private static final String[] WORDS = {"preheat", "oven", "sugar", "flour", "mix", "the", "in", "a", "bowl", "stir", "butter", "and", "bake"};
+    private static final String[] TAGS = {"VB", "NN", "NNS", "DT", "IN", "JJ", "CC", "RB"};
+    private static final List<GrammaticalRelation> RELATIONS = Arrays.asList(
+            EnglishGrammaticalRelations.DIRECT_OBJECT,
+            EnglishGrammaticalRelations.INDIRECT_OBJECT,
+            EnglishGrammaticalRelations.DETERMINER,
+            EnglishGrammaticalRelations.NOMINAL_SUBJECT,
+            EnglishGrammaticalRelations.ADJECTIVAL_MODIFIER,
+            EnglishGrammaticalRelations.NOUN_COMPOUND_MODIFIER,
+            EnglishGrammaticalRelations.CONJUNCT,
+            EnglishGrammaticalRelations.getPrep("into"),
+            EnglishGrammaticalRelations.getPrep("in"));
+
+    private static AugmentedSemanticGraph sentence(Random random) {
+        AugmentedSemanticGraph graph = new AugmentedSemanticGraph();
+        List<TaggedWord> tokens = new ArrayList<>();
+        int size = 1 + random.nextInt(15);
+        for(int i = 0; i < size; i++) {
+            CoreLabel label = new CoreLabel();
+            String word = WORDS[random.nextInt(WORDS.length)];
+            label.setWord(random.nextBoolean() ? word : word.toUpperCase());
+            label.setLemma(word);
+            label.setTag(TAGS[random.nextInt(TAGS.length)]);
+            label.setIndex(i + 1);
+            label.setSentIndex(0);
+            label.setBeginPosition(10 * i);
+            label.setEndPosition(10 * i + word.length());
+            TaggedWord token = new TaggedWord(new IndexedWord(label), TaxonomyType.values()[random.nextInt(TaxonomyType.values().length)]);
+            tokens.add(token);
+            graph.addVertex(token);
+        }
+        for(int i = 0; i < 2 * size; i++) {
+            graph.addEdge(tokens.get(random.nextInt(size)), tokens.get(random.nextInt(size)), RELATIONS.get(random.nextInt(RELATIONS.size())));
+        }
+        return graph;
+    }
+
+    @Test
+    public void featureExtractionTest() {
+        Random random = new Random(715);
+        FeatureBuffer buffer = new FeatureBuffer();
+        for(int trial = 0; trial < 500; trial++) {
+            AugmentedSemanticGraph graph = sentence(random);
+            List<TaggedWord> tokens = graph.orderedTokens();
+            for(int position = 0; position < tokens.size(); position++) {
+                List<String> features = FeatureVectors.getFeatures(tokens.get(position), position, graph, tokens);
+                FeatureVectors.getFeatureIds(position, graph, scorer.getFeatureIndex(), buffer);
+
+                int[] expected = ids(features).toArray();
+                int[] actual = buffer.toArray();
+                Arrays.sort(expected);
+                Arrays.sort(actual);
+                assertArrayEquals(expected, actual);
+                assertEquals(classifier.classOf(new BasicDatum<>(features)), scorer.classOf(buffer));
+            }
+        }
+    }
+
+    private static List<Action> sortedActions(Flow flow) {
+        List<Action> actions = new ArrayList<>(flow.vertexSet());
+        Collections.sort(actions, (o1, o2) -> Integer.compare(o1.getID(), o2.getID()));
+        return actions;
+    }
+
+    @Test
+    public void pairBatchTest() throws IOToolsException {
+        List<Flow> flows = IOTools.read(Paths.get("data", "heuristic-flows.ser").toString());
+
+        //Learn to predict heuristic edges from a few recipes, so that the weights are not trivial.
+        GeneralDataset<Boolean, String> pairs = new Dataset<>();
+        for(Flow flow : flows.subList(0, 10)) {
+            List<Action> actions = sortedActions(flow);
+            for(int i = 0; i < actions.size(); i++) {
+                for(int j = i + 1; j < actions.size(); j++) {
+                    pairs.add(FeatureVectors.getDatum(actions.get(i), actions.get(j), flow, flow.containsEdge(actions.get(i), actions.get(j))));
+                }
+            }
+        }
+        LogisticClassifier<Boolean, String> logistic = new LogisticClassifierFactory<Boolean, String>().trainClassifier(pairs);
+        LinearScorer<Boolean> pairScorer = new LinearScorer<>(logistic, FeatureVectors.PAIR_FEATURE_TEMPLATES);
+        FeatureIndex index = pairScorer.getFeatureIndex();
+
+        for(Flow flow : flows.subList(0, 60)) {
+            List<Action> actions = sortedActions(flow);
+            FeatureMatrix matrix = FeatureVectors.getPairFeatureIds(actions, flow, index);
+            int[] sequential = pairScorer.bestLabels(matrix, false);
+            int[] parallel = pairScorer.bestLabels(matrix, true);
+            assertArrayEquals(sequential, parallel);
+
+            int row = 0;
+            for(Action src : actions) {
+                for(Action dst : actions) {
+                    if(src.getID() < dst.getID()) {
+                        Datum<Boolean, String> datum = FeatureVectors.getDatum(src, dst, flow);
+                        FeatureBuffer expected = new FeatureBuffer();
+                        for(String feature : datum.asFeatures()) expected.add(index.indexOf(feature));
+                        assertArrayEquals(expected.toArray(), matrix.row(row));
+                        assertEquals(logistic.classOf(datum), pairScorer.labels().get(sequential[row]));
+                        row++;
+                    }
+                }
+            }
+            assertEquals(row, matrix.rows());
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package uk.ac.cam.sp715.ml;
+
+import edu.stanford.nlp.classify.GeneralDataset;
+import edu.stanford.nlp.classify.LinearClassifier;
+import edu.stanford.nlp.ling.Datum;
+import org.junit.Test;
+import uk.ac.cam.sp715.flows.Role;
+import uk.ac.cam.sp715.util.Codecs;
+import uk.ac.cam.sp715.util.IOToolsException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the {@link ModelRegistry} only trains models when their fingerprint changes, also when
+ * models are requested concurrently, and that stored classifiers give the same scores as the trained ones.
+ * @author Srijan Parmeshwar <sp715@cam.ac.uk>
+ */
+public class ModelRegistryTest {
+
+    private static void delete(Path directory) throws IOException {
+        if(!Files.exists(directory)) return;
+        for(Path file : Files.newDirectoryStream(directory)) Files.delete(file);
+        Files.delete(directory);
+    }
+
+    @Test
+    public void retrainingTest() throws IOException, IOToolsException {
+        Path directory = Files.createTempDirectory("models");
+        try {
+            ModelRegistry registry = new ModelRegistry(directory.resolve("nested").toString());
+            AtomicInteger trained = new AtomicInteger();
+            ModelRegistry.Trainer<String> trainer = () -> "model" + trained.incrementAndGet();
+
+            assertEquals("model1", registry.get("test", "a", Codecs.STRING, trainer));
+            assertEquals("model1", registry.get("test", "a", Codecs.STRING, trainer));
+            assertEquals("model1", new ModelRegistry(directory.resolve("nested").toString()).get("test", "a", Codecs.STRING, trainer));
+            assertEquals(1, trained.get());
+
+            assertEquals("model2", registry.get("test", "b", Codecs.STRING, trainer));
+            assertEquals("model2", registry.get("test", "b", Codecs.STRING, trainer));
+            assertEquals(2, trained.get());
+
+            Files.write(directory.resolve("nested").resolve("test.model"), new byte[] {1, 2, 3});
+            assertEquals("model3", registry.get("test", "b", Codecs.STRING, trainer));
+            assertEquals("model3", registry.get("test", "b", Codecs.STRING, trainer));
+            assertEquals(3, trained.get());
+        } finally {
+            delete(directory.resolve("nested"));
+            delete(directory);
+        }
+    }
+
+    @Test
+    public void concurrentTest() throws IOException {
+        Path directory = Files.createTempDirectory("models");
+        try {
+            ModelRegistry registry = new ModelRegistry(directory.toString());
+            AtomicInteger trained = new AtomicInteger();
+            List<String> models = IntStream.range(0, 8).parallel().mapToObj(i -> {
+                try {
+                    return registry.get("test", "a", Codecs.STRING, () -> "model" + trained.incrementAndGet());
+                } catch(IOToolsException iote) {
+                    throw new AssertionError(iote);
+                }
+            }).collect(Collectors.toList());
+            assertEquals(1, trained.get());
+            assertEquals(Collections.singleton("model1"), new HashSet<>(models));
+
+            //Separate registries share no locks, so each saves its own model through its own temporary file.
+            IntStream.range(0, 8).parallel().forEach(i -> {
+                try {
+                    new ModelRegistry(directory.toString()).get("other", "f" + i, Codecs.STRING, () -> "model" + i);
+                } catch(IOToolsException iote) {
+                    throw new AssertionError(iote);
+                }
+            });
+            Set<String> files = Files.list(directory).map(file -> file.getFileName().toString()).collect(Collectors.toSet());
+            assertEquals(new HashSet<>(Arrays.asList("test.model", "other.model")), files);
+            int loaded = 0;
+            for(int i = 0; i < 8; i++) {
+                try {
+                    registry.get("other", "f" + i, Codecs.STRING, () -> {
+                        throw new IOException("Stored model should have been loaded.");
+                    });
+                    loaded++;
+                } catch(IOToolsException iote) {
+                    //Stored under another fingerprint.
+                }
+            }
+            assertEquals(1, loaded);
+        } finally {
+            delete(directory);
+        }
+    }
+
+    @Test
+    public void fingerprintTest() throws IOException, IOToolsException {
+        Path file = Files.createTempFile("training", ".txt");
+        try {
+            Files.write(file, new byte[] {1, 2, 3});
+            String fingerprint = ModelRegistry.fingerprint(1, Collections.singletonList("a="), file);
+            assertEquals(fingerprint, ModelRegistry.fingerprint(1, Collections.singletonList("a="), file));
+            assertNotEquals(fingerprint, ModelRegistry.fingerprint(2, Collections.singletonList("a="), file));
+            assertNotEquals(fingerprint, ModelRegistry.fingerprint(1, Collections.singletonList("b="), file));
+            Files.write(file, new byte[] {1, 2, 4});
+            assertNotEquals(fingerprint, ModelRegistry.fingerprint(1, Collections.singletonList("a="), file));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void classifierTest() throws IOException, IOToolsException {
+        GeneralDataset<Role, String> dataset = SRLDataHandler.loadTrainingData(4);
+        LinearClassifier<Role, String> classifier = ClassifierTrainer.train(dataset);
+        Path directory = Files.createTempDirectory("models");
+        try {
+            ModelRegistry registry = new ModelRegistry(directory.toString());
+            registry.get("srl", "a", Codecs.ROLE_CLASSIFIER, () -> classifier);
+            LinearClassifier<Role, String> stored = registry.get("srl", "a", Codecs.ROLE_CLASSIFIER, () -> {
+                throw new IOException("Stored model should have been loaded.");
+            });
+            assertNotSame(classifier, stored);
+            for(Datum<Role, String> datum : dataset) assertEquals(classifier.scoresOf(datum), stored.scoresOf(datum));
+        } finally {
+            delete(directory);
+        }
+    }
+}
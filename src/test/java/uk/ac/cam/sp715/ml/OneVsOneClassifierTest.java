@@ -0,0 +1,104 @@
+package uk.ac.cam.sp715.ml;
+
+import edu.stanford.nlp.classify.Classifier;
+import edu.stanford.nlp.classify.Dataset;
+import edu.stanford.nlp.classify.GeneralDataset;
+import edu.stanford.nlp.classify.LogisticClassifierFactory;
+import edu.stanford.nlp.ling.BasicDatum;
+import edu.stanford.nlp.ling.Datum;
+import edu.stanford.nlp.stats.ClassicCounter;
+import edu.stanford.nlp.stats.Counter;
+import edu.stanford.nlp.stats.Counters;
+import org.junit.Test;
+import uk.ac.cam.sp715.flows.Role;
+import uk.ac.cam.sp715.util.IOToolsException;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that classifying a batch of examples, in parallel or not, gives the same votes and
+ * labels as classifying each example on its own, and that the votes match those of pairwise
+ * classifiers trained one after another on their own datasets of the original examples.
+ * @author Srijan Parmeshwar <sp715@cam.ac.uk>
+ */
+public class OneVsOneClassifierTest {
+
+    /**
+     * Pairwise classifiers trained one pair at a time from copies of the examples of each pair, which
+     * are scored through a proxy datum.
+     */
+    private static class SequentialOneVsOne {
+        private final Map<List<Role>, Classifier<Boolean, String>> classifiers = new LinkedHashMap<>();
+
+        private SequentialOneVsOne(GeneralDataset<Role, String> dataset, List<Role> labels) {
+            LogisticClassifierFactory<Boolean, String> factory = new LogisticClassifierFactory<>();
+            Map<Role, Collection<Datum<Role, String>>> subsets = new HashMap<>();
+            for(int i = 0; i < dataset.size(); i++) {
+                Datum<Role, String> datum = dataset.getDatum(i);
+                if(!subsets.containsKey(datum.label())) subsets.put(datum.label(), new LinkedList<>());
+                subsets.get(datum.label()).add(datum);
+            }
+            for(int i = 0; i < labels.size(); i++) {
+                Role labelA = labels.get(i);
+                for(int j = i + 1; j < labels.size(); j++) {
+                    Role labelB = labels.get(j);
+                    GeneralDataset<Boolean, String> subset = new Dataset<>();
+                    subset.addAll(subsets.get(labelA).stream()
+                            .map(datum -> new BasicDatum<Boolean, String>(datum.asFeatures(), true))
+                            .collect(Collectors.toList()));
+                    subset.addAll(subsets.get(labelB).stream()
+                            .map(datum -> new BasicDatum<Boolean, String>(datum.asFeatures(), false))
+                            .collect(Collectors.toList()));
+                    classifiers.put(Arrays.asList(labelA, labelB), factory.trainClassifier(subset));
+                }
+            }
+        }
+
+        private Counter<Role> scoresOf(Datum<Role, String> example) {
+            Counter<Role> votes = new ClassicCounter<>();
+            for(Map.Entry<List<Role>, Classifier<Boolean, String>> entry : classifiers.entrySet()) {
+                Counter<Boolean> proxyCounter = entry.getValue().scoresOf(new BasicDatum<>(example.asFeatures()));
+                Counter<Role> counter = new ClassicCounter<>();
+                counter.incrementCount(entry.getKey().get(0), proxyCounter.getCount(true));
+                counter.incrementCount(entry.getKey().get(1), proxyCounter.getCount(false));
+                votes.incrementCount(Counters.argmax(counter));
+            }
+            return votes;
+        }
+    }
+
+    @Test
+    public void sequentialTest() throws IOToolsException {
+        GeneralDataset<Role, String> dataset = SRLDataHandler.loadTrainingData(4);
+        List<Role> labels = Arrays.asList(Role.values());
+        OneVsOneClassifier<Role, String> classifier = new OneVsOneClassifier<>(dataset, labels);
+        SequentialOneVsOne expected = new SequentialOneVsOne(dataset, labels);
+        for(Datum<Role, String> datum : dataset) assertEquals(expected.scoresOf(datum), classifier.scoresOf(datum));
+    }
+
+    @Test
+    public void batchTest() throws IOToolsException {
+        GeneralDataset<Role, String> dataset = SRLDataHandler.loadTrainingData(4);
+        OneVsOneClassifier<Role, String> classifier = new OneVsOneClassifier<>(dataset, Arrays.asList(Role.values()));
+
+        List<Datum<Role, String>> examples = new ArrayList<>();
+        for(Datum<Role, String> datum : dataset) examples.add(datum);
+
+        List<Role> expected = new ArrayList<>();
+        int correct = 0;
+        for(Datum<Role, String> datum : examples) {
+            Role role = classifier.classOf(datum);
+            expected.add(role);
+            if(role == datum.label()) correct++;
+        }
+        assertEquals(expected, classifier.classesOf(examples, false));
+        assertEquals(expected, classifier.classesOf(examples, true));
+        for(int i = 0; i < examples.size(); i++) {
+            assertEquals(classifier.scoresOf(examples.get(i)), classifier.scoresOf(examples, true).get(i));
+        }
+        assertTrue(correct > examples.size() / 2);
+    }
+}
@@ -0,0 +1,118 @@
+package uk.ac.cam.sp715.ml;
+
+import edu.stanford.nlp.classify.GeneralDataset;
+import org.junit.Test;
+import uk.ac.cam.sp715.flows.Role;
+import uk.ac.cam.sp715.util.Codecs;
+import uk.ac.cam.sp715.util.IOTools;
+import uk.ac.cam.sp715.util.IOToolsException;
+
+import java.io.*;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that {@link TrainingMatrix} files give back the examples they were saved with, and that the
+ * compiled role training data matches the stored dataset it replaces.
+ * @author Srijan Parmeshwar <sp715@cam.ac.uk>
+ */
+public class TrainingMatrixTest {
+
+    private static void assertSameDataset(GeneralDataset<Role, String> expected, GeneralDataset<Role, String> actual) {
+        assertEquals(expected.size(), actual.size());
+        assertEquals(expected.labelIndex().objectsList(), actual.labelIndex().objectsList());
+        assertEquals(expected.featureIndex().objectsList(), actual.featureIndex().objectsList());
+        for(int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.getLabelsArray()[i], actual.getLabelsArray()[i]);
+            assertArrayEquals(expected.getDataArray()[i], actual.getDataArray()[i]);
+        }
+    }
+
+    @Test
+    public void roundTripTest() throws IOException, IOToolsException {
+        TrainingMatrix.Builder<Role> builder = new TrainingMatrix.Builder<>();
+        builder.add(Role.OTHER, Arrays.asList("word=the", "posTag=DT", "atStart"));
+        builder.add(Role.ACTION, Arrays.asList("word=grease", "posTag=VB", "word=grease"));
+        builder.add(Role.DOBJECT, Collections.emptyList());
+        builder.add(Role.OTHER, Arrays.asList("posTag=DT", "ner=null"));
+        TrainingMatrix<Role> matrix = builder.build();
+        assertEquals(Arrays.asList(Role.OTHER, Role.ACTION, Role.DOBJECT), matrix.labels());
+        assertArrayEquals(new int[] {3, 4, 3}, matrix.getMatrix().row(1));
+
+        File file = File.createTempFile("training", ".matrix");
+        try {
+            matrix.save(Codecs.enumeration(Role.class), file.getPath());
+            TrainingMatrix<Role> loaded = TrainingMatrix.load(Codecs.enumeration(Role.class), file.getPath());
+            assertEquals(matrix.labels(), loaded.labels());
+            assertEquals(matrix.features(), loaded.features());
+            assertEquals(matrix.size(), loaded.size());
+            for(int row = 0; row < matrix.size(); row++) {
+                assertEquals(matrix.labelOf(row), loaded.labelOf(row));
+                assertArrayEquals(matrix.getMatrix().row(row), loaded.getMatrix().row(row));
+            }
+            assertSameDataset(matrix.toDataset(), loaded.toDataset());
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void trainingDataTest() throws IOToolsException {
+        GeneralDataset<Role, String> stored = IOTools.read(Codecs.ROLE_DATASET, Paths.get("data", "srl-train-en.bin").toString());
+        assertSameDataset(stored, SRLDataHandler.loadTrainingData(4));
+        assertSameDataset(stored, TrainingMatrix.of(stored).toDataset());
+    }
+
+    @Test
+    public void concurrentLabelsTest() throws IOToolsException {
+        Map<Integer, Role> labels = SRLDataHandler.loadLabels("srl-train.txt");
+        assertEquals(SRLDataHandler.loadTrainingMatrix().size(), labels.size());
+        List<Map<Integer, Role>> loaded = IntStream.range(0, 8).parallel()
+                .mapToObj(i -> SRLDataHandler.loadLabels("srl-train.txt"))
+                .collect(Collectors.toList());
+        for(Map<Integer, Role> other : loaded) assertEquals(labels, other);
+    }
+
+    @Test
+    public void labelLineTest() {
+        //Tokens are numbered as String.split numbers them, which drops trailing empty tokens.
+        for(String line : Arrays.asList("", "Grease::A", "Grease::A;;", "Grease::A;;;;", "Grease::A;;;;the::O",
+                ";;the::O", ";;", ";;;;", "a;;;", "a;;;;;", "Grease::A;;the::O;;tin::D;;")) {
+            Map<Integer, Role> labels = new HashMap<>();
+            assertEquals(line, 10 + line.split(";;").length, SRLDataHandler.loadLabels(line, 10, labels));
+        }
+
+        Map<Integer, Role> labels = new HashMap<>();
+        int index = SRLDataHandler.loadLabels("Grease::A;;the::O;;tin::D;;;;", 0, labels);
+        SRLDataHandler.loadLabels("with::O;;oil::I;;unknown::X;;x", index, labels);
+        Map<Integer, Role> expected = new HashMap<>();
+        expected.put(0, Role.ACTION);
+        expected.put(1, Role.OTHER);
+        expected.put(2, Role.DOBJECT);
+        expected.put(3, Role.OTHER);
+        expected.put(4, Role.IOBJECT);
+        assertEquals(expected, labels);
+    }
+
+    @Test(expected = IOToolsException.class)
+    public void malformedTest() throws IOException, IOToolsException {
+        File file = File.createTempFile("training", ".matrix");
+        try {
+            try(DataOutputStream output = new DataOutputStream(new FileOutputStream(file))) {
+                output.writeInt(TrainingMatrix.MAGIC);
+                output.writeInt(TrainingMatrix.VERSION);
+                output.writeInt(1);
+                output.writeInt(1);
+                output.writeInt(1000);
+                output.writeInt(0);
+            }
+            TrainingMatrix.load(Codecs.enumeration(Role.class), file.getPath());
+        } finally {
+            file.delete();
+        }
+    }
+}
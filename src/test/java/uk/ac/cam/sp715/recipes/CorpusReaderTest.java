@@ -0,0 +1,86 @@
+package uk.ac.cam.sp715.recipes;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import uk.ac.cam.sp715.util.IOTools;
+import uk.ac.cam.sp715.util.IOToolsException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that {@link CorpusReader} gives back the recipes written by {@link CorpusWriter} by
+ * position, by iteration and through sequential and parallel streams.
+ * @author Srijan Parmeshwar <sp715@cam.ac.uk>
+ */
+public class CorpusReaderTest {
+
+    private static List<Recipe> recipes;
+
+    @BeforeClass
+    public static void setUp() throws IOToolsException {
+        recipes = IOTools.read(Paths.get("data", "recipes.ser").toString());
+    }
+
+    private static void assertRecipes(List<Recipe> expected, CorpusReader corpus) {
+        assertEquals(expected.size(), corpus.size());
+        for(int i = expected.size() - 1; i >= 0; i--) assertEquals(expected.get(i), corpus.get(i));
+        List<Recipe> iterated = new ArrayList<>();
+        for(Recipe recipe : corpus) iterated.add(recipe);
+        assertEquals(expected, iterated);
+        assertEquals(expected, corpus.stream().collect(Collectors.toList()));
+        assertEquals(expected, corpus.parallelStream().collect(Collectors.toList()));
+    }
+
+    @Test
+    public void roundTripTest() throws IOException, IOToolsException {
+        File file = File.createTempFile("recipes", ".corpus");
+        try {
+            CorpusWriter.save(recipes, file.getPath());
+            try(CorpusReader corpus = CorpusReader.open(file.getPath())) {
+                assertRecipes(recipes, corpus);
+            }
+
+            CorpusWriter.save(Collections.emptyList(), file.getPath());
+            try(CorpusReader corpus = CorpusReader.open(file.getPath())) {
+                assertRecipes(Collections.emptyList(), corpus);
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void dataTest() throws IOToolsException {
+        try(CorpusReader corpus = CorpusReader.open(Paths.get("data", "recipes.corpus").toString())) {
+            assertRecipes(recipes, corpus);
+        }
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void outOfBoundsTest() throws IOToolsException {
+        try(CorpusReader corpus = CorpusReader.open(Paths.get("data", "recipes.corpus").toString())) {
+            corpus.get(corpus.size());
+        }
+    }
+
+    @Test(expected = IOToolsException.class)
+    public void truncatedTest() throws IOException, IOToolsException {
+        File file = File.createTempFile("recipes", ".corpus");
+        try {
+            CorpusWriter.save(recipes.subList(0, 3), file.getPath());
+            try(RandomAccessFile truncated = new RandomAccessFile(file, "rw")) {
+                truncated.setLength(truncated.length() - 4);
+            }
+            CorpusReader.open(file.getPath()).close();
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package uk.ac.cam.sp715.recognition;
+
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.ling.IndexedWord;
+import edu.stanford.nlp.trees.EnglishGrammaticalRelations;
+import edu.stanford.nlp.trees.GrammaticalRelation;
+import org.junit.Test;
+import uk.ac.cam.sp715.recognition.EntityAnnotator.AugmentedSemanticGraph;
+import uk.ac.cam.sp715.util.IOToolsException;
+import uk.ac.cam.sp715.wordnet.Taxonomy.TaxonomyType;
+
+import java.io.*;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that {@link AnnotationReader} gives back the sentence graphs written by {@link AnnotationWriter},
+ * by index and by iteration, and that stores can be appended to.
+ * @author Srijan Parmeshwar <sp715@cam.ac.uk>
+ */
+public class AnnotationReaderTest {
+
+    private static final List<GrammaticalRelation> RELATIONS = Arrays.asList(
+            EnglishGrammaticalRelations.DIRECT_OBJECT,
+            EnglishGrammaticalRelations.DETERMINER,
+            EnglishGrammaticalRelations.NOMINAL_SUBJECT,
+            EnglishGrammaticalRelations.ADJECTIVAL_MODIFIER,
+            EnglishGrammaticalRelations.CONJUNCT,
+            EnglishGrammaticalRelations.getPrep("into"),
+            EnglishGrammaticalRelations.getPrep("with"));
+
+    private static final TaxonomyType[] TAGS = {TaxonomyType.OTHER, TaxonomyType.INGREDIENTS, TaxonomyType.UTENSILS, null};
+
+    private static TaggedWord token(int sentence, int index, Random random) {
+        CoreLabel label = new CoreLabel();
+        label.setWord("w" + random.nextInt(20));
+        label.setLemma("l" + random.nextInt(20));
+        label.setIndex(index + 1);
+        label.setSentIndex(sentence);
+        label.setBeginPosition(3 * index);
+        label.setEndPosition(3 * index + 2);
+        label.setTag(random.nextBoolean() ? "NN" : "VB");
+        return new TaggedWord(new IndexedWord(label), TAGS[random.nextInt(TAGS.length)]);
+    }
+
+    private static List<AugmentedSemanticGraph> recipe(Random random) {
+        List<AugmentedSemanticGraph> graphs = new ArrayList<>();
+        int sentences = random.nextInt(4);
+        for(int sentence = 0; sentence < sentences; sentence++) {
+            AugmentedSemanticGraph graph = new AugmentedSemanticGraph();
+            List<TaggedWord> tokens = new ArrayList<>();
+            int size = 1 + random.nextInt(12);
+            for(int i = 0; i < size; i++) tokens.add(token(sentence, i, random));
+            Collections.shuffle(tokens, random);
+            tokens.forEach(graph::addVertex);
+            for(int i = 0; i < 2 * size; i++) {
+                graph.addEdge(tokens.get(random.nextInt(size)), tokens.get(random.nextInt(size)),
+                        RELATIONS.get(random.nextInt(RELATIONS.size())));
+            }
+            graphs.add(graph);
+        }
+        return graphs;
+    }
+
+    private static List<List<AugmentedSemanticGraph>> recipes(int count, long seed) {
+        Random random = new Random(seed);
+        List<List<AugmentedSemanticGraph>> recipes = new ArrayList<>();
+        for(int i = 0; i < count; i++) recipes.add(recipe(random));
+        return recipes;
+    }
+
+    private static String describe(TaggedWord token) {
+        return token.sentIndex() + ":" + token.index() + ":" + token.tag() + ":" + token.entity() + ":"
+                + token.beginPosition() + "-" + token.endPosition() + ":" + token.getWords() + ":" + token.getLemmas();
+    }
+
+    //Describes a graph by its tokens and edges in iteration order.
+    private static List<String> describe(List<AugmentedSemanticGraph> graphs) {
+        List<String> lines = new ArrayList<>();
+        for(AugmentedSemanticGraph graph : graphs) {
+            for(TaggedWord token : graph.vertexSet()) lines.add(describe(token));
+            for(GrammaticalRelation relation : graph.edgeSet()) {
+                lines.add(relation.getLanguage() + ":" + relation + ":" + graph.getEdgeSource(relation).index()
+                        + "->" + graph.getEdgeTarget(relation).index());
+            }
+            lines.add("");
+        }
+        return lines;
+    }
+
+    private static void assertRecipes(List<List<AugmentedSemanticGraph>> expected, AnnotationReader reader) {
+        List<List<String>> descriptions = expected.stream().map(AnnotationReaderTest::describe).collect(Collectors.toList());
+        assertEquals(expected.size(), reader.size());
+        for(int i = expected.size() - 1; i >= 0; i--) assertEquals(descriptions.get(i), describe(reader.get(i)));
+        List<List<String>> iterated = new ArrayList<>();
+        for(List<AugmentedSemanticGraph> graphs : reader) iterated.add(describe(graphs));
+        assertEquals(descriptions, iterated);
+        assertEquals(descriptions, reader.stream().map(AnnotationReaderTest::describe).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void roundTripTest() throws IOException, IOToolsException {
+        List<List<AugmentedSemanticGraph>> recipes = recipes(20, 715);
+        File file = File.createTempFile("annotations", ".graphs");
+        try {
+            for(int chunkSize : new int[] {1, 3, 32}) {
+                try(AnnotationWriter writer = new AnnotationWriter(file.getPath(), chunkSize)) {
+                    for(List<AugmentedSemanticGraph> graphs : recipes) writer.write(graphs);
+                }
+                try(AnnotationReader reader = AnnotationReader.open(file.getPath())) {
+                    assertRecipes(recipes, reader);
+                }
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void appendTest() throws IOException, IOToolsException {
+        List<List<AugmentedSemanticGraph>> recipes = recipes(12, 2016);
+        File file = File.createTempFile("annotations", ".graphs");
+        try {
+            try(AnnotationWriter writer = new AnnotationWriter(file.getPath(), 5)) {
+                for(List<AugmentedSemanticGraph> graphs : recipes.subList(0, 7)) writer.write(graphs);
+            }
+
+            //A chunk which was never finished.
+            try(DataOutputStream output = new DataOutputStream(new FileOutputStream(file, true))) {
+                output.writeInt(1000);
+                output.writeByte(3);
+            }
+            try(AnnotationReader reader = AnnotationReader.open(file.getPath())) {
+                assertRecipes(recipes.subList(0, 7), reader);
+            }
+
+            try(AnnotationWriter writer = AnnotationWriter.append(file.getPath())) {
+                assertEquals(7, writer.size());
+                for(List<AugmentedSemanticGraph> graphs : recipes.subList(7, 12)) writer.write(graphs);
+                assertEquals(12, writer.size());
+            }
+            try(AnnotationReader reader = AnnotationReader.open(file.getPath())) {
+                assertRecipes(recipes, reader);
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test(expected = IOToolsException.class)
+    public void unknownFormatTest() throws IOException, IOToolsException {
+        File file = File.createTempFile("annotations", ".graphs");
+        try {
+            try(DataOutputStream output = new DataOutputStream(new FileOutputStream(file))) {
+                output.writeLong(0);
+            }
+            AnnotationReader.open(file.getPath()).close();
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package uk.ac.cam.sp715.recognition;
+
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.ling.IndexedWord;
+import edu.stanford.nlp.trees.EnglishGrammaticalRelations;
+import edu.stanford.nlp.trees.GrammaticalRelation;
+import org.jgrapht.graph.DefaultDirectedGraph;
+import org.junit.Test;
+import uk.ac.cam.sp715.recognition.EntityAnnotator.AugmentedSemanticGraph;
+import uk.ac.cam.sp715.wordnet.Taxonomy.TaxonomyType;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that {@link AugmentedSemanticGraph} behaves as the JGraphT graph it replaces
+ * on randomly generated sentence graphs.
+ * @author Srijan Parmeshwar <sp715@cam.ac.uk>
+ */
+public class AugmentedSemanticGraphTest {
+
+    private static final List<GrammaticalRelation> RELATIONS = Arrays.asList(
+            EnglishGrammaticalRelations.DIRECT_OBJECT,
+            EnglishGrammaticalRelations.INDIRECT_OBJECT,
+            EnglishGrammaticalRelations.DETERMINER,
+            EnglishGrammaticalRelations.NOMINAL_SUBJECT,
+            EnglishGrammaticalRelations.ADJECTIVAL_MODIFIER,
+            EnglishGrammaticalRelations.NOUN_COMPOUND_MODIFIER,
+            EnglishGrammaticalRelations.ADVERBIAL_MODIFIER,
+            EnglishGrammaticalRelations.CONJUNCT,
+            EnglishGrammaticalRelations.COORDINATION,
+            EnglishGrammaticalRelations.PUNCTUATION,
+            EnglishGrammaticalRelations.getPrep("into"),
+            EnglishGrammaticalRelations.getPrep("in"));
+
+    private static TaggedWord token(int index, int begin) {
+        CoreLabel label = new CoreLabel();
+        label.setWord("w" + index);
+        label.setIndex(index + 1);
+        label.setSentIndex(0);
+        label.setBeginPosition(begin);
+        label.setEndPosition(begin + 2);
+        label.setTag(index % 2 == 0 ? "NN" : "VB");
+        return new TaggedWord(new IndexedWord(label), TaxonomyType.OTHER);
+    }
+
+    @Test
+    public void randomGraphTest() {
+        Random random = new Random(715);
+        for(int trial = 0; trial < 500; trial++) {
+            int size = 1 + random.nextInt(30);
+            List<Integer> begins = new ArrayList<>();
+            for(int i = 0; i < size; i++) begins.add(3 * i);
+            Collections.shuffle(begins, random);
+
+            AugmentedSemanticGraph graph = new AugmentedSemanticGraph();
+            DefaultDirectedGraph<TaggedWord, GrammaticalRelation> expected = new DefaultDirectedGraph<>(GrammaticalRelation.class);
+            List<TaggedWord> tokens = new ArrayList<>();
+            for(int i = 0; i < size; i++) {
+                TaggedWord token = token(i, begins.get(i));
+                tokens.add(token);
+                assertEquals(expected.addVertex(token), graph.addVertex(token));
+            }
+            assertFalse(graph.addVertex(tokens.get(0)));
+
+            for(int i = 0; i < 2 * size; i++) {
+                TaggedWord source = tokens.get(random.nextInt(size));
+                TaggedWord target = tokens.get(random.nextInt(size));
+                GrammaticalRelation relation = RELATIONS.get(random.nextInt(RELATIONS.size()));
+                assertEquals(expected.addEdge(source, target, relation), graph.addEdge(source, target, relation));
+            }
+
+            assertEquals(new ArrayList<>(expected.vertexSet()), new ArrayList<>(graph.vertexSet()));
+            assertEquals(new HashSet<>(expected.edgeSet()), new HashSet<>(graph.edgeSet()));
+            List<TaggedWord> ordered = new ArrayList<>(expected.vertexSet());
+            ordered.sort(Comparator.comparingInt(TaggedWord::beginPosition));
+            assertEquals(ordered, graph.orderedTokens());
+
+            for(TaggedWord token : tokens) {
+                assertEquals(new ArrayList<>(expected.outgoingEdgesOf(token)), new ArrayList<>(graph.outgoingEdgesOf(token)));
+                assertEquals(new ArrayList<>(expected.incomingEdgesOf(token)), new ArrayList<>(graph.incomingEdgesOf(token)));
+                int position = graph.positionOf(token);
+                assertEquals(token, graph.tokenAt(position));
+                assertEquals(expected.outDegreeOf(token), graph.outDegreeAt(position));
+                assertEquals(expected.inDegreeOf(token), graph.inDegreeAt(position));
+                for(int i = 0; i < graph.outDegreeAt(position); i++) {
+                    GrammaticalRelation relation = graph.outgoingRelationAt(position, i);
+                    assertEquals(expected.getEdgeTarget(relation), graph.getEdgeTarget(relation));
+                    assertEquals(expected.getEdgeTarget(relation), graph.tokenAt(graph.outgoingTargetAt(position, i)));
+                }
+                for(int i = 0; i < graph.inDegreeAt(position); i++) {
+                    GrammaticalRelation relation = graph.incomingRelationAt(position, i);
+                    assertEquals(expected.getEdgeSource(relation), graph.getEdgeSource(relation));
+                    assertEquals(expected.getEdgeSource(relation), graph.tokenAt(graph.incomingSourceAt(position, i)));
+                }
+            }
+
+            DefaultDirectedGraph<TaggedWord, GrammaticalRelation> copy = graph.toDirectedGraph();
+            assertEquals(expected.vertexSet(), copy.vertexSet());
+            assertEquals(expected.edgeSet(), copy.edgeSet());
+        }
+    }
+}
@@ -46,6 +46,22 @@ public class EntityAnnotatorTest {
         }
     }
 
+    @Test
+    public void testAnnotateMultiWord() {
+        String testText = "Grease the baking tray with olive oil.";
+        Pipeline pipeline = Pipeline.getPipeline("tokenize, ssplit, pos, lemma, depparse");
+        Annotation annotation = new Annotation(testText);
+        pipeline.annotate(annotation);
+        EntityAnnotator annotator = new EntityAnnotator(null, null);
+        annotator.annotate(annotation);
+        CoreMap sentence = annotation.get(CoreAnnotations.SentencesAnnotation.class).get(0);
+        List<TaggedWord> tokens = sentence.get(EntityAnnotator.EntityAnnotations.class).orderedTokens();
+        assertEquals(Arrays.asList(OTHER, OTHER, UTENSILS, OTHER, INGREDIENTS, OTHER),
+                tokens.stream().map(TaggedWord::entity).collect(Collectors.toList()));
+        assertEquals(Arrays.asList("baking", "tray"), tokens.get(2).getWords());
+        assertEquals(Arrays.asList("olive", "oil"), tokens.get(4).getWords());
+    }
+
     @Test
     public void testAnnotateRecipe() {
         try {
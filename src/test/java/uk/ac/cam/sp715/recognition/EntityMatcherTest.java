@@ -0,0 +1,95 @@
+package uk.ac.cam.sp715.recognition;
+
+import org.junit.Test;
+import uk.ac.cam.sp715.wordnet.Taxonomy.TaxonomyType;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the multi-word matches found by the {@link EntityMatcher} automaton, including matches reached
+ * through suffix links and overlapping matches, and the types of single lemmas, including lemmas which are
+ * in more than one dictionary.
+ * @author Srijan Parmeshwar <sp715@cam.ac.uk>
+ */
+public class EntityMatcherTest {
+
+    private static EntityMatcher matcher(Object... entries) {
+        Map<TaxonomyType, List<String>> dictionaries = new EnumMap<>(TaxonomyType.class);
+        for(int i = 0; i < entries.length; i += 2) {
+            dictionaries.computeIfAbsent((TaxonomyType) entries[i], type -> new ArrayList<>()).add((String) entries[i + 1]);
+        }
+        return new EntityMatcher(dictionaries);
+    }
+
+    private static String match(EntityMatcher matcher, String sentence) {
+        return matcher.match(Arrays.asList(sentence.split(" "))).toString();
+    }
+
+    @Test
+    public void multiWordTest() {
+        EntityMatcher matcher = matcher(
+                TaxonomyType.UTENSILS, "baking_tray",
+                TaxonomyType.INGREDIENTS, "olive oil",
+                TaxonomyType.INGREDIENTS, "oil");
+        assertEquals("[[2, 4, UTENSILS]]", match(matcher, "grease the baking tray"));
+        assertEquals("[[1, 3, INGREDIENTS]]", match(matcher, "add olive oil"));
+        assertEquals("[]", match(matcher, "add oil"));
+        assertEquals("[]", match(matcher, "bake the tray"));
+        assertEquals(TaxonomyType.INGREDIENTS, matcher.typeOf("oil"));
+        assertEquals(TaxonomyType.OTHER, matcher.typeOf("baking_tray"));
+    }
+
+    @Test
+    public void suffixTest() {
+        //After "red bell pepper" the automaton is part way through the longer entity, so
+        //"bell pepper" is only found through the link to its longest entity suffix.
+        EntityMatcher matcher = matcher(
+                TaxonomyType.INGREDIENTS, "red bell pepper sauce",
+                TaxonomyType.INGREDIENTS, "bell pepper");
+        assertEquals("[[3, 5, INGREDIENTS]]", match(matcher, "chop a red bell pepper"));
+        assertEquals("[[0, 4, INGREDIENTS]]", match(matcher, "red bell pepper sauce"));
+
+        //"bell pepper" is also found at the end of "green bell pepper", but the longer match starts first.
+        matcher = matcher(
+                TaxonomyType.INGREDIENTS, "green bell pepper",
+                TaxonomyType.INGREDIENTS, "bell pepper");
+        assertEquals("[[0, 3, INGREDIENTS], [4, 6, INGREDIENTS]]", match(matcher, "green bell pepper and bell pepper"));
+    }
+
+    @Test
+    public void overlapTest() {
+        EntityMatcher matcher = matcher(
+                TaxonomyType.INGREDIENTS, "ice cream",
+                TaxonomyType.INGREDIENTS, "cream cheese",
+                TaxonomyType.INGREDIENTS, "cheese sauce");
+        assertEquals("[[0, 2, INGREDIENTS], [2, 4, INGREDIENTS]]", match(matcher, "ice cream cheese sauce"));
+        assertEquals("[[1, 3, INGREDIENTS]]", match(matcher, "soft cream cheese sauce"));
+    }
+
+    @Test
+    public void firstTypeTest() {
+        //Dictionaries are given in the opposite order to TaxonomyType.
+        EntityMatcher matcher = matcher(
+                TaxonomyType.INGREDIENTS, "pan",
+                TaxonomyType.INGREDIENTS, "cake tin",
+                TaxonomyType.UTENSILS, "pan",
+                TaxonomyType.UTENSILS, "cake tin",
+                TaxonomyType.APPLIANCES, "cake tin");
+        assertEquals(TaxonomyType.UTENSILS, matcher.typeOf("pan"));
+        assertEquals("[]", match(matcher, "pan"));
+        assertEquals("[[1, 3, APPLIANCES]]", match(matcher, "a cake tin"));
+    }
+
+    @Test
+    public void caseTest() {
+        EntityMatcher matcher = matcher(
+                TaxonomyType.INGREDIENTS, "Olive_Oil",
+                TaxonomyType.INGREDIENTS, "Flour");
+        assertEquals(TaxonomyType.INGREDIENTS, matcher.typeOf("flour"));
+        assertEquals(TaxonomyType.INGREDIENTS, matcher.typeOf("FLOUR"));
+        assertEquals("[[0, 2, INGREDIENTS]]", match(matcher, "OLIVE oil"));
+        assertEquals("flour", EntityMatcher.normalize("FlOuR"));
+    }
+}
@@ -0,0 +1,81 @@
+package uk.ac.cam.sp715.recognition;
+
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.ling.IndexedWord;
+import org.junit.Test;
+import uk.ac.cam.sp715.wordnet.Taxonomy.TaxonomyType;
+
+import java.io.*;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that {@link TaggedWord} keeps its constituents in sentence order and survives serialization.
+ * @author Srijan Parmeshwar <sp715@cam.ac.uk>
+ */
+public class TaggedWordTest {
+
+    private static IndexedWord token(String word, String lemma, String tag, int index, int begin) {
+        CoreLabel label = new CoreLabel();
+        label.setWord(word);
+        label.setLemma(lemma);
+        label.setTag(tag);
+        label.setIndex(index);
+        label.setSentIndex(2);
+        label.setBeginPosition(begin);
+        label.setEndPosition(begin + word.length());
+        return new IndexedWord(label);
+    }
+
+    @Test
+    public void constituentOrderTest() {
+        IndexedWord egg = token("egg", "egg", "NN", 3, 10);
+        IndexedWord whites = token("whites", "white", "NNS", 4, 14);
+        IndexedWord beaten = token("beaten", "beat", "VBN", 2, 3);
+
+        TaggedWord word = new TaggedWord(whites, TaxonomyType.INGREDIENTS);
+        word.addAll(Arrays.asList(egg));
+        assertEquals("egg whites", word.toString());
+        assertEquals("egg white", word.getLemma());
+
+        TaggedWord modifier = new TaggedWord(beaten, TaxonomyType.OTHER);
+        word.addAll(modifier);
+        assertEquals("beaten egg whites", word.toString());
+        assertEquals(Arrays.asList("beat", "egg", "white"), word.getLemmas());
+        assertArrayEquals(new int[] {2, 3, 4}, word.getTokenIndices());
+        assertEquals(3, word.start());
+        assertEquals(20, word.end());
+
+        assertEquals("NNS", word.tag());
+        assertEquals(4, word.index());
+        assertEquals(2, word.sentIndex());
+        assertEquals(new TaggedWord(whites, TaxonomyType.OTHER), word);
+        assertEquals(new TaggedWord(whites, TaxonomyType.OTHER).hashCode(), word.hashCode());
+        assertNotEquals(modifier, word);
+    }
+
+    @Test
+    public void serializationTest() throws IOException, ClassNotFoundException {
+        TaggedWord word = new TaggedWord(token("yolks", "yolk", "NNS", 6, 30), TaxonomyType.INGREDIENTS);
+        word.addToken(token("egg", "egg", "NN", 5, 26));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try(ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+            output.writeObject(word);
+        }
+        TaggedWord copy;
+        try(ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            copy = (TaggedWord) input.readObject();
+        }
+
+        assertEquals(word, copy);
+        assertEquals("egg yolks", copy.toString());
+        assertEquals("egg yolk", copy.getLemma());
+        assertEquals(word.tag(), copy.tag());
+        assertEquals(word.entity(), copy.entity());
+        assertEquals(word.start(), copy.start());
+        assertEquals(word.end(), copy.end());
+        assertSame(word.getLemmas().get(0), copy.getLemmas().get(0));
+    }
+}
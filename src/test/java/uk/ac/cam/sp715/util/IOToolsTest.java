@@ -1,8 +1,12 @@
 package uk.ac.cam.sp715.util;
 
+import edu.stanford.nlp.classify.GeneralDataset;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
+import uk.ac.cam.sp715.flows.Role;
+import uk.ac.cam.sp715.recipes.Ingredient;
+import uk.ac.cam.sp715.recipes.Recipe;
 
 import java.io.File;
 import java.io.IOException;
@@ -10,14 +14,13 @@ import java.io.Serializable;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.*;
 
 import static org.junit.Assert.*;
 
 /**
  * Tests for {@link IOTools} utility methods for serializable and collection
- * objects.
+ * objects, and for saving values with the {@link Codecs}.
  * @author Srijan Parmeshwar <sp715@cam.ac.uk>
  */
 public class IOToolsTest {
@@ -118,6 +121,66 @@ public class IOToolsTest {
         }
     }
 
+    private static List<Recipe> recipes() {
+        List<Recipe> recipes = new LinkedList<>();
+        recipes.add(new Recipe("Scones", "Light scones \u00e0 la cr\u00e8me.",
+                Arrays.asList(new Ingredient("225g self-raising flour"), new Ingredient("\u00bd tsp salt")),
+                Arrays.asList("Heat the oven to 220C.", "Rub in the butter.")));
+        recipes.add(new Recipe("Tea", null, new LinkedList<>(), Collections.singletonList("Brew the tea.")));
+        return recipes;
+    }
+
+    @Test
+    public void testCodec() throws IOToolsException {
+        String filename = Paths.get(directoryPath, "recipes.bin").toString();
+        for(IOTools.Compression compression : IOTools.Compression.values()) {
+            IOTools.save(recipes(), Codecs.RECIPES, compression, filename);
+            assertEquals(recipes(), IOTools.read(Codecs.RECIPES, filename));
+
+            Map<String, Recipe> map = new LinkedHashMap<>();
+            for(Recipe recipe : recipes()) map.put(recipe.getTitle(), recipe);
+            IOTools.save(map, Codecs.map(Codecs.STRING, Codecs.RECIPE), compression, filename);
+            assertEquals(map, IOTools.read(Codecs.map(Codecs.STRING, Codecs.RECIPE), filename));
+        }
+        IOTools.delete(filename);
+    }
+
+    @Test
+    public void testCodecReadsSerialized() throws IOToolsException {
+        String filename = Paths.get(directoryPath, "recipes.ser").toString();
+        IOTools.save(new LinkedList<>(recipes()), filename);
+        assertEquals(recipes(), IOTools.read(Codecs.RECIPES, filename));
+        IOTools.delete(filename);
+    }
+
+    @Test(expected = IOToolsException.class)
+    public void testCodecUnknownFormat() throws IOToolsException {
+        Path filepath = Paths.get(directoryPath, "unknown.bin");
+        try {
+            IOTools.save(Collections.singletonList("Not a codec file"), filepath);
+            IOTools.read(Codecs.RECIPES, filepath.toString());
+        } finally {
+            IOTools.delete(filepath.toString());
+        }
+    }
+
+    @Test
+    public void testDatasetCodec() throws IOToolsException {
+        GeneralDataset<Role, String> dataset = IOTools.read(Paths.get("data", "srl-train-en.ser").toString());
+        String filename = Paths.get(directoryPath, "dataset.bin").toString();
+        IOTools.save(dataset, Codecs.ROLE_DATASET, IOTools.Compression.DEFLATE, filename);
+        GeneralDataset<Role, String> read = IOTools.read(Codecs.ROLE_DATASET, filename);
+        IOTools.delete(filename);
+
+        assertEquals(dataset.labelIndex().objectsList(), read.labelIndex().objectsList());
+        assertEquals(dataset.featureIndex().objectsList(), read.featureIndex().objectsList());
+        assertEquals(dataset.size(), read.size());
+        for(int i = 0; i < dataset.size(); i++) {
+            assertEquals(dataset.getLabelsArray()[i], read.getLabelsArray()[i]);
+            assertArrayEquals(dataset.getDataArray()[i], read.getDataArray()[i]);
+        }
+    }
+
     @AfterClass
     public static void afterClass() {
         File testDirectory = new File(directoryPath);
@@ -0,0 +1,185 @@
+package uk.ac.cam.sp715.wordnet;
+
+import edu.mit.jwi.item.IIndexWord;
+import edu.mit.jwi.item.ISynset;
+import edu.mit.jwi.item.ISynsetID;
+import edu.mit.jwi.item.IWord;
+import edu.mit.jwi.item.IWordID;
+import edu.mit.jwi.item.Pointer;
+import org.jgrapht.Graphs;
+import org.jgrapht.graph.DefaultEdge;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeNotNull;
+
+/**
+ * Checks that the memoized exploration produces the same taxonomies as recursive exploration,
+ * and that the in memory dictionary gives the same lookups as the file based one.
+ * Requires a WordNet installation at WNHOME.
+ * @author Srijan Parmeshwar <sp715@cam.ac.uk>
+ */
+public class ExplorerTest {
+
+    private static Explorer explorer;
+
+    @BeforeClass
+    public static void setUp() {
+        assumeNotNull(System.getenv("WNHOME"));
+        explorer = new Explorer();
+        explorer.open();
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        if(explorer != null) explorer.close();
+    }
+
+    private static ISynset getSynset(String noun, int index) {
+        List<IWordID> wordIDs = explorer.getIndexNoun(noun).getWordIDs();
+        return explorer.getWord(wordIDs.get(index)).getSynset();
+    }
+
+    //Recursive exploration as originally implemented.
+    private static Taxonomy recursiveHyponyms(Taxonomy graph, int depth) {
+        Taxonomy result = new Taxonomy(graph);
+        if(depth>0) {
+            Set<ISynset> leaves = result.getLeaves();
+            for(ISynset synset : leaves) {
+                List<ISynsetID> hyponymSets = synset.getRelatedSynsets(Pointer.HYPONYM);
+                for (ISynsetID synsetID : hyponymSets) {
+                    ISynset newSynset = explorer.getSynset(synsetID);
+                    Taxonomy newTaxonomy = new Taxonomy(newSynset);
+                    Taxonomy newGraph = recursiveHyponyms(newTaxonomy, depth - 1);
+                    if(Graphs.addGraph(result, newGraph)) result.addEdge(synset, newSynset);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static Taxonomy recursiveMeronyms(Taxonomy graph, int depth) {
+        Taxonomy result = new Taxonomy(graph);
+        if(depth>0) {
+            for(ISynset synset : graph.vertexSet()) {
+                Set<ISynsetID> meronymSets = new HashSet<>();
+                meronymSets.addAll(synset.getRelatedSynsets(Pointer.MERONYM_MEMBER));
+                meronymSets.addAll(synset.getRelatedSynsets(Pointer.MERONYM_PART));
+                meronymSets.addAll(synset.getRelatedSynsets(Pointer.MERONYM_SUBSTANCE));
+
+                for(ISynsetID synsetID : meronymSets) {
+                    ISynset newSynset = explorer.getSynset(synsetID);
+                    Taxonomy newTaxonomy = new Taxonomy(newSynset);
+                    Taxonomy newGraph = recursiveMeronyms(newTaxonomy, depth - 1);
+                    if(Graphs.addGraph(result, newGraph)) {
+                        for(DefaultEdge edge : result.incomingEdgesOf(synset)) {
+                            for(ISynset target : newGraph.vertexSet()) {
+                                result.addEdge(graph.getEdgeSource(edge), target);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private static Set<String> edges(Taxonomy taxonomy) {
+        Set<String> edges = new HashSet<>();
+        for(DefaultEdge edge : taxonomy.edgeSet()) {
+            edges.add(taxonomy.getEdgeSource(edge).getID() + " -> " + taxonomy.getEdgeTarget(edge).getID());
+        }
+        return edges;
+    }
+
+    private static void assertSameTaxonomy(Taxonomy expected, Taxonomy actual) {
+        assertEquals(new ArrayList<>(expected.vertexSet()), new ArrayList<>(actual.vertexSet()));
+        assertEquals(edges(expected), edges(actual));
+    }
+
+    @Test
+    public void seedTaxonomiesTest() {
+        String[] seeds = {"food", "solid food", "fat", "kitchen utensil", "tableware", "container", "paper", "appliance"};
+        int[] senses = {0, 0, 0, 0, 0, 0, 0, 1};
+        long recursiveTime = 0;
+        long memoizedTime = 0;
+        for(int i = 0; i < seeds.length; i++) {
+            ISynset synset = getSynset(seeds[i], senses[i]);
+            long start = System.nanoTime();
+            Taxonomy expected = recursiveMeronyms(recursiveHyponyms(new Taxonomy(synset), Integer.MAX_VALUE), Integer.MAX_VALUE);
+            recursiveTime += System.nanoTime() - start;
+            start = System.nanoTime();
+            Taxonomy actual = explorer.exploreMeronyms(explorer.exploreHyponyms(new Taxonomy(synset)));
+            memoizedTime += System.nanoTime() - start;
+            assertSameTaxonomy(expected, actual);
+        }
+        System.out.println("Recursive exploration: " + recursiveTime / 1E9 + "s, memoized exploration: " + memoizedTime / 1E9 + "s");
+    }
+
+    @Test
+    public void depthLimitTest() {
+        ISynset food = getSynset("food", 0);
+        ISynset fat = getSynset("fat", 0);
+        Set<ISynset> roots = new HashSet<>(Arrays.asList(food, fat));
+        for(int depth = 0; depth < 5; depth++) {
+            assertSameTaxonomy(recursiveHyponyms(new Taxonomy(food), depth), explorer.exploreHyponyms(new Taxonomy(food), depth));
+            assertSameTaxonomy(recursiveHyponyms(new Taxonomy(roots), depth), explorer.exploreHyponyms(new Taxonomy(roots), depth));
+            Taxonomy hyponyms = recursiveHyponyms(new Taxonomy(food), depth);
+            for(int meronymDepth = 0; meronymDepth < 3; meronymDepth++) {
+                assertSameTaxonomy(recursiveMeronyms(hyponyms, meronymDepth), explorer.exploreMeronyms(hyponyms, meronymDepth));
+            }
+        }
+    }
+
+    @Test
+    public void sizeLimitTest() {
+        ISynset food = getSynset("food", 0);
+        Taxonomy taxonomy = explorer.exploreHyponyms(new Taxonomy(food), Integer.MAX_VALUE, 100);
+        assertTrue(taxonomy.vertexSet().size() <= 100);
+        assertTrue(taxonomy.containsVertex(food));
+    }
+
+    @Test
+    public void inMemoryLookupTest() {
+        List<String> nouns = new ArrayList<>();
+        for(List<String> lemmas : TaxonomyDictionary.load().getDictionaries().values()) nouns.addAll(lemmas);
+        nouns.add("unknown noun");
+
+        Explorer memoryExplorer = new Explorer(true);
+        long start = System.nanoTime();
+        memoryExplorer.open();
+        long loadTime = System.nanoTime() - start;
+        try {
+            long fileTime = 0;
+            long memoryTime = 0;
+            for(String noun : nouns) {
+                start = System.nanoTime();
+                List<String> expected = lemmas(explorer, noun);
+                fileTime += System.nanoTime() - start;
+                start = System.nanoTime();
+                List<String> actual = lemmas(memoryExplorer, noun);
+                memoryTime += System.nanoTime() - start;
+                assertEquals(expected, actual);
+            }
+            System.out.println("In memory load: " + loadTime / 1E9 + "s, lookups from file: " + fileTime / 1E9 + "s, lookups in memory: " + memoryTime / 1E9 + "s");
+        } finally {
+            memoryExplorer.close();
+        }
+    }
+
+    private static List<String> lemmas(Explorer explorer, String noun) {
+        List<String> lemmas = new ArrayList<>();
+        IIndexWord indexWord = explorer.getIndexNoun(noun);
+        if(indexWord != null) {
+            for(IWordID wordID : indexWord.getWordIDs()) {
+                IWord word = explorer.getWord(wordID);
+                lemmas.add(word.getLemma() + " " + word.getSynset().getID());
+            }
+        }
+        return lemmas;
+    }
+}
@@ -0,0 +1,101 @@
+package uk.ac.cam.sp715.wordnet;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.cam.sp715.wordnet.Taxonomy.TaxonomyType;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that {@link TaxonomyDictionary} files give back the types they were written with, and that
+ * truncated files or files of another version are regenerated rather than used.
+ * @author Srijan Parmeshwar <sp715@cam.ac.uk>
+ */
+public class TaxonomyDictionaryTest {
+    private Path directory;
+    private Path path;
+    private AtomicInteger generated;
+    private Supplier<SortedMap<String, TaxonomyType>> entries;
+
+    @Before
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("taxonomy");
+        path = directory.resolve("taxonomy.dict");
+        generated = new AtomicInteger();
+        Map<TaxonomyType, List<String>> lemmas = new EnumMap<>(TaxonomyType.class);
+        lemmas.put(TaxonomyType.INGREDIENTS, Arrays.asList("Flour", "olive_oil", "pan", "cr\u00e8me_fra\u00eeche"));
+        lemmas.put(TaxonomyType.UTENSILS, Arrays.asList("baking tray", "pan", "whisk"));
+        lemmas.put(TaxonomyType.APPLIANCES, Collections.singletonList("oven"));
+        entries = () -> {
+            generated.incrementAndGet();
+            return TaxonomyDictionary.entries(lemmas);
+        };
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        for(Path file : Files.newDirectoryStream(directory)) Files.delete(file);
+        Files.delete(directory);
+    }
+
+    private static void assertTypes(TaxonomyDictionary dictionary) {
+        assertEquals(7, dictionary.size());
+        assertEquals(TaxonomyType.INGREDIENTS, dictionary.typeOf("flour"));
+        assertEquals(TaxonomyType.INGREDIENTS, dictionary.typeOf("FLOUR"));
+        assertEquals(TaxonomyType.INGREDIENTS, dictionary.typeOf("olive oil"));
+        assertEquals(TaxonomyType.INGREDIENTS, dictionary.typeOf("cr\u00e8me_fra\u00eeche"));
+        assertEquals(TaxonomyType.UTENSILS, dictionary.typeOf("baking_tray"));
+        assertEquals(TaxonomyType.UTENSILS, dictionary.typeOf("pan"));
+        assertEquals(TaxonomyType.UTENSILS, dictionary.typeOf("whisk"));
+        assertEquals(TaxonomyType.APPLIANCES, dictionary.typeOf("oven"));
+        assertEquals(TaxonomyType.OTHER, dictionary.typeOf("ovens"));
+        assertEquals(TaxonomyType.OTHER, dictionary.typeOf(""));
+        assertEquals(TaxonomyType.OTHER, dictionary.typeOf("zzz"));
+    }
+
+    @Test
+    public void roundTripTest() {
+        assertTypes(TaxonomyDictionary.load(path, entries));
+        assertEquals(1, generated.get());
+        TaxonomyDictionary dictionary = TaxonomyDictionary.load(path, entries);
+        assertTypes(dictionary);
+        assertEquals(1, generated.get());
+
+        Map<TaxonomyType, List<String>> multiWord = new EnumMap<>(TaxonomyType.class);
+        multiWord.put(TaxonomyType.INGREDIENTS, Arrays.asList("cr\u00e8me_fra\u00eeche", "olive_oil"));
+        multiWord.put(TaxonomyType.UTENSILS, Collections.singletonList("baking_tray"));
+        assertEquals(multiWord, dictionary.getMultiWordDictionaries());
+    }
+
+    @Test
+    public void truncatedTest() throws IOException {
+        TaxonomyDictionary.load(path, entries);
+        try(RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.setLength(file.length() - 3);
+        }
+        assertTypes(TaxonomyDictionary.load(path, entries));
+        assertEquals(2, generated.get());
+    }
+
+    @Test
+    public void versionTest() throws IOException {
+        TaxonomyDictionary.load(path, entries);
+        try(RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.seek(4);
+            int version = file.readInt();
+            file.seek(4);
+            file.writeInt(version + 1);
+        }
+        assertTypes(TaxonomyDictionary.load(path, entries));
+        assertEquals(2, generated.get());
+    }
+}